@@ -0,0 +1,26 @@
+package com.martyna.ScenicRoutes.cache;
+
+// Packs a coordinate into a single long so cache keys need no string formatting.
+// Coordinates are quantized to 1e-6 degrees, the same precision the old "%.6f" keys used.
+public final class CoordinateKey {
+
+    private static final double SCALE = 1e6;
+
+    private CoordinateKey() {
+    }
+
+    // High 32 bits: latitude in micro-degrees, low 32 bits: longitude in micro-degrees
+    public static long pack(double lat, double lng) {
+        long latE6 = Math.round(lat * SCALE);
+        long lngE6 = Math.round(lng * SCALE);
+        return (latE6 << 32) | (lngE6 & 0xFFFFFFFFL);
+    }
+
+    public static double latitude(long key) {
+        return (int) (key >> 32) / SCALE;
+    }
+
+    public static double longitude(long key) {
+        return (int) key / SCALE;
+    }
+}
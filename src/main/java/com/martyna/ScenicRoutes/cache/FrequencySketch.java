@@ -0,0 +1,65 @@
+package com.martyna.ScenicRoutes.cache;
+
+// Count-min sketch of 4-bit counters used as the TinyLFU admission filter.
+// Counters are halved every sampleSize increments, so old popularity fades out.
+// Not thread-safe - callers guard it with the same lock as the cache it belongs to.
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        // Four counters per expected entry, sixteen counters per long
+        int counters = Integer.highestOneBit(Math.max(expectedEntries, 16) * 4 - 1) << 1;
+        this.table = new long[counters / 16];
+        this.counterMask = counters - 1;
+        this.sampleSize = 10 * Math.max(expectedEntries, 16);
+    }
+
+    int frequency(int hash) {
+        int frequency = 15;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, counter(indexOf(hash, row)));
+        }
+        return frequency;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = indexOf(hash, row);
+            if (counter(index) < 15) {
+                table[index >>> 4] += 1L << ((index & 15) << 2);
+                added = true;
+            }
+        }
+
+        if (added && ++additions == sampleSize) {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+    }
+
+    long estimatedBytes() {
+        return table.length * 8L;
+    }
+
+    private int counter(int index) {
+        return (int) (table[index >>> 4] >>> ((index & 15) << 2)) & 15;
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & counterMask;
+    }
+}
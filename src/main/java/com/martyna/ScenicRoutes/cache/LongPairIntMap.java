@@ -0,0 +1,219 @@
+package com.martyna.ScenicRoutes.cache;
+
+import java.util.Arrays;
+
+// Open-addressing hash map from a pair of longs to an int, with linear probing.
+// Keys and values live in parallel primitive arrays, so lookups allocate nothing.
+// When created with a max size it evicts with CLOCK (recency) and only admits a new
+// key over the CLOCK victim if a TinyLFU sketch says the key is at least as frequent.
+// Not thread-safe - see StripedLongPairIntMap for the concurrent version.
+public class LongPairIntMap {
+
+    // Returned by get() when the key is absent
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    // Two keys + value + CLOCK counter, per table slot
+    public static final int BYTES_PER_SLOT = 8 + 8 + 4 + 1;
+
+    // Marks an empty slot; a real first key may never take this value
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private static final int MIN_CAPACITY = 16;
+    private static final double MAX_LOAD = 0.6;
+    private static final byte MAX_REFERENCE = 3;
+
+    private final int maxSize;
+    private final FrequencySketch sketch;
+
+    private long[] firstKeys;
+    private long[] secondKeys;
+    private int[] values;
+    private byte[] references;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private int clockHand;
+    private long evictions;
+    // New keys the sketch turned away, which leaves the map unchanged
+    private long rejections;
+
+    public LongPairIntMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongPairIntMap(int expectedSize) {
+        this(tableSizeFor(expectedSize), Integer.MAX_VALUE, null);
+    }
+
+    private LongPairIntMap(int capacity, int maxSize, FrequencySketch sketch) {
+        this.maxSize = maxSize;
+        this.sketch = sketch;
+        allocate(capacity);
+    }
+
+    // Bounded map: never holds more than maxSize entries
+    public static LongPairIntMap bounded(int maxSize) {
+        int limit = Math.max(maxSize, 1);
+        return new LongPairIntMap(MIN_CAPACITY, limit, new FrequencySketch(limit));
+    }
+
+    // How many entries fit into a memory budget: the largest power-of-two table within
+    // the budget, filled up to the load factor so it never has to grow past it
+    public static int maxSizeForBudget(long maxBytes) {
+        long slots = Math.max(maxBytes / BYTES_PER_SLOT, MIN_CAPACITY);
+        int capacity = (int) Long.highestOneBit(Math.min(slots, 1 << 30));
+        return (int) (capacity * MAX_LOAD);
+    }
+
+    public int get(long first, long second) {
+        int hash = hash(first, second);
+        if (sketch != null) sketch.increment(hash);
+
+        int slot = hash & mask;
+        while (true) {
+            long k = firstKeys[slot];
+            if (k == EMPTY) return NO_VALUE;
+            if (k == first && secondKeys[slot] == second) {
+                if (references != null && references[slot] < MAX_REFERENCE) references[slot]++;
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public void put(long first, long second, int value) {
+        if (first == EMPTY) {
+            throw new IllegalArgumentException("Key " + EMPTY + " is reserved");
+        }
+
+        int hash = hash(first, second);
+        int slot = findSlot(first, second, hash);
+        if (firstKeys[slot] != EMPTY) {
+            values[slot] = value;
+            return;
+        }
+
+        if (size >= maxSize) {
+            int victim = selectVictim();
+            if (sketch.frequency(hash) < sketch.frequency(hash(firstKeys[victim], secondKeys[victim]))) {
+                // The victim is more popular than the newcomer - drop the newcomer instead
+                rejections++;
+                return;
+            }
+            removeSlot(victim);
+            evictions++;
+            slot = findSlot(first, second, hash);
+        }
+
+        firstKeys[slot] = first;
+        secondKeys[slot] = second;
+        values[slot] = value;
+        if (references != null) references[slot] = 1;
+        if (++size > resizeThreshold) rehash(firstKeys.length * 2);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    public long rejections() {
+        return rejections;
+    }
+
+    public long estimatedBytes() {
+        long bytes = (long) firstKeys.length * BYTES_PER_SLOT;
+        return sketch != null ? bytes + sketch.estimatedBytes() : bytes;
+    }
+
+    public void clear() {
+        Arrays.fill(firstKeys, EMPTY);
+        size = 0;
+    }
+
+    // Mixes both keys so quantized coordinates that differ only in low bits still spread out
+    static int hash(long first, long second) {
+        long h = first * 0x9E3779B97F4A7C15L + second;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    // Slot holding the key, or the empty slot where it would be inserted
+    private int findSlot(long first, long second, int hash) {
+        int slot = hash & mask;
+        while (true) {
+            long k = firstKeys[slot];
+            if (k == EMPTY || (k == first && secondKeys[slot] == second)) return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // CLOCK sweep: recently hit entries get another lap, the first cold one is the victim
+    private int selectVictim() {
+        while (true) {
+            clockHand = (clockHand + 1) & mask;
+            if (firstKeys[clockHand] == EMPTY) continue;
+            if (references[clockHand] == 0) return clockHand;
+            references[clockHand]--;
+        }
+    }
+
+    // Backward-shift deletion keeps probe chains intact without tombstones
+    private void removeSlot(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (firstKeys[next] != EMPTY) {
+            int ideal = hash(firstKeys[next], secondKeys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                firstKeys[gap] = firstKeys[next];
+                secondKeys[gap] = secondKeys[next];
+                values[gap] = values[next];
+                if (references != null) references[gap] = references[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        firstKeys[gap] = EMPTY;
+        size--;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldFirst = firstKeys;
+        long[] oldSecond = secondKeys;
+        int[] oldValues = values;
+        byte[] oldReferences = references;
+
+        allocate(newCapacity);
+        for (int i = 0; i < oldFirst.length; i++) {
+            if (oldFirst[i] == EMPTY) continue;
+            int slot = hash(oldFirst[i], oldSecond[i]) & mask;
+            while (firstKeys[slot] != EMPTY) slot = (slot + 1) & mask;
+            firstKeys[slot] = oldFirst[i];
+            secondKeys[slot] = oldSecond[i];
+            values[slot] = oldValues[i];
+            if (references != null) references[slot] = oldReferences[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        firstKeys = new long[capacity];
+        secondKeys = new long[capacity];
+        values = new int[capacity];
+        references = sketch != null ? new byte[capacity] : null;
+        Arrays.fill(firstKeys, EMPTY);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * MAX_LOAD);
+        clockHand = 0;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 1) / MAX_LOAD);
+        int capacity = Integer.highestOneBit(Math.max(needed, MIN_CAPACITY) - 1) << 1;
+        return Math.max(capacity, MIN_CAPACITY);
+    }
+}
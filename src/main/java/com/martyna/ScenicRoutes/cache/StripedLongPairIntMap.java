@@ -0,0 +1,92 @@
+package com.martyna.ScenicRoutes.cache;
+
+// Thread-safe LongPairIntMap split into independently locked segments,
+// so concurrent route requests rarely contend on the same lock.
+public class StripedLongPairIntMap {
+
+    private static final int SEGMENTS = 16;
+
+    private final LongPairIntMap[] segments = new LongPairIntMap[SEGMENTS];
+
+    // Unbounded
+    public StripedLongPairIntMap() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new LongPairIntMap();
+        }
+    }
+
+    // Bounded to roughly maxBytes, split evenly across segments
+    public StripedLongPairIntMap(long maxBytes) {
+        int segmentSize = LongPairIntMap.maxSizeForBudget(maxBytes / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = LongPairIntMap.bounded(segmentSize);
+        }
+    }
+
+    public int get(long first, long second) {
+        LongPairIntMap segment = segmentFor(first, second);
+        synchronized (segment) {
+            return segment.get(first, second);
+        }
+    }
+
+    public void put(long first, long second, int value) {
+        LongPairIntMap segment = segmentFor(first, second);
+        synchronized (segment) {
+            segment.put(first, second, value);
+        }
+    }
+
+    public int size() {
+        int total = 0;
+        for (LongPairIntMap segment : segments) {
+            synchronized (segment) {
+                total += segment.size();
+            }
+        }
+        return total;
+    }
+
+    public long evictions() {
+        long total = 0;
+        for (LongPairIntMap segment : segments) {
+            synchronized (segment) {
+                total += segment.evictions();
+            }
+        }
+        return total;
+    }
+
+    public long rejections() {
+        long total = 0;
+        for (LongPairIntMap segment : segments) {
+            synchronized (segment) {
+                total += segment.rejections();
+            }
+        }
+        return total;
+    }
+
+    public long estimatedBytes() {
+        long total = 0;
+        for (LongPairIntMap segment : segments) {
+            synchronized (segment) {
+                total += segment.estimatedBytes();
+            }
+        }
+        return total;
+    }
+
+    public void clear() {
+        for (LongPairIntMap segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    // Top bits pick the segment, low bits pick the slot inside it
+    private LongPairIntMap segmentFor(long first, long second) {
+        return segments[LongPairIntMap.hash(first, second) >>> 28];
+    }
+}
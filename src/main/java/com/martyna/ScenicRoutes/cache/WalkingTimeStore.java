@@ -0,0 +1,166 @@
+package com.martyna.ScenicRoutes.cache;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Persistent walking-time store: a memory-mapped file of fixed 24-byte records laid out
+// as an open-addressing hash table, so it is the L2 below WalkingTimeCache's in-memory map.
+//
+// Nothing is read at startup - the file is mapped on first use and the OS pages records
+// in as lookups touch them. Records are only ever added, never rewritten.
+//
+// Crash safety: a record's checksum is written last and is never 0. A process killed
+// mid-write leaves checksum 0, which reads as an empty slot and gets overwritten later.
+// A record whose checksum doesn't match its content is skipped like any other key.
+public class WalkingTimeStore {
+
+    // Returned by get() when the pair isn't stored
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    private static final int MAGIC = 0x53525754; // "SRWT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_BYTES = 24;
+
+    // One mapping covers the whole file, so it must stay under 2 GB
+    private static final int MAX_SLOTS = 1 << 26;
+    private static final double MAX_LOAD = 0.75;
+
+    private final Path path;
+    private final int slots;
+    private final int mask;
+    private final int maxEntries;
+
+    private MappedByteBuffer buffer;
+    private boolean unavailable;
+    private int size;
+    private boolean full;
+
+    public WalkingTimeStore(Path path, int requestedSlots) {
+        this.path = path;
+        this.slots = Integer.highestOneBit(Math.max(16, Math.min(requestedSlots, MAX_SLOTS)));
+        this.mask = slots - 1;
+        this.maxEntries = (int) (slots * MAX_LOAD);
+    }
+
+    public synchronized int get(long fromKey, long toKey) {
+        if (!ensureOpen()) return NO_VALUE;
+
+        int slot = LongPairIntMap.hash(fromKey, toKey) & mask;
+        for (int probes = 0; probes < slots; probes++) {
+            int offset = offsetOf(slot);
+            int checksum = buffer.getInt(offset + 20);
+            if (checksum == 0) return NO_VALUE;
+
+            long from = buffer.getLong(offset);
+            long to = buffer.getLong(offset + 8);
+            if (from == fromKey && to == toKey) {
+                int minutes = buffer.getInt(offset + 16);
+                if (checksum == checksum(from, to, minutes)) return minutes;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    public synchronized void put(long fromKey, long toKey, int minutes) {
+        if (full || !ensureOpen()) return;
+
+        int slot = LongPairIntMap.hash(fromKey, toKey) & mask;
+        while (true) {
+            int offset = offsetOf(slot);
+            int checksum = buffer.getInt(offset + 20);
+            if (checksum == 0) break;
+            if (buffer.getLong(offset) == fromKey && buffer.getLong(offset + 8) == toKey) return;
+            slot = (slot + 1) & mask;
+        }
+
+        if (size >= maxEntries) {
+            full = true;
+            System.err.println("Walking time store " + path + " is full, new pairs won't be persisted");
+            return;
+        }
+
+        int offset = offsetOf(slot);
+        buffer.putLong(offset, fromKey);
+        buffer.putLong(offset + 8, toKey);
+        buffer.putInt(offset + 16, minutes);
+        // Commit point - until this lands the slot still reads as empty
+        buffer.putInt(offset + 20, checksum(fromKey, toKey, minutes));
+        // Only used for the fill limit, so being one behind after a crash is harmless
+        buffer.putInt(16, ++size);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public long fileBytes() {
+        return HEADER_BYTES + (long) slots * RECORD_BYTES;
+    }
+
+    // Flushes dirty pages; the OS also writes them back on its own
+    public synchronized void flush() {
+        if (buffer != null) buffer.force();
+    }
+
+    // Maps the file on first use. Returns false (store disabled) if the file can't be used.
+    private boolean ensureOpen() {
+        if (buffer != null) return true;
+        if (path == null || unavailable) return false;
+
+        // Only one attempt - a broken store just leaves the in-memory cache in charge
+        unavailable = true;
+        try {
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes());
+                mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+                if (mapped.getInt(0) == 0) {
+                    writeHeader(mapped);
+                } else if (!hasValidHeader(mapped)) {
+                    System.err.println("Walking time store " + path + " has an incompatible layout, ignoring it");
+                    return false;
+                } else {
+                    size = mapped.getInt(16);
+                }
+                buffer = mapped;
+                unavailable = false;
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Unable to open walking time store " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void writeHeader(MappedByteBuffer mapped) {
+        mapped.putInt(4, VERSION);
+        mapped.putInt(8, RECORD_BYTES);
+        mapped.putInt(12, slots);
+        // Magic goes last, so a half-written header is rejected on the next start
+        mapped.putInt(0, MAGIC);
+    }
+
+    private boolean hasValidHeader(MappedByteBuffer mapped) {
+        return mapped.getInt(0) == MAGIC
+                && mapped.getInt(4) == VERSION
+                && mapped.getInt(8) == RECORD_BYTES
+                && mapped.getInt(12) == slots;
+    }
+
+    private static int offsetOf(int slot) {
+        return HEADER_BYTES + slot * RECORD_BYTES;
+    }
+
+    private static int checksum(long from, long to, int minutes) {
+        return LongPairIntMap.hash(from ^ Integer.toUnsignedLong(minutes) * 0x9E3779B97F4A7C15L, to) | 1;
+    }
+}
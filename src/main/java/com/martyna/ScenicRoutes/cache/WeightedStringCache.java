@@ -0,0 +1,103 @@
+package com.martyna.ScenicRoutes.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// String-to-string cache bounded by an estimated byte budget instead of an entry count.
+// Entries are weighed by size, so a few long polylines can't crowd out the budget unnoticed.
+// Eviction is LRU, with a TinyLFU sketch deciding whether a newcomer may replace
+// the LRU victim - one-off values don't flush entries that keep getting hit.
+public class WeightedStringCache {
+
+    // Rough per-entry overhead: map entry, two String headers and their byte arrays
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    // Used only to size the frequency sketch
+    private static final int TYPICAL_ENTRY_BYTES = 2048;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+
+    private long weightedSize;
+    private long evictions;
+    // Newcomers turned away - too big for the budget, or less frequent than the LRU victim
+    private long rejections;
+
+    public WeightedStringCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.sketch = new FrequencySketch((int) Math.min(maxBytes / TYPICAL_ENTRY_BYTES, 1 << 20));
+    }
+
+    public synchronized String get(String key) {
+        sketch.increment(key.hashCode());
+        return entries.get(key);
+    }
+
+    public synchronized void put(String key, String value) {
+        long weight = weigh(key, value);
+
+        // Taken out so it can't be its own victim; a rejected update puts it back
+        String previous = entries.remove(key);
+        if (previous != null) weightedSize -= weigh(key, previous);
+
+        if (weight > maxBytes) {
+            reject(key, previous);
+            return;
+        }
+
+        Iterator<Map.Entry<String, String>> lru = entries.entrySet().iterator();
+        boolean admitted = false;
+        while (weightedSize + weight > maxBytes && lru.hasNext()) {
+            Map.Entry<String, String> victim = lru.next();
+            if (!admitted && sketch.frequency(key.hashCode()) < sketch.frequency(victim.getKey().hashCode())) {
+                // The victim is more popular than the newcomer - drop the newcomer instead.
+                // Nothing has been evicted yet, so the previous value still fits.
+                reject(key, previous);
+                return;
+            }
+            admitted = true;
+            weightedSize -= weigh(victim.getKey(), victim.getValue());
+            lru.remove();
+            evictions++;
+        }
+
+        entries.put(key, value);
+        weightedSize += weight;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized long rejections() {
+        return rejections;
+    }
+
+    public synchronized long estimatedBytes() {
+        return weightedSize + sketch.estimatedBytes();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weightedSize = 0;
+    }
+
+    private void reject(String key, String previous) {
+        rejections++;
+        if (previous != null) {
+            entries.put(key, previous);
+            weightedSize += weigh(key, previous);
+        }
+    }
+
+    // Polylines and keys are ASCII, so compact strings store one byte per char
+    private static long weigh(String key, String value) {
+        return ENTRY_OVERHEAD_BYTES + key.length() + value.length();
+    }
+}
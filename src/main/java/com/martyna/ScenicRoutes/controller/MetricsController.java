@@ -2,6 +2,7 @@
 // MetricsController.java
 package com.martyna.ScenicRoutes.controller;
 
+import com.martyna.ScenicRoutes.service.GooglePlacesService;
 import com.martyna.ScenicRoutes.service.MetricsService;
 import com.martyna.ScenicRoutes.service.WalkingTimeCache;
 import org.springframework.web.bind.annotation.*;
@@ -16,10 +17,12 @@ public class MetricsController {
 
     private final MetricsService metricsService;
     private final WalkingTimeCache cache;
+    private final GooglePlacesService placesService;
 
-    public MetricsController(MetricsService metricsService, WalkingTimeCache cache) {
+    public MetricsController(MetricsService metricsService, WalkingTimeCache cache, GooglePlacesService placesService) {
         this.metricsService = metricsService;
         this.cache = cache;
+        this.placesService = placesService;
     }
 
     @GetMapping
@@ -32,11 +35,17 @@ public class MetricsController {
         return cache.getStats();
     }
 
+    @GetMapping("/places")
+    public GooglePlacesService.PaginationStats getPlacesStats() {
+        return placesService.getPaginationStats();
+    }
+
     @GetMapping("/dashboard")
     public Map<String, Object> getDashboard() {
         Map<String, Object> dashboard = new HashMap<>();
         dashboard.put("applicationMetrics", metricsService.getMetrics());
         dashboard.put("cacheMetrics", cache.getStats());
+        dashboard.put("placesMetrics", placesService.getPaginationStats());
         return dashboard;
     }
 
@@ -5,6 +5,7 @@ import com.martyna.ScenicRoutes.model.SightseeingRequest;
 import com.martyna.ScenicRoutes.model.SightseeingSchedule;
 import com.martyna.ScenicRoutes.model.UserPreferences;
 import com.martyna.ScenicRoutes.model.UserPreferences.RouteShape;
+import com.martyna.ScenicRoutes.model.UserPreferences.SolverMode;
 import com.martyna.ScenicRoutes.service.OptimizedRouteService;
 import com.martyna.ScenicRoutes.service.SightseeingSchedulerService;
 import com.martyna.ScenicRoutes.service.WalkingTimeCache;
@@ -45,6 +46,16 @@ public class RouteController {
             }
         }
 
+        // Set solver mode and its compute budget
+        if (request.solver != null) {
+            try {
+                preferences.setSolverMode(SolverMode.valueOf(request.solver.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                preferences.setSolverMode(SolverMode.DEFAULT);
+            }
+        }
+        preferences.setMaxComputeMs(request.maxComputeMs);
+
         // Set end point if provided
         if (request.endLat != null && request.endLng != null) {
             preferences.setEndLat(request.endLat);
@@ -98,5 +109,7 @@ public class RouteController {
         public Double endLat;
         public Double endLng;
         public Map<String, Double> preferences;  // e.g., {"park": 1.5, "museum": 0.8}
+        public String solver;  // "default", "anytime", "portfolio", "exact"
+        public Integer maxComputeMs;  // anytime budget, from when solving starts
     }
 }
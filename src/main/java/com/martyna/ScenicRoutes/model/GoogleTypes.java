@@ -0,0 +1,112 @@
+package com.martyna.ScenicRoutes.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Process-wide dictionary of Google place type strings, each interned to a small id the first
+// time it is seen. Points store their types as short[] ids, so every cached POI shares one
+// copy of each type string and type checks compare ids instead of strings.
+//
+// Google's vocabulary is a few hundred types; ids never go away. Lookups are lock-free,
+// only registering a new type takes the lock.
+public final class GoogleTypes {
+
+    // Declared before the constants below, which intern while the class initializes
+    private static final Map<String, Short> IDS = new ConcurrentHashMap<>();
+    // Written before the id is published in IDS, so whoever holds an id can read its name
+    private static volatile String[] names = new String[64];
+    private static int count = 0;
+
+    // Types the scorers check on every POI, registered first so their ids are constants
+    public static final int TOURIST_ATTRACTION = intern("tourist_attraction");
+    public static final int POINT_OF_INTEREST = intern("point_of_interest");
+    public static final int LANDMARK = intern("landmark");
+    public static final int PARK = intern("park");
+    public static final int MUSEUM = intern("museum");
+
+    private GoogleTypes() {
+    }
+
+    // The type's id, registering it if it is new
+    public static int intern(String type) {
+        Short id = IDS.get(type);
+        return id != null ? id : register(type);
+    }
+
+    // The type's id, or -1 if no point has had it - without registering it
+    public static int find(String type) {
+        Short id = IDS.get(type);
+        return id != null ? id : -1;
+    }
+
+    public static String name(int id) {
+        return names[id];
+    }
+
+    public static short[] idsOf(List<String> types) {
+        short[] ids = new short[types.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (short) intern(types.get(i));
+        }
+        return ids;
+    }
+
+    public static boolean contains(short[] ids, int id) {
+        for (short candidate : ids) {
+            if (candidate == id) return true;
+        }
+        return false;
+    }
+
+    // Read-only List<String> over the ids, without copying the names
+    public static List<String> view(short[] ids) {
+        return new TypeList(ids);
+    }
+
+    private static synchronized int register(String type) {
+        Short existing = IDS.get(type);
+        if (existing != null) return existing;
+        if (count > Short.MAX_VALUE) {
+            throw new IllegalStateException("More than " + (Short.MAX_VALUE + 1) + " Google types");
+        }
+
+        int id = count++;
+        String[] current = names;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+        }
+        current[id] = type;
+        names = current;
+        IDS.put(type, (short) id);
+        return id;
+    }
+
+    private static final class TypeList extends AbstractList<String> implements RandomAccess {
+        private final short[] ids;
+
+        TypeList(short[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public String get(int index) {
+            return name(ids[index]);
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String type)) return false;
+            int id = find(type);
+            return id >= 0 && GoogleTypes.contains(ids, id);
+        }
+    }
+}
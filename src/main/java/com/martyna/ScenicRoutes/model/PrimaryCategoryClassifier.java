@@ -0,0 +1,92 @@
+package com.martyna.ScenicRoutes.model;
+
+import com.martyna.ScenicRoutes.model.UserPreferences.POICategory;
+
+import java.util.List;
+import java.util.Locale;
+
+// Picks the one category a POI is shown and scheduled as. Runs once per ScenicPoint, at
+// construction, so callers read a field instead of re-running these rules.
+//
+// Rules, first match wins:
+// 1. names of observation decks Google doesn't type as such
+// 2. an observation_deck type
+// 3. the first museum, zoo or aquarium type
+// 4. the first type with a specific category (not generic or popularity-based)
+// 5. a landmark or tourist_attraction type
+// 6. hidden gem, then trending, by popularity
+// 7. landmark
+final class PrimaryCategoryClassifier {
+
+    // Lowercase name fragments of observation decks
+    private static final List<String> OBSERVATION_DECK_NAMES = List.of(
+            "empire state building",
+            "top of the rock",
+            "one world observatory",
+            "observation"
+    );
+
+    private static final long SIGHTSEEING = POICategory.MUSEUM.bit()
+            | POICategory.ZOO.bit()
+            | POICategory.AQUARIUM.bit();
+
+    // Categories rule 4 can pick: everything not handled by another rule
+    private static final long SPECIFIC = allCategories()
+            & ~SIGHTSEEING
+            & ~POICategory.OBSERVATION_DECK.bit()
+            & ~POICategory.LANDMARK.bit()
+            & ~POICategory.HIDDEN_GEM.bit()
+            & ~POICategory.TRENDING.bit();
+
+    // Types rule 4 skips; they only count in rule 5
+    private static final List<String> GENERIC_TYPES = List.of(
+            "landmark", "tourist_attraction", "point_of_interest", "establishment"
+    );
+
+    private static final POICategory[] BY_ORDINAL = POICategory.values();
+
+    private PrimaryCategoryClassifier() {
+    }
+
+    static POICategory classify(String name, List<String> types, boolean hiddenGem, boolean trending) {
+        if (name != null) {
+            String lowerName = name.toLowerCase(Locale.ROOT);
+            for (String fragment : OBSERVATION_DECK_NAMES) {
+                if (lowerName.contains(fragment)) return POICategory.OBSERVATION_DECK;
+            }
+        }
+
+        if (types.contains("observation_deck")) return POICategory.OBSERVATION_DECK;
+
+        for (String type : types) {
+            long sightseeing = POICategory.maskOf(type) & SIGHTSEEING;
+            if (sightseeing != 0) return lowest(sightseeing);
+        }
+
+        for (String type : types) {
+            if (GENERIC_TYPES.contains(type)) continue;
+            // Lowest ordinal first, as categories are declared
+            long specific = POICategory.maskOf(type) & SPECIFIC;
+            if (specific != 0) return lowest(specific);
+        }
+
+        if (types.contains("landmark") || types.contains("tourist_attraction")) return POICategory.LANDMARK;
+
+        if (hiddenGem) return POICategory.HIDDEN_GEM;
+        if (trending) return POICategory.TRENDING;
+
+        return POICategory.LANDMARK;
+    }
+
+    private static POICategory lowest(long mask) {
+        return BY_ORDINAL[Long.numberOfTrailingZeros(mask)];
+    }
+
+    private static long allCategories() {
+        long mask = 0;
+        for (POICategory category : POICategory.values()) {
+            mask |= category.bit();
+        }
+        return mask;
+    }
+}
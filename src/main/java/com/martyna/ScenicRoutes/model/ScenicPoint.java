@@ -9,9 +9,14 @@ public class ScenicPoint {
     private final double latitude;
     private final double longitude;
     private final double score;
-    private final List<String> types;
+    // Ids in GoogleTypes, in Google's order
+    private final short[] typeIds;
     private final int reviewCount;
     private final double rating;
+    // UserPreferences.POICategory bits, from the types and popularity - fixed at construction
+    private final long categoryMask;
+    // Resolved once by PrimaryCategoryClassifier
+    private final UserPreferences.POICategory primaryCategory;
     private String photoUrl;
 
     public ScenicPoint(String name, double latitude, double longitude, double score) {
@@ -31,9 +36,12 @@ public class ScenicPoint {
         this.latitude = latitude;
         this.longitude = longitude;
         this.score = score;
-        this.types = types != null ? new ArrayList<>(types) : new ArrayList<>();
+        List<String> typeNames = types != null ? types : List.of();
+        this.typeIds = GoogleTypes.idsOf(typeNames);
         this.reviewCount = reviewCount;
         this.rating = rating;
+        this.categoryMask = computeCategoryMask(typeNames);
+        this.primaryCategory = PrimaryCategoryClassifier.classify(name, typeNames, isHiddenGem(), isTrending());
     }
 
     public String getName() {
@@ -52,8 +60,9 @@ public class ScenicPoint {
         return score;
     }
 
+    // Read-only view, resolved through GoogleTypes
     public List<String> getTypes() {
-        return new ArrayList<>(types);
+        return GoogleTypes.view(typeIds);
     }
 
     public int getReviewCount() {
@@ -65,8 +74,15 @@ public class ScenicPoint {
     }
 
     public boolean hasType(String type) {
-        return types.contains(type);
+        int id = GoogleTypes.find(type);
+        return id >= 0 && hasType(id);
     }
+
+    // For a GoogleTypes id, e.g. GoogleTypes.MUSEUM
+    public boolean hasType(int typeId) {
+        return GoogleTypes.contains(typeIds, typeId);
+    }
+
     public String getPhotoUrl() {
         return photoUrl;
     }
@@ -76,97 +92,41 @@ public class ScenicPoint {
     }
 
     public UserPreferences.POICategory getPrimaryCategory() {
-        // Debug logging for Empire State Building
-        if (name != null && name.contains("Empire State")) {
-            System.out.println("DEBUG Empire State Building types: " + types);
-        }
-
-        // hardcoded observation decks google doesn't catch
-        if (name != null) {
-            String lowerName = name.toLowerCase();
-            if (lowerName.contains("empire state building") ||
-                    lowerName.contains("top of the rock") ||
-                    lowerName.contains("one world observatory") ||
-                    (lowerName.contains("observation"))) {
-                return UserPreferences.POICategory.OBSERVATION_DECK;
-            }
-        }
-        // check types
-        if (types.contains("observation_deck")) {
-            return UserPreferences.POICategory.OBSERVATION_DECK;
-        }
-        for (String type : types) {
-            if (type.equals("museum"))  return UserPreferences.POICategory.MUSEUM;
-            if (type.equals("zoo")) return UserPreferences.POICategory.ZOO;
-            if (type.equals("aquarium")) return UserPreferences.POICategory.AQUARIUM;
-        }
-
-        for (String type : types) {
-            // Skips generic types - we'll check these last
-            if (type.equals("landmark") || type.equals("tourist_attraction") ||
-                    type.equals("point_of_interest") || type.equals("establishment"))
-                continue;
-
-            for (UserPreferences.POICategory category : UserPreferences.POICategory.values()) {
-                // Skip already checked and popularity-based
-                if (category == UserPreferences.POICategory.MUSEUM ||
-                        category == UserPreferences.POICategory.ZOO ||
-                        category == UserPreferences.POICategory.AQUARIUM ||
-                        category == UserPreferences.POICategory.OBSERVATION_DECK ||
-                        category == UserPreferences.POICategory.LANDMARK ||
-                        category == UserPreferences.POICategory.HIDDEN_GEM ||
-                        category == UserPreferences.POICategory.TRENDING) {
-                    continue;
-                }
-
-                if (category.matchesGoogleType(type)) {
-                    return category;
-                }
-            }
-        }
-
-        // Check generic types
-        if (types.contains("landmark") || types.contains("tourist_attraction")) {
-            return UserPreferences.POICategory.LANDMARK;
-        }
-
-        // Only if no specific type found, check popularity-based
-        if (isHiddenGem()) return UserPreferences.POICategory.HIDDEN_GEM;
-        if (isTrending()) return UserPreferences.POICategory.TRENDING;
-
-        // Fallback
-        return UserPreferences.POICategory.LANDMARK;
+        return primaryCategory;
     }
 
+    // Categories in declaration order; hot paths should use categoryMask() instead
     public List<UserPreferences.POICategory> getAllCategories() {
         List<UserPreferences.POICategory> categories = new ArrayList<>();
-
-        if (isHiddenGem()) categories.add(UserPreferences.POICategory.HIDDEN_GEM);
-        if (isTrending()) categories.add(UserPreferences.POICategory.TRENDING);
-
-        for (String type : types) {
-            for (UserPreferences.POICategory category : UserPreferences.POICategory.values()) {
-                if (category.matchesGoogleType(type) && !categories.contains(category)) {
-                    categories.add(category);
-                }
-            }
+        for (UserPreferences.POICategory category : UserPreferences.POICategory.values()) {
+            if (hasCategory(category)) categories.add(category);
         }
-
         return categories;
     }
 
+    // Not a bean getter, so it stays out of the JSON response
+    public long categoryMask() {
+        return categoryMask;
+    }
+
+    public boolean hasCategory(UserPreferences.POICategory category) {
+        return (categoryMask & category.bit()) != 0;
+    }
+
     //Check if this point should be EXCLUDED based on user preferences
     // If ANY of the point's categories is avoided, exclude it
     public boolean shouldBeExcluded(UserPreferences preferences) {
-        List<UserPreferences.POICategory> allCategories = getAllCategories();
+        return (categoryMask & preferences.getAvoidedCategories()) != 0;
+    }
 
-        for (UserPreferences.POICategory category : allCategories) {
-            if (preferences.getCategoryWeight(category) == 0.0) {
-                return true;
-            }
+    private long computeCategoryMask(List<String> types) {
+        long mask = 0;
+        if (isHiddenGem()) mask |= UserPreferences.POICategory.HIDDEN_GEM.bit();
+        if (isTrending()) mask |= UserPreferences.POICategory.TRENDING.bit();
+        for (String type : types) {
+            mask |= UserPreferences.POICategory.maskOf(type);
         }
-
-        return false;
+        return mask;
     }
 
     private boolean isHiddenGem() {
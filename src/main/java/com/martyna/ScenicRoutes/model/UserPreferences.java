@@ -9,11 +9,18 @@ public class UserPreferences {
     private Double endLat;
     private Double endLng;
     private Map<POICategory, Double> categoryWeights = new HashMap<>();
+    // The same weights by category ordinal, and the bits of the avoided (weight 0) ones,
+    // so category masks are matched without map lookups
+    private final double[] weightByOrdinal = new double[POICategory.values().length];
+    private long avoidedCategories;
+    private SolverMode solverMode = SolverMode.DEFAULT;
+    private Integer maxComputeMs;
 
     public UserPreferences() {
         // Default: all categories have weight 1.0 (neutral)
         for (POICategory category : POICategory.values()) {
             categoryWeights.put(category, 1.0);
+            weightByOrdinal[category.ordinal()] = 1.0;
         }
     }
 
@@ -24,6 +31,14 @@ public class UserPreferences {
         POINT_TO_POINT
     }
 
+    // How hard to work on the route
+    public enum SolverMode {
+        DEFAULT,    // the shape's own algorithm, run to completion
+        ANYTIME,    // keep improving that route until maxComputeMs
+        PORTFOLIO,  // race several algorithms in parallel, keep the best by maxComputeMs
+        EXACT       // optimal route over the best few reachable POIs, for short walks
+    }
+
     // Enhanced categories
     public enum POICategory {
         // Visual & Photo Spots
@@ -84,6 +99,27 @@ public class UserPreferences {
             }
             return false;
         }
+
+        // Bit of this category in a category mask
+        public long bit() {
+            return 1L << ordinal();
+        }
+
+        // Every category a Google type belongs to, as a mask - 0 for types no category lists
+        public static long maskOf(String googleType) {
+            return MASK_BY_GOOGLE_TYPE.getOrDefault(googleType, 0L);
+        }
+
+        // A type can belong to several categories (observation_deck is also a viewpoint)
+        private static final Map<String, Long> MASK_BY_GOOGLE_TYPE = new HashMap<>();
+
+        static {
+            for (POICategory category : values()) {
+                for (String type : category.googleTypes) {
+                    MASK_BY_GOOGLE_TYPE.merge(type, category.bit(), (a, b) -> a | b);
+                }
+            }
+        }
     }
 
     // Getters and setters
@@ -111,6 +147,22 @@ public class UserPreferences {
         this.endLng = endLng;
     }
 
+    public SolverMode getSolverMode() {
+        return solverMode;
+    }
+
+    public void setSolverMode(SolverMode solverMode) {
+        this.solverMode = solverMode;
+    }
+
+    public Integer getMaxComputeMs() {
+        return maxComputeMs;
+    }
+
+    public void setMaxComputeMs(Integer maxComputeMs) {
+        this.maxComputeMs = maxComputeMs;
+    }
+
     public boolean hasEndPoint() {
         return endLat != null && endLng != null;
     }
@@ -125,6 +177,27 @@ public class UserPreferences {
 
     public void setCategoryWeight(POICategory category, double weight) {
         categoryWeights.put(category, weight);
+        weightByOrdinal[category.ordinal()] = weight;
+        if (weight == 0.0) {
+            avoidedCategories |= category.bit();
+        } else {
+            avoidedCategories &= ~category.bit();
+        }
+    }
+
+    // Mask of the categories weighted 0, which exclude any POI in them
+    public long getAvoidedCategories() {
+        return avoidedCategories;
+    }
+
+    // Highest weight among the categories in the mask; neutral 1.0 for an empty mask
+    public double getMaxCategoryWeight(long categoryMask) {
+        if (categoryMask == 0) return 1.0;
+        double max = Double.NEGATIVE_INFINITY;
+        for (long bits = categoryMask; bits != 0; bits &= bits - 1) {
+            max = Math.max(max, weightByOrdinal[Long.numberOfTrailingZeros(bits)]);
+        }
+        return max;
     }
 
     //Check if user has selected any preferences
@@ -0,0 +1,366 @@
+package com.martyna.ScenicRoutes.routing;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Iterated local search for the orienteering problem behind every route mode: pick and order
+// candidates to maximise total score while the walk (legs plus visits) fits the time limit.
+//
+// It starts from a route another algorithm already built and keeps improving it until a
+// deadline, so callers trade latency for quality. The best feasible route seen is returned,
+// and it is never worse than the (repaired) starting route.
+//
+// Each round runs local search to a local optimum - insert, replace, swap and 2-opt - then
+// perturbs the route by dropping a random stretch of it before searching again.
+public class AnytimeOrienteeringSolver {
+
+    public record Solution(int[] route, int minutes, double score) {
+    }
+
+    // How often the deadline is checked inside local search, in moves
+    private static final int DEADLINE_CHECK_INTERVAL = 16;
+
+    // Rounds in a row without a new best before giving the rest of the budget back
+    private static final int MAX_STALE_ROUNDS = 2000;
+
+    private final RouteEvaluator evaluator;
+    private final double[] scores;
+    private final int timeLimit;
+    private final int candidates;
+    private final int start;
+    private final int end;
+    private final SplittableRandom random;
+
+    private long deadlineNanos;
+    private int movesSinceCheck;
+    private boolean expired;
+
+    // openEnd: the route may stop at its last candidate (one-way walks), so the leg to the
+    // matrix end node costs nothing
+    public AnytimeOrienteeringSolver(
+            TimeMatrix matrix,
+            double[] scores,
+            int visitMinutes,
+            int timeLimit,
+            boolean openEnd,
+            long seed
+    ) {
+        this.evaluator = new RouteEvaluator(matrix, visitMinutes, openEnd);
+        this.scores = scores;
+        this.timeLimit = timeLimit;
+        this.candidates = matrix.candidateCount();
+        this.start = matrix.start();
+        this.end = matrix.end();
+        this.random = new SplittableRandom(seed);
+    }
+
+    public Solution improve(int[] initial, long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+        this.expired = false;
+
+        Route current = new Route(initial);
+        current.repair();
+        Route best = current.copy();
+        int staleRounds = 0;
+
+        while (!pastDeadline()) {
+            localSearch(current);
+            // A perturbed route's shortcuts can be longer than the detours they replace
+            if (current.minutes <= timeLimit && current.isBetterThan(best)) {
+                best = current.copy();
+                staleRounds = 0;
+            } else if (++staleRounds >= MAX_STALE_ROUNDS) {
+                break;
+            }
+
+            if (pastDeadline() || current.length == 0 && !current.canInsertAny()) break;
+
+            // Continue from the best route most of the time, so the walk can't drift far off
+            if (random.nextInt(4) != 0) current = best.copy();
+            current.perturb();
+        }
+
+        return best.toSolution();
+    }
+
+    private void localSearch(Route route) {
+        boolean improved = true;
+        while (improved && !pastDeadline()) {
+            improved = route.insertBest()
+                    || route.replaceBest()
+                    || route.swapBest()
+                    || route.twoOptBest();
+        }
+    }
+
+    // Sticky once reached, so every loop sees it no matter which call read the clock
+    private boolean pastDeadline() {
+        if (expired) return true;
+        if (++movesSinceCheck < DEADLINE_CHECK_INTERVAL) return false;
+        movesSinceCheck = 0;
+        expired = System.nanoTime() >= deadlineNanos;
+        return expired;
+    }
+
+    private final class Route {
+        private final int[] path = new int[candidates];
+        private final boolean[] visited = new boolean[candidates];
+        private int length;
+        private int minutes;
+        private double score;
+
+        Route(int[] initial) {
+            for (int id : initial) {
+                if (id < 0 || id >= candidates || visited[id]) continue;
+                path[length++] = id;
+                visited[id] = true;
+            }
+            recompute();
+        }
+
+        private Route() {
+        }
+
+        Route copy() {
+            Route copy = new Route();
+            System.arraycopy(path, 0, copy.path, 0, length);
+            System.arraycopy(visited, 0, copy.visited, 0, candidates);
+            copy.length = length;
+            copy.minutes = minutes;
+            copy.score = score;
+            return copy;
+        }
+
+        // Higher score wins; on a tie the shorter walk does
+        boolean isBetterThan(Route other) {
+            if (Math.abs(score - other.score) > 1e-9) return score > other.score;
+            return minutes < other.minutes;
+        }
+
+        Solution toSolution() {
+            return new Solution(Arrays.copyOf(path, length), minutes, score);
+        }
+
+        private void recompute() {
+            double total = 0;
+            for (int i = 0; i < length; i++) {
+                total += scores[path[i]];
+            }
+            minutes = evaluator.minutes(path, length);
+            score = total;
+        }
+
+        // Drops the lowest score-per-minute candidates until the route fits
+        void repair() {
+            while (minutes > timeLimit && length > 0) {
+                int worst = 0;
+                double worstRatio = Double.MAX_VALUE;
+                for (int i = 0; i < length; i++) {
+                    int saved = -evaluator.removeDelta(path, length, i);
+                    double ratio = scores[path[i]] / Math.max(1, saved);
+                    if (ratio < worstRatio) {
+                        worstRatio = ratio;
+                        worst = i;
+                    }
+                }
+                removeAt(worst);
+            }
+        }
+
+        boolean canInsertAny() {
+            for (int candidate = 0; candidate < candidates; candidate++) {
+                if (!visited[candidate] && cheapestInsertion(candidate) >= 0) return true;
+            }
+            return false;
+        }
+
+        // Adds the unvisited candidate with the best score per extra minute that still fits
+        boolean insertBest() {
+            int bestCandidate = -1;
+            int bestPosition = -1;
+            double bestRatio = -1;
+
+            for (int candidate = 0; candidate < candidates; candidate++) {
+                if (visited[candidate] || pastDeadline()) continue;
+
+                int position = cheapestInsertion(candidate);
+                if (position < 0) continue;
+
+                double ratio = scores[candidate] / Math.max(1, insertionCost(candidate, position));
+                if (ratio > bestRatio) {
+                    bestRatio = ratio;
+                    bestCandidate = candidate;
+                    bestPosition = position;
+                }
+            }
+
+            if (bestCandidate < 0) return false;
+            insertAt(bestCandidate, bestPosition);
+            return true;
+        }
+
+        // Swaps a visited candidate for a higher-scoring unvisited one in the same spot
+        boolean replaceBest() {
+            int bestPosition = -1;
+            int bestCandidate = -1;
+            double bestGain = 1e-9;
+            int bestMinutes = 0;
+
+            for (int i = 0; i < length; i++) {
+                for (int candidate = 0; candidate < candidates; candidate++) {
+                    if (visited[candidate]) continue;
+
+                    double gain = scores[candidate] - scores[path[i]];
+                    if (gain <= bestGain) continue;
+
+                    int newMinutes = RouteEvaluator.add(minutes, evaluator.replaceDelta(path, length, i, candidate));
+                    if (newMinutes > timeLimit) continue;
+
+                    bestGain = gain;
+                    bestPosition = i;
+                    bestCandidate = candidate;
+                    bestMinutes = newMinutes;
+                }
+                if (pastDeadline()) break;
+            }
+
+            if (bestPosition < 0) return false;
+            visited[path[bestPosition]] = false;
+            path[bestPosition] = bestCandidate;
+            visited[bestCandidate] = true;
+            score += bestGain;
+            minutes = bestMinutes;
+            return true;
+        }
+
+        // Exchanges two visited candidates' positions if that shortens the walk
+        boolean swapBest() {
+            int bestI = -1;
+            int bestJ = -1;
+            int bestMinutes = minutes;
+
+            for (int i = 0; i < length - 1; i++) {
+                for (int j = i + 1; j < length; j++) {
+                    int time = RouteEvaluator.add(minutes, evaluator.swapDelta(path, length, i, j));
+                    if (time < bestMinutes) {
+                        bestMinutes = time;
+                        bestI = i;
+                        bestJ = j;
+                    }
+                }
+                if (pastDeadline()) break;
+            }
+
+            if (bestI < 0) return false;
+            exchange(bestI, bestJ);
+            minutes = bestMinutes;
+            return true;
+        }
+
+        // Reverses the stretch between two positions if that shortens the walk. Leg prefix sums
+        // in both directions, as in RouteImprover, price each reversal in O(1) on asymmetric
+        // matrices, so a pass costs O(k^2).
+        boolean twoOptBest() {
+            if (length < 2) return false;
+
+            // Over start, path, end: forward[t] sums legs node 0 -> t, backward[t] the same
+            // legs walked the other way
+            long[] forward = new long[length + 2];
+            long[] backward = new long[length + 2];
+            for (int t = 1; t <= length + 1; t++) {
+                forward[t] = forward[t - 1] + evaluator.leg(node(t - 1), node(t));
+                backward[t] = backward[t - 1] + evaluator.leg(node(t), node(t - 1));
+            }
+
+            int bestI = -1;
+            int bestJ = -1;
+            long bestDelta = 0;
+
+            // Node positions i..j are path positions i - 1..j - 1
+            for (int i = 1; i < length; i++) {
+                long enter = evaluator.leg(node(i - 1), node(i));
+                for (int j = i + 1; j <= length; j++) {
+                    long before = enter + (forward[j] - forward[i]) + evaluator.leg(node(j), node(j + 1));
+                    long after = (long) evaluator.leg(node(i - 1), node(j))
+                            + (backward[j] - backward[i])
+                            + evaluator.leg(node(i), node(j + 1));
+                    if (after - before < bestDelta) {
+                        bestDelta = after - before;
+                        bestI = i - 1;
+                        bestJ = j - 1;
+                    }
+                }
+                if (pastDeadline()) break;
+            }
+
+            if (bestI < 0) return false;
+            reverse(bestI, bestJ);
+            // Re-evaluated rather than adjusted, so a walk pinned at UNREACHABLE comes out right
+            minutes = evaluator.minutes(path, length);
+            return true;
+        }
+
+        // Start, the path, then the end
+        private int node(int t) {
+            if (t == 0) return start;
+            if (t > length) return end;
+            return path[t - 1];
+        }
+
+        // Drops a random stretch of up to a third of the route
+        void perturb() {
+            if (length == 0) return;
+            int count = 1 + random.nextInt(Math.max(1, length / 3));
+            int from = random.nextInt(length - count + 1);
+            for (int i = 0; i < count; i++) {
+                removeAt(from);
+            }
+        }
+
+        // Position with the fewest extra minutes that keeps the route within the limit, or -1
+        private int cheapestInsertion(int candidate) {
+            int bestPosition = -1;
+            int bestCost = Integer.MAX_VALUE;
+            for (int position = 0; position <= length; position++) {
+                int cost = insertionCost(candidate, position);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestPosition = position;
+                }
+            }
+            if (bestPosition < 0 || RouteEvaluator.add(minutes, bestCost) > timeLimit) return -1;
+            return bestPosition;
+        }
+
+        private int insertionCost(int candidate, int position) {
+            return evaluator.insertDelta(path, length, position, candidate);
+        }
+
+        private void insertAt(int candidate, int position) {
+            minutes = RouteEvaluator.add(minutes, insertionCost(candidate, position));
+            System.arraycopy(path, position, path, position + 1, length - position);
+            path[position] = candidate;
+            visited[candidate] = true;
+            length++;
+            score += scores[candidate];
+        }
+
+        private void removeAt(int position) {
+            int candidate = path[position];
+            System.arraycopy(path, position + 1, path, position, length - position - 1);
+            length--;
+            visited[candidate] = false;
+            recompute();
+        }
+
+        private void exchange(int i, int j) {
+            int tmp = path[i];
+            path[i] = path[j];
+            path[j] = tmp;
+        }
+
+        private void reverse(int i, int j) {
+            while (i < j) exchange(i++, j--);
+        }
+    }
+}
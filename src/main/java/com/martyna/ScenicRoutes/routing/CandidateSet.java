@@ -0,0 +1,105 @@
+package com.martyna.ScenicRoutes.routing;
+
+import com.martyna.ScenicRoutes.model.ScenicPoint;
+import com.martyna.ScenicRoutes.model.UserPreferences;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// One request's candidate POIs as parallel primitive arrays - position, score, weighted score
+// and category mask by candidate id - so selection loops scan flat arrays instead of chasing
+// ScenicPoint references. The points themselves are only needed again to build the route.
+//
+// Ids follow the list it was built from; built from TimeMatrix.candidates() they are the
+// matrix's candidate ids.
+public class CandidateSet {
+
+    private final ScenicPoint[] points;
+    private final double[] lats;
+    private final double[] lngs;
+    private final double[] scores;
+    private final double[] weightedScores;
+    private final long[] categoryMasks;
+
+    private CandidateSet(List<ScenicPoint> points, UserPreferences preferences) {
+        int n = points.size();
+        this.points = points.toArray(new ScenicPoint[0]);
+        this.lats = new double[n];
+        this.lngs = new double[n];
+        this.scores = new double[n];
+        this.weightedScores = new double[n];
+        this.categoryMasks = new long[n];
+
+        for (int i = 0; i < n; i++) {
+            ScenicPoint point = this.points[i];
+            lats[i] = point.getLatitude();
+            lngs[i] = point.getLongitude();
+            scores[i] = point.getScore();
+            categoryMasks[i] = point.categoryMask();
+            // The highest boost among its categories; avoided or unboosted ones never lower it
+            double weight = preferences == null
+                    ? 1.0
+                    : Math.max(1.0, preferences.getMaxCategoryWeight(categoryMasks[i]));
+            weightedScores[i] = scores[i] * weight;
+        }
+    }
+
+    public static CandidateSet of(List<ScenicPoint> points) {
+        return new CandidateSet(points, null);
+    }
+
+    public static CandidateSet of(List<ScenicPoint> points, UserPreferences preferences) {
+        return new CandidateSet(points, preferences);
+    }
+
+    public int size() {
+        return points.length;
+    }
+
+    public ScenicPoint point(int id) {
+        return points[id];
+    }
+
+    public double latitude(int id) {
+        return lats[id];
+    }
+
+    public double longitude(int id) {
+        return lngs[id];
+    }
+
+    public double score(int id) {
+        return scores[id];
+    }
+
+    public double weightedScore(int id) {
+        return weightedScores[id];
+    }
+
+    public long categoryMask(int id) {
+        return categoryMasks[id];
+    }
+
+    // Copy of the scores by id, for the solvers that take them as an array
+    public double[] scores() {
+        return scores.clone();
+    }
+
+    // Points for a route over candidate ids, in route order
+    public List<ScenicPoint> pointsOf(int[] ids) {
+        List<ScenicPoint> route = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            route.add(points[id]);
+        }
+        return route;
+    }
+
+    // Backing arrays, for spatial indexes in this package
+    double[] latitudes() {
+        return lats;
+    }
+
+    double[] longitudes() {
+        return lngs;
+    }
+}
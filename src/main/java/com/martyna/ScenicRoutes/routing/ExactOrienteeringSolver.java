@@ -0,0 +1,186 @@
+package com.martyna.ScenicRoutes.routing;
+
+import java.util.Arrays;
+
+// Exact orienteering for small candidate sets: the highest-scoring route whose walk (legs
+// plus visits) fits the time limit, equal scores going to the shorter walk.
+//
+// Held-Karp style DP over (visited mask, last candidate): the fewest minutes from the start
+// to the last candidate having visited exactly the mask. Masks are processed in increasing
+// order, so every subset is final before its supersets extend it. Paths aren't stored -
+// the winner is traced back through the table once.
+//
+// Table size is 2^n x n ints, which is what caps n: 16 candidates take 4.3 MB and at most
+// 2^16 x 16 x 16 steps, far fewer when the limit keeps most subsets out of reach.
+//
+// Serves both as a solve mode for short walks, where the top few reachable candidates are
+// all that fit anyway, and as the reference the heuristics are checked against.
+public class ExactOrienteeringSolver {
+
+    // 2^16 masks x 16 last nodes x 4 bytes = 4 MB of table per solve, plus 256 KB of reach bits
+    public static final int MAX_CANDIDATES = 16;
+
+    // Masks between deadline checks
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    // exact: false when the deadline cut the DP short; the route is then the best over the
+    // subsets finished so far - still feasible, not necessarily optimal
+    public record Solution(int[] route, int minutes, double score, boolean exact) {
+    }
+
+    private final int candidates;
+    private final int size;
+    private final int start;
+    private final int end;
+    private final int[] travel;
+    private final double[] scores;
+    private final int visitMinutes;
+    private final int timeLimit;
+    private final boolean openEnd;
+
+    // openEnd: the route may stop at its last candidate (one-way walks), so the leg to the
+    // matrix end node costs nothing
+    public ExactOrienteeringSolver(
+            TimeMatrix matrix,
+            double[] scores,
+            int visitMinutes,
+            int timeLimit,
+            boolean openEnd
+    ) {
+        if (matrix.candidateCount() > MAX_CANDIDATES) {
+            throw new IllegalArgumentException(
+                    "At most " + MAX_CANDIDATES + " candidates, got " + matrix.candidateCount());
+        }
+        this.candidates = matrix.candidateCount();
+        this.size = candidates + 2;
+        this.start = matrix.start();
+        this.end = matrix.end();
+        this.travel = matrix.minutes();
+        this.scores = scores;
+        this.visitMinutes = visitMinutes;
+        this.timeLimit = timeLimit;
+        this.openEnd = openEnd;
+    }
+
+    // Returns null if not even the direct walk from start to end fits the limit
+    public Solution solve(long deadlineNanos) {
+        int n = candidates;
+        int masks = 1 << n;
+
+        // Cheapest possible last leg, so prefixes that can't finish in time are dropped early
+        int minToEnd = openEnd ? 0 : UNREACHED;
+        for (int node = 0; node < n && !openEnd; node++) {
+            minToEnd = Math.min(minToEnd, leg(node, end));
+        }
+        int prefixLimit = minToEnd == UNREACHED ? -1 : timeLimit - minToEnd;
+
+        int[] best = new int[masks * n];
+        Arrays.fill(best, UNREACHED);
+        double[] maskScore = new double[masks];
+        // Bit per last candidate with a finite time, so subsets no route can cover
+        // within the limit - most of them on short walks - are skipped in one check
+        int[] reachedLasts = new int[masks];
+
+        for (int node = 0; node < n; node++) {
+            int first = leg(start, node);
+            if (first != UNREACHED && first + visitMinutes <= prefixLimit) {
+                best[(1 << node) * n + node] = first + visitMinutes;
+                reachedLasts[1 << node] = 1 << node;
+            }
+        }
+
+        int directTime = leg(start, end);
+        boolean directFits = openEnd || directTime != UNREACHED && directTime <= timeLimit;
+        int bestMask = directFits ? 0 : -1;
+        int bestLast = -1;
+        int bestMinutes = openEnd ? 0 : directTime;
+        double bestScore = 0;
+
+        boolean exact = true;
+        for (int mask = 1; mask < masks; mask++) {
+            if ((mask & (DEADLINE_CHECK_INTERVAL - 1)) == 0 && System.nanoTime() >= deadlineNanos) {
+                exact = false;
+                break;
+            }
+
+            int lowest = Integer.numberOfTrailingZeros(mask);
+            maskScore[mask] = maskScore[mask & (mask - 1)] + scores[lowest];
+
+            int row = mask * n;
+            for (int lasts = reachedLasts[mask]; lasts != 0; lasts &= lasts - 1) {
+                int last = Integer.numberOfTrailingZeros(lasts);
+                int time = best[row + last];
+
+                // Close the route here
+                int toEnd = openEnd ? 0 : leg(last, end);
+                if (toEnd != UNREACHED && time + toEnd <= timeLimit) {
+                    int total = time + toEnd;
+                    double score = maskScore[mask];
+                    if (bestMask < 0
+                            || score > bestScore + 1e-9
+                            || Math.abs(score - bestScore) <= 1e-9 && total < bestMinutes) {
+                        bestMask = mask;
+                        bestLast = last;
+                        bestMinutes = total;
+                        bestScore = score;
+                    }
+                }
+
+                // Or extend it by one more candidate
+                int from = last * size;
+                for (int next = 0; next < n; next++) {
+                    if ((mask & (1 << next)) != 0) continue;
+                    int step = travel[from + next];
+                    if (step == UNREACHED) continue;
+
+                    int newTime = time + step + visitMinutes;
+                    if (newTime > prefixLimit) continue;
+
+                    int nextMask = mask | (1 << next);
+                    int cell = nextMask * n + next;
+                    if (newTime < best[cell]) {
+                        best[cell] = newTime;
+                        reachedLasts[nextMask] |= 1 << next;
+                    }
+                }
+            }
+        }
+
+        if (bestMask < 0) return null;
+        return new Solution(trace(best, bestMask, bestLast), bestMinutes, bestScore, exact);
+    }
+
+    // Walks the table back from the winning (mask, last) to recover the visiting order
+    private int[] trace(int[] best, int mask, int last) {
+        int n = candidates;
+        int[] route = new int[Integer.bitCount(mask)];
+
+        for (int position = route.length - 1; position >= 0; position--) {
+            route[position] = last;
+            int time = best[mask * n + last];
+            int previousMask = mask & ~(1 << last);
+            if (previousMask == 0) break;
+
+            int previous = -1;
+            for (int candidate = 0; candidate < n; candidate++) {
+                if ((previousMask & (1 << candidate)) == 0) continue;
+                int before = best[previousMask * n + candidate];
+                int step = travel[candidate * size + last];
+                if (before == UNREACHED || step == UNREACHED) continue;
+                if (before + step + visitMinutes == time) {
+                    previous = candidate;
+                    break;
+                }
+            }
+            mask = previousMask;
+            last = previous;
+        }
+        return route;
+    }
+
+    private int leg(int from, int to) {
+        return travel[from * size + to];
+    }
+}
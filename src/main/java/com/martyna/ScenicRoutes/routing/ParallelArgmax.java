@@ -0,0 +1,97 @@
+package com.martyna.ScenicRoutes.routing;
+
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntToDoubleFunction;
+
+// Argmax over candidate ids 0..count-1, the shape of every "pick the best next stop" scan.
+//
+// Small candidate sets run as a plain loop. From the threshold up the range is split into
+// fork-join tasks, which run on the calling pool when already inside one (the portfolio's)
+// and on the common pool otherwise.
+//
+// The result doesn't depend on how the range was split: the highest score wins and equal
+// scores go to the lowest id, exactly like the sequential loop's strict '>'. The scorer
+// runs on several threads, so it must only read shared state.
+public final class ParallelArgmax {
+
+    // Returned when every candidate was skipped
+    public static final int NONE = -1;
+
+    // Scores of this value mark candidates that can't be picked
+    public static final double SKIP = Double.NEGATIVE_INFINITY;
+
+    // Candidates at which splitting pays off for scorers that do constant work per candidate.
+    // A request's candidates come from one nearby search - 60 POIs at most - and every
+    // current scorer is constant work, so requests always take the plain loop. Lowering this
+    // to reach the split would only add fork-join overhead to a scan of a few microseconds;
+    // the split is there for expensive scorers, which pass their own threshold.
+    public static final int DEFAULT_THRESHOLD = 4096;
+
+    private ParallelArgmax() {
+    }
+
+    public static int argmax(int count, IntToDoubleFunction score) {
+        return argmax(count, score, DEFAULT_THRESHOLD);
+    }
+
+    // threshold: smallest count that is split; also the size of the ranges scanned in one go.
+    // Expensive scorers should pass a lower one.
+    public static int argmax(int count, IntToDoubleFunction score, int threshold) {
+        int leafSize = Math.max(1, threshold);
+        if (count < leafSize) return scan(score, 0, count);
+        return new Task(score, 0, count, leafSize).invoke().id;
+    }
+
+    private static int scan(IntToDoubleFunction score, int from, int to) {
+        int bestId = NONE;
+        double bestScore = SKIP;
+        for (int candidate = from; candidate < to; candidate++) {
+            double value = score.applyAsDouble(candidate);
+            // Also drops NaN, which the sequential loops never picked either
+            if (!(value > SKIP)) continue;
+            if (bestId == NONE || value > bestScore) {
+                bestScore = value;
+                bestId = candidate;
+            }
+        }
+        return bestId;
+    }
+
+    private record Best(int id, double score) {
+    }
+
+    private static final class Task extends RecursiveTask<Best> {
+        private final IntToDoubleFunction score;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        Task(IntToDoubleFunction score, int from, int to, int leafSize) {
+            this.score = score;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected Best compute() {
+            if (to - from <= leafSize) {
+                // One extra call per leaf to carry the winner's score up
+                int id = scan(score, from, to);
+                return new Best(id, id == NONE ? SKIP : score.applyAsDouble(id));
+            }
+
+            int middle = (from + to) >>> 1;
+            Task left = new Task(score, from, middle, leafSize);
+            Task right = new Task(score, middle, to, leafSize);
+            right.fork();
+            Best leftBest = left.compute();
+            Best rightBest = right.join();
+
+            // Left holds the lower ids, so it keeps ties
+            if (leftBest.id == NONE) return rightBest;
+            if (rightBest.id == NONE || leftBest.score >= rightBest.score) return leftBest;
+            return rightBest;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.martyna.ScenicRoutes.routing;
+
+import com.martyna.ScenicRoutes.cache.LongPairIntMap;
+
+import java.util.Arrays;
+
+// Best-first search for the point-to-point route that visits the most candidates
+// (then the highest score, then the shortest time) within a time limit.
+//
+// States live in parallel primitive arrays and point at their parent, so expanding one
+// allocates nothing: the visited set is a long bitmask over candidate ids and the path
+// is only rebuilt once, for the winner. A state is dropped when the same node was already
+// reached with the same visited set in no more time - it can't lead anywhere better.
+//
+// Travel times come straight from the request's TimeMatrix, and a route is only accepted
+// when its real total - legs plus visits - fits the limit, so no correction pass is needed.
+public class PointToPointSearch {
+
+    // Bitmask visited sets cap the candidate count
+    public static final int MAX_CANDIDATES = 63;
+
+    // Bounds time and memory (about 15 MB) on very loose budgets; the best route
+    // found when the cap is hit is returned
+    private static final int MAX_STATES = 1 << 18;
+
+    // Expansions between deadline checks
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    public record Result(int[] path, int minutes, double score) {
+    }
+
+    private final int candidates;
+    private final int size;
+    private final int end;
+    private final int[] travel;
+    private final int[] heuristic;
+    private final double[] scores;
+    private final int visitMinutes;
+    private final int timeLimit;
+    private final long deadlineNanos;
+
+    private int[] stateNode;
+    private int[] stateTime;
+    private double[] stateScore;
+    private long[] stateMask;
+    private int[] stateParent;
+    private boolean[] stateStale;
+    private int stateCount;
+
+    // Binary heap of state ids, with each entry's sort key kept alongside it so
+    // sifting never has to reach into the state arrays
+    private int[] heap;
+    private long[] heapOrder;
+    private int heapSize;
+
+    // Fastest known state per (visited mask, node)
+    private final LongPairIntMap bestStates = new LongPairIntMap(1024);
+
+    private int bestEndParent = -1;
+    private int bestEndTime;
+    private double bestEndScore;
+    private int bestEndCount = -1;
+
+    // heuristic: per matrix node, a lower bound on the minutes left to the end,
+    // used only to order the search; scores: per candidate
+    private PointToPointSearch(TimeMatrix matrix, int[] heuristic, double[] scores,
+                               int visitMinutes, int timeLimit, long deadlineNanos) {
+        this.candidates = matrix.candidateCount();
+        this.size = candidates + 2;
+        this.end = matrix.end();
+        this.travel = matrix.minutes();
+        this.heuristic = heuristic;
+        this.scores = scores;
+        this.visitMinutes = visitMinutes;
+        this.timeLimit = timeLimit;
+        this.deadlineNanos = deadlineNanos;
+
+        int initialCapacity = 1024;
+        stateNode = new int[initialCapacity];
+        stateTime = new int[initialCapacity];
+        stateScore = new double[initialCapacity];
+        stateMask = new long[initialCapacity];
+        stateParent = new int[initialCapacity];
+        stateStale = new boolean[initialCapacity];
+        heap = new int[initialCapacity];
+        heapOrder = new long[initialCapacity];
+    }
+
+    // Returns null if not even the direct walk from start to end fits the limit
+    public static Result search(TimeMatrix matrix, int[] heuristic, double[] scores, int visitMinutes, int timeLimit) {
+        return search(matrix, heuristic, scores, visitMinutes, timeLimit, Long.MAX_VALUE);
+    }
+
+    // Like search(), but gives up at deadlineNanos (System.nanoTime) with the best route so far
+    public static Result search(TimeMatrix matrix, int[] heuristic, double[] scores,
+                                int visitMinutes, int timeLimit, long deadlineNanos) {
+        if (matrix.candidateCount() > MAX_CANDIDATES) {
+            throw new IllegalArgumentException(
+                    "At most " + MAX_CANDIDATES + " candidates, got " + matrix.candidateCount());
+        }
+        return new PointToPointSearch(matrix, heuristic, scores, visitMinutes, timeLimit, deadlineNanos).run();
+    }
+
+    private Result run() {
+        int start = end - 1;
+        push(addState(start, 0, 0, 0L, -1));
+
+        int expansions = 0;
+        while (heapSize > 0) {
+            if (++expansions % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() >= deadlineNanos) break;
+
+            int state = pop();
+            int node = stateNode[state];
+            int time = stateTime[state];
+            long mask = stateMask[state];
+
+            // A faster way to this (mask, node) was queued after this one
+            if (stateStale[state]) continue;
+
+            int row = node * size;
+
+            int lastLeg = travel[row + end];
+            if (lastLeg != Integer.MAX_VALUE && time + lastLeg <= timeLimit) offerEnd(state, time + lastLeg);
+
+            for (int next = 0; next < candidates; next++) {
+                if ((mask & (1L << next)) != 0) continue;
+
+                int leg = travel[row + next];
+                if (leg == Integer.MAX_VALUE) continue;
+
+                int newTime = time + leg + visitMinutes;
+                int toEnd = travel[next * size + end];
+                if (toEnd == Integer.MAX_VALUE || newTime + toEnd > timeLimit) continue;
+
+                long newMask = mask | (1L << next);
+                int known = bestStates.get(newMask, next);
+                if (known != LongPairIntMap.NO_VALUE) {
+                    if (stateTime[known] <= newTime) continue;
+                    stateStale[known] = true;
+                }
+
+                if (stateCount == MAX_STATES) return result();
+
+                int child = addState(next, newTime, stateScore[state] + scores[next], newMask, state);
+                bestStates.put(newMask, next, child);
+                push(child);
+            }
+        }
+
+        return result();
+    }
+
+    // More candidates first, then a clearly higher score, then less time
+    private void offerEnd(int state, int endTime) {
+        int count = Long.bitCount(stateMask[state]);
+        double score = stateScore[state];
+
+        boolean better;
+        if (bestEndCount < 0) {
+            better = true;
+        } else if (count != bestEndCount) {
+            better = count > bestEndCount;
+        } else if (Math.abs(score - bestEndScore) > 0.01) {
+            better = score > bestEndScore;
+        } else {
+            better = endTime < bestEndTime;
+        }
+
+        if (better) {
+            bestEndParent = state;
+            bestEndTime = endTime;
+            bestEndScore = score;
+            bestEndCount = count;
+        }
+    }
+
+    private Result result() {
+        if (bestEndCount < 0) return null;
+
+        int[] path = new int[bestEndCount];
+        int state = bestEndParent;
+        for (int i = bestEndCount - 1; i >= 0; i--) {
+            path[i] = stateNode[state];
+            state = stateParent[state];
+        }
+        return new Result(path, bestEndTime, bestEndScore);
+    }
+
+    private int addState(int node, int time, double score, long mask, int parent) {
+        if (stateCount == stateNode.length) {
+            int capacity = stateCount * 2;
+            stateNode = Arrays.copyOf(stateNode, capacity);
+            stateTime = Arrays.copyOf(stateTime, capacity);
+            stateScore = Arrays.copyOf(stateScore, capacity);
+            stateMask = Arrays.copyOf(stateMask, capacity);
+            stateParent = Arrays.copyOf(stateParent, capacity);
+            stateStale = Arrays.copyOf(stateStale, capacity);
+        }
+        stateNode[stateCount] = node;
+        stateTime[stateCount] = time;
+        stateScore[stateCount] = score;
+        stateMask[stateCount] = mask;
+        stateParent[stateCount] = parent;
+        return stateCount++;
+    }
+
+    // Lowest estimated total time pops first, then more candidates visited, then higher score.
+    // The score is a double, so it can't be packed into the key and only breaks exact ties.
+    private long orderOf(int state) {
+        int estimatedTotal = stateTime[state] + heuristic[stateNode[state]];
+        return (long) estimatedTotal << 8 | (MAX_CANDIDATES - Long.bitCount(stateMask[state]));
+    }
+
+    private boolean before(long orderA, int stateA, long orderB, int stateB) {
+        if (orderA != orderB) return orderA < orderB;
+        return stateScore[stateA] > stateScore[stateB];
+    }
+
+    private void push(int state) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+            heapOrder = Arrays.copyOf(heapOrder, heapSize * 2);
+        }
+
+        long order = orderOf(state);
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(order, state, heapOrder[parent], heap[parent])) break;
+            heap[i] = heap[parent];
+            heapOrder[i] = heapOrder[parent];
+            i = parent;
+        }
+        heap[i] = state;
+        heapOrder[i] = order;
+    }
+
+    private int pop() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        long lastOrder = heapOrder[heapSize];
+
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize
+                    && before(heapOrder[child + 1], heap[child + 1], heapOrder[child], heap[child])) child++;
+            if (!before(heapOrder[child], heap[child], lastOrder, last)) break;
+            heap[i] = heap[child];
+            heapOrder[i] = heapOrder[child];
+            i = child;
+        }
+        if (heapSize > 0) {
+            heap[i] = last;
+            heapOrder[i] = lastOrder;
+        }
+        return top;
+    }
+}
@@ -0,0 +1,153 @@
+package com.martyna.ScenicRoutes.routing;
+
+// Walking time of routes over one request's TimeMatrix: legs from the start through the
+// stops to the end, plus a fixed visit at every stop. Routes are candidate id arrays with
+// an explicit length, so solvers can evaluate their working arrays without copying them.
+//
+// Besides the full evaluation it prices single changes - insert, remove, replace, swap -
+// in O(1) from the legs around them, for local-search inner loops.
+//
+// Unreachable legs are Integer.MAX_VALUE in the matrix. Totals that include one stay
+// pinned at UNREACHABLE, and a change that would add one is priced UNREACHABLE.
+public class RouteEvaluator {
+
+    // Minutes spent at each stop, the same in every route mode
+    public static final int VISIT_MINUTES = 5;
+
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final int size;
+    private final int start;
+    private final int end;
+    private final int[] travel;
+    private final int visitMinutes;
+    private final boolean openEnd;
+
+    // openEnd: the route may stop at its last candidate (one-way walks), so the leg to the
+    // matrix end node costs nothing
+    public RouteEvaluator(TimeMatrix matrix, int visitMinutes, boolean openEnd) {
+        this.size = matrix.candidateCount() + 2;
+        this.start = matrix.start();
+        this.end = matrix.end();
+        this.travel = matrix.minutes();
+        this.visitMinutes = visitMinutes;
+        this.openEnd = openEnd;
+    }
+
+    public int visitMinutes() {
+        return visitMinutes;
+    }
+
+    public int leg(int from, int to) {
+        if (openEnd && to == end) return 0;
+        return travel[from * size + to];
+    }
+
+    public int minutes(int[] route) {
+        return minutes(route, route.length);
+    }
+
+    // Legs plus visits over the first length ids of route
+    public int minutes(int[] route, int length) {
+        return add(legMinutes(route, length), length * visitMinutes);
+    }
+
+    // Legs only, over the first length ids of route
+    public int legMinutes(int[] route, int length) {
+        int total = 0;
+        int current = start;
+        for (int i = 0; i < length; i++) {
+            total = add(total, leg(current, route[i]));
+            current = route[i];
+        }
+        return add(total, leg(current, end));
+    }
+
+    // Change in minutes from putting candidate before position (length appends it)
+    public int insertDelta(int[] route, int length, int position, int candidate) {
+        int previous = node(route, length, position - 1);
+        int next = node(route, length, position);
+        int in = leg(previous, candidate);
+        int out = leg(candidate, next);
+        if (in == UNREACHABLE || out == UNREACHABLE) return UNREACHABLE;
+        return clamp((long) in + out + visitMinutes - leg(previous, next));
+    }
+
+    // Change in minutes from dropping the stop at position - negative, unless the
+    // shortcut around it is longer than the detour through it
+    public int removeDelta(int[] route, int length, int position) {
+        int previous = node(route, length, position - 1);
+        int next = node(route, length, position + 1);
+        int shortcut = leg(previous, next);
+        if (shortcut == UNREACHABLE) return UNREACHABLE;
+        return clamp((long) shortcut - leg(previous, route[position]) - leg(route[position], next) - visitMinutes);
+    }
+
+    // Change in minutes from visiting candidate instead of the stop at position
+    public int replaceDelta(int[] route, int length, int position, int candidate) {
+        int previous = node(route, length, position - 1);
+        int next = node(route, length, position + 1);
+        int in = leg(previous, candidate);
+        int out = leg(candidate, next);
+        if (in == UNREACHABLE || out == UNREACHABLE) return UNREACHABLE;
+        return clamp((long) in + out - leg(previous, route[position]) - leg(route[position], next));
+    }
+
+    // Change in minutes from exchanging the stops at positions i and j
+    public int swapDelta(int[] route, int length, int i, int j) {
+        if (i == j) return 0;
+        if (i > j) {
+            int tmp = i;
+            i = j;
+            j = tmp;
+        }
+        int a = route[i];
+        int b = route[j];
+        int beforeA = node(route, length, i - 1);
+        int afterB = node(route, length, j + 1);
+
+        long before;
+        long after;
+        if (j == i + 1) {
+            before = (long) leg(beforeA, a) + leg(a, b) + leg(b, afterB);
+            after = checked(leg(beforeA, b), leg(b, a), leg(a, afterB));
+        } else {
+            int afterA = route[i + 1];
+            int beforeB = route[j - 1];
+            before = (long) leg(beforeA, a) + leg(a, afterA) + leg(beforeB, b) + leg(b, afterB);
+            after = checked(leg(beforeA, b), leg(b, afterA), leg(beforeB, a), leg(a, afterB));
+        }
+        if (after == UNREACHABLE) return UNREACHABLE;
+        return clamp(after - before);
+    }
+
+    // Unreachable legs are Integer.MAX_VALUE; keep sums pinned there instead of overflowing
+    public static int add(int a, int b) {
+        if (a == UNREACHABLE || b == UNREACHABLE) return UNREACHABLE;
+        return a + b;
+    }
+
+    // Node at a route position: the start before it, the end after it
+    private int node(int[] route, int length, int position) {
+        if (position < 0) return start;
+        if (position >= length) return end;
+        return route[position];
+    }
+
+    // Sum of new legs, or UNREACHABLE if any of them is
+    private static long checked(int a, int b, int c) {
+        if (a == UNREACHABLE || b == UNREACHABLE || c == UNREACHABLE) return UNREACHABLE;
+        return (long) a + b + c;
+    }
+
+    private static long checked(int a, int b, int c, int d) {
+        if (d == UNREACHABLE) return UNREACHABLE;
+        long first = checked(a, b, c);
+        return first == UNREACHABLE ? UNREACHABLE : first + d;
+    }
+
+    // Removing an unreachable leg is a huge but finite saving
+    private static int clamp(long delta) {
+        return (int) Math.max(-UNREACHABLE, Math.min(UNREACHABLE - 1, delta));
+    }
+}
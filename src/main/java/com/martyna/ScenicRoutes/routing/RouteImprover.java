@@ -0,0 +1,181 @@
+package com.martyna.ScenicRoutes.routing;
+
+import java.util.Arrays;
+
+// Reorders a finished route's stops to shorten its walk, keeping the same stops.
+// Visits cost the same in any order, so only the legs between them change.
+//
+// Moves, best one per pass until none helps:
+// - 2-opt: reverse a stretch of the route
+// - relocate: move one stop elsewhere
+// - Or-opt: move a chain of two or three stops elsewhere, either way round
+//
+// Times come from the TimeMatrix and need not be symmetric. Forward and backward prefix
+// sums of the legs are kept for the current order, so every move - reversals included - is
+// priced in O(1) and a pass over a route of k stops costs O(k^2).
+public class RouteImprover {
+
+    // Longest chain Or-opt moves in one piece
+    private static final int MAX_CHAIN = 3;
+
+    // Bounds the work on pathological inputs; real routes settle in a few dozen moves
+    private static final int MAX_MOVES = 1000;
+
+    // Legs only: visits cost the same in any order
+    private final RouteEvaluator evaluator;
+    private final int start;
+    private final int end;
+    private final boolean openEnd;
+
+    // Current order with start and end around it, and its leg prefix sums in both directions
+    private int[] nodes;
+    private long[] forward;
+    private long[] backward;
+    private int last;
+
+    // openEnd: the route may stop at its last candidate (one-way walks), so the leg to the
+    // matrix end node costs nothing
+    public RouteImprover(TimeMatrix matrix, boolean openEnd) {
+        this.evaluator = new RouteEvaluator(matrix, 0, openEnd);
+        this.start = matrix.start();
+        this.end = matrix.end();
+        this.openEnd = openEnd;
+    }
+
+    // The same candidate ids in an order whose walk is never longer
+    public int[] improve(int[] route) {
+        int k = route.length;
+        if (k < 2) return route.clone();
+
+        nodes = new int[k + 2];
+        nodes[0] = start;
+        System.arraycopy(route, 0, nodes, 1, k);
+        nodes[k + 1] = end;
+        last = k + 1;
+        forward = new long[k + 2];
+        backward = new long[k + 2];
+        recomputePrefixes();
+
+        for (int moves = 0; moves < MAX_MOVES; moves++) {
+            if (!applyBestMove()) break;
+        }
+
+        return Arrays.copyOfRange(nodes, 1, k + 1);
+    }
+
+    private boolean applyBestMove() {
+        long bestDelta = 0;
+        int bestKind = -1;
+        int bestFrom = 0, bestTo = 0, bestAt = 0;
+
+        // 2-opt: reverse positions i..j
+        for (int i = 1; i < last - 1; i++) {
+            for (int j = i + 1; j < last; j++) {
+                long delta = reversalDelta(i, j);
+                if (delta < bestDelta) {
+                    bestDelta = delta;
+                    bestKind = 0;
+                    bestFrom = i;
+                    bestTo = j;
+                }
+            }
+        }
+
+        // Relocate and Or-opt: move positions s..e to between q and q + 1, as is or reversed
+        for (int s = 1; s < last; s++) {
+            for (int e = s; e < Math.min(last, s + MAX_CHAIN); e++) {
+                long removed = leg(nodes[s - 1], nodes[s]) + leg(nodes[e], nodes[e + 1])
+                        - leg(nodes[s - 1], nodes[e + 1]);
+                long reversedInside = (backward[e] - backward[s]) - (forward[e] - forward[s]);
+
+                for (int q = 0; q < last; q++) {
+                    if (q >= s - 1 && q <= e) continue;
+                    long gap = leg(nodes[q], nodes[q + 1]);
+
+                    long delta = leg(nodes[q], nodes[s]) + leg(nodes[e], nodes[q + 1]) - gap - removed;
+                    if (delta < bestDelta) {
+                        bestDelta = delta;
+                        bestKind = 1;
+                        bestFrom = s;
+                        bestTo = e;
+                        bestAt = q;
+                    }
+
+                    if (e > s) {
+                        long flipped = leg(nodes[q], nodes[e]) + leg(nodes[s], nodes[q + 1]) - gap - removed
+                                + reversedInside;
+                        if (flipped < bestDelta) {
+                            bestDelta = flipped;
+                            bestKind = 2;
+                            bestFrom = s;
+                            bestTo = e;
+                            bestAt = q;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (bestKind < 0) return false;
+        if (bestKind == 0) {
+            reverse(bestFrom, bestTo);
+        } else {
+            moveChain(bestFrom, bestTo, bestAt, bestKind == 2);
+        }
+        recomputePrefixes();
+        return true;
+    }
+
+    // Change in walk length from reversing positions i..j
+    private long reversalDelta(int i, int j) {
+        long before = leg(nodes[i - 1], nodes[i]) + (forward[j] - forward[i]) + leg(nodes[j], nodes[j + 1]);
+        long after = leg(nodes[i - 1], nodes[j]) + (backward[j] - backward[i]) + leg(nodes[i], nodes[j + 1]);
+        return after - before;
+    }
+
+    private void reverse(int i, int j) {
+        while (i < j) {
+            int swap = nodes[i];
+            nodes[i++] = nodes[j];
+            nodes[j--] = swap;
+        }
+    }
+
+    // Moves positions s..e to sit between positions q and q + 1 of the current order
+    private void moveChain(int s, int e, int q, boolean flip) {
+        int[] chain = Arrays.copyOfRange(nodes, s, e + 1);
+        if (flip) {
+            for (int a = 0, b = chain.length - 1; a < b; a++, b--) {
+                int swap = chain[a];
+                chain[a] = chain[b];
+                chain[b] = swap;
+            }
+        }
+
+        int length = chain.length;
+        if (q < s) {
+            // Shift q + 1..s - 1 right to open the gap
+            System.arraycopy(nodes, q + 1, nodes, q + 1 + length, s - q - 1);
+            System.arraycopy(chain, 0, nodes, q + 1, length);
+        } else {
+            // Shift e + 1..q left to close the old place
+            System.arraycopy(nodes, e + 1, nodes, s, q - e);
+            System.arraycopy(chain, 0, nodes, q - length + 1, length);
+        }
+    }
+
+    private void recomputePrefixes() {
+        for (int t = 1; t <= last; t++) {
+            forward[t] = forward[t - 1] + leg(nodes[t - 1], nodes[t]);
+            backward[t] = backward[t - 1] + leg(nodes[t], nodes[t - 1]);
+        }
+    }
+
+    // Widened so an unreachable leg (Integer.MAX_VALUE) is large enough that no move ever
+    // adds one, yet small enough to sum safely. The backward sums walk away from the end,
+    // which is free too when the route is open-ended.
+    private long leg(int from, int to) {
+        if (openEnd && from == end) return 0;
+        return evaluator.leg(from, to);
+    }
+}
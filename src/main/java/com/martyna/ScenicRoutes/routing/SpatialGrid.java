@@ -0,0 +1,229 @@
+package com.martyna.ScenicRoutes.routing;
+
+import java.util.Arrays;
+
+// Uniform lat/lng grid over one request's points, for "what's near here" questions that
+// would otherwise scan every point. Ids are positions in the arrays or candidate set it was built from.
+//
+// Cells are square in meters at the grid's most poleward latitude, so a cell never spans
+// more than cellMeters. Distances are the same haversine the services use. Points that
+// straddle the antimeridian aren't handled - a request's POIs never do.
+public class SpatialGrid {
+
+    private static final double EARTH_RADIUS_METERS = 6371000;
+    private static final double METERS_PER_DEGREE_LAT = EARTH_RADIUS_METERS * Math.PI / 180;
+
+    // Cells per point at most, so widely spread points (multi-city) get coarser cells
+    // instead of a huge mostly empty grid
+    private static final int MAX_CELLS_PER_POINT = 4;
+
+    // Covers the gap between flat cell boxes and great-circle distances at city scale
+    private static final double SLACK = 1.01;
+
+    private final double[] lats;
+    private final double[] lngs;
+    private final double minLat;
+    private final double minLng;
+    private final double cellLat;
+    private final double cellLng;
+    private final double cellMeters;
+    // Cosine of the latitude the cells were sized at
+    private final double cellCos;
+    private final int rows;
+    private final int cols;
+
+    // Ids of cell c are cellIds[cellStart[c]..cellStart[c + 1]), ascending
+    private final int[] cellStart;
+    private final int[] cellIds;
+
+    public SpatialGrid(double[] lats, double[] lngs, double cellMeters) {
+        this.lats = lats;
+        this.lngs = lngs;
+        int n = lats.length;
+
+        double loLat = Double.MAX_VALUE, hiLat = -Double.MAX_VALUE;
+        double loLng = Double.MAX_VALUE, hiLng = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            loLat = Math.min(loLat, lats[i]);
+            hiLat = Math.max(hiLat, lats[i]);
+            loLng = Math.min(loLng, lngs[i]);
+            hiLng = Math.max(hiLng, lngs[i]);
+        }
+        if (n == 0) {
+            loLat = hiLat = loLng = hiLng = 0;
+        }
+        this.minLat = loLat;
+        this.minLng = loLng;
+
+        double cosLat = Math.cos(Math.toRadians(Math.min(89, Math.max(Math.abs(loLat), Math.abs(hiLat)))));
+        double heightMeters = (hiLat - loLat) * METERS_PER_DEGREE_LAT;
+        double widthMeters = (hiLng - loLng) * METERS_PER_DEGREE_LAT * cosLat;
+
+        // Grow the cells until the grid stays within its cell budget
+        double size = Math.max(1, cellMeters);
+        long maxCells = (long) MAX_CELLS_PER_POINT * Math.max(1, n);
+        while (cellsFor(heightMeters, size) * cellsFor(widthMeters, size) > maxCells) {
+            size *= 2;
+        }
+        this.cellMeters = size;
+        this.rows = (int) cellsFor(heightMeters, size);
+        this.cols = (int) cellsFor(widthMeters, size);
+        this.cellLat = size / METERS_PER_DEGREE_LAT;
+        this.cellLng = size / (METERS_PER_DEGREE_LAT * cosLat);
+        this.cellCos = cosLat;
+
+        // Counting sort of ids into cells, which keeps each cell's ids ascending
+        int[] cellOf = new int[n];
+        this.cellStart = new int[rows * cols + 1];
+        for (int i = 0; i < n; i++) {
+            cellOf[i] = row(lats[i]) * cols + col(lngs[i]);
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < rows * cols; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        this.cellIds = new int[n];
+        int[] fill = Arrays.copyOf(cellStart, rows * cols);
+        for (int i = 0; i < n; i++) {
+            cellIds[fill[cellOf[i]]++] = i;
+        }
+    }
+
+    // Over a candidate set's own coordinate arrays; ids are its candidate ids
+    public static SpatialGrid of(CandidateSet candidates, double cellMeters) {
+        return new SpatialGrid(candidates.latitudes(), candidates.longitudes(), cellMeters);
+    }
+
+    public int size() {
+        return lats.length;
+    }
+
+    // Ids closer than radiusMeters to the given spot, ascending
+    public int[] within(double lat, double lng, double radiusMeters) {
+        int rowSpan = (int) Math.ceil(radiusMeters * SLACK / cellMeters);
+        int colSpan = (int) Math.ceil(radiusMeters * SLACK / cellMeters * lngStretch(lat));
+        int centerRow = rawRow(lat);
+        int centerCol = rawCol(lng);
+
+        int[] found = new int[8];
+        int count = 0;
+        for (int r = Math.max(0, centerRow - rowSpan); r <= Math.min(rows - 1, centerRow + rowSpan); r++) {
+            for (int c = Math.max(0, centerCol - colSpan); c <= Math.min(cols - 1, centerCol + colSpan); c++) {
+                int cell = r * cols + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int id = cellIds[k];
+                    if (distanceMeters(lat, lng, lats[id], lngs[id]) >= radiusMeters) continue;
+                    if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                    found[count++] = id;
+                }
+            }
+        }
+
+        int[] result = Arrays.copyOf(found, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    // Up to k ids nearest to the given spot, closest first, equal distances by id.
+    // Ids marked in excluded (may be null) are never returned.
+    public int[] nearest(double lat, double lng, int k, boolean[] excluded) {
+        int[] bestIds = new int[Math.max(0, k)];
+        double[] bestDistances = new double[bestIds.length];
+        int found = 0;
+        if (bestIds.length == 0 || lats.length == 0) return new int[0];
+
+        int centerRow = rawRow(lat);
+        int centerCol = rawCol(lng);
+        // Rings past this one lie entirely outside the grid
+        int lastRing = Math.max(
+                Math.max(centerRow, rows - 1 - centerRow),
+                Math.max(centerCol, cols - 1 - centerCol)
+        );
+        // Meters between the spot and ring r's inner edge are at least (r - 1) of these
+        double ringMeters = cellMeters / lngStretch(lat) / SLACK;
+
+        for (int ring = 0; ring <= lastRing; ring++) {
+            if (found == bestIds.length && (ring - 1) * ringMeters > bestDistances[found - 1]) break;
+
+            for (int r = centerRow - ring; r <= centerRow + ring; r++) {
+                if (r < 0 || r >= rows) continue;
+                boolean edgeRow = r == centerRow - ring || r == centerRow + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int c = centerCol - ring; c <= centerCol + ring; c += Math.max(1, step)) {
+                    if (c < 0 || c >= cols) continue;
+                    int cell = r * cols + c;
+                    for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                        int id = cellIds[p];
+                        if (excluded != null && excluded[id]) continue;
+
+                        double distance = distanceMeters(lat, lng, lats[id], lngs[id]);
+                        if (found == bestIds.length && !closer(distance, id, bestDistances[found - 1], bestIds[found - 1])) {
+                            continue;
+                        }
+
+                        // Insertion into the sorted best-k arrays
+                        int at = found == bestIds.length ? found - 1 : found++;
+                        while (at > 0 && closer(distance, id, bestDistances[at - 1], bestIds[at - 1])) {
+                            bestIds[at] = bestIds[at - 1];
+                            bestDistances[at] = bestDistances[at - 1];
+                            at--;
+                        }
+                        bestIds[at] = id;
+                        bestDistances[at] = distance;
+                    }
+                }
+            }
+        }
+
+        return Arrays.copyOf(bestIds, found);
+    }
+
+    // Nearest id that isn't excluded, or -1 if there is none
+    public int nearest(double lat, double lng, boolean[] excluded) {
+        int[] ids = nearest(lat, lng, 1, excluded);
+        return ids.length > 0 ? ids[0] : -1;
+    }
+
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double lat1Rad = Math.toRadians(lat1);
+        double lat2Rad = Math.toRadians(lat2);
+        double deltaLat = Math.toRadians(lat2 - lat1);
+        double deltaLon = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
+                Math.cos(lat1Rad) * Math.cos(lat2Rad) *
+                        Math.sin(deltaLon / 2) * Math.sin(deltaLon / 2);
+
+        return EARTH_RADIUS_METERS * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    private static boolean closer(double distance, int id, double otherDistance, int otherId) {
+        return distance < otherDistance || (distance == otherDistance && id < otherId);
+    }
+
+    private static long cellsFor(double meters, double cellMeters) {
+        return (long) (meters / cellMeters) + 1;
+    }
+
+    // Columns per cellMeters of east-west distance around a query latitude: more than one
+    // when the query lies further from the equator than any of the grid's points
+    private double lngStretch(double lat) {
+        return Math.max(1, cellCos / Math.cos(Math.toRadians(Math.min(89, Math.abs(lat)))));
+    }
+
+    private int rawRow(double lat) {
+        return (int) Math.floor((lat - minLat) / cellLat);
+    }
+
+    private int rawCol(double lng) {
+        return (int) Math.floor((lng - minLng) / cellLng);
+    }
+
+    private int row(double lat) {
+        return Math.min(rows - 1, Math.max(0, rawRow(lat)));
+    }
+
+    private int col(double lng) {
+        return Math.min(cols - 1, Math.max(0, rawCol(lng)));
+    }
+}
@@ -0,0 +1,140 @@
+package com.martyna.ScenicRoutes.routing;
+
+import com.martyna.ScenicRoutes.model.ScenicPoint;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+// Walking times between all candidates of one request, plus its start and end, in a flat int[].
+// Built once per request so route algorithms read times with plain array access
+// instead of going through the shared cache inside their nested loops.
+//
+// Node ids: 0..candidateCount()-1 are candidates, then start(), then end().
+public class TimeMatrix {
+
+    // Fills a row-major n x n matrix of walking minutes between the given points
+    @FunctionalInterface
+    public interface Source {
+        int[] walkingTimes(double[] lats, double[] lngs);
+    }
+
+    private final List<ScenicPoint> candidates;
+    private final Map<ScenicPoint, Integer> ids;
+    private final double[] lats;
+    private final double[] lngs;
+    private final int size;
+    private final int[] minutes;
+
+    private TimeMatrix(List<ScenicPoint> candidates, double[] lats, double[] lngs, int[] minutes) {
+        this.candidates = candidates;
+        this.lats = lats;
+        this.lngs = lngs;
+        this.size = lats.length;
+        this.minutes = minutes;
+        this.ids = new HashMap<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            ids.put(candidates.get(i), i);
+        }
+    }
+
+    // Duplicate candidates are dropped, keeping the first occurrence
+    public static TimeMatrix build(
+            double startLat, double startLng,
+            double endLat, double endLng,
+            List<ScenicPoint> candidates,
+            Source source
+    ) {
+        List<ScenicPoint> unique = new ArrayList<>(new LinkedHashSet<>(candidates));
+        int n = unique.size();
+
+        double[] lats = new double[n + 2];
+        double[] lngs = new double[n + 2];
+        for (int i = 0; i < n; i++) {
+            lats[i] = unique.get(i).getLatitude();
+            lngs[i] = unique.get(i).getLongitude();
+        }
+        lats[n] = startLat;
+        lngs[n] = startLng;
+        lats[n + 1] = endLat;
+        lngs[n + 1] = endLng;
+
+        return new TimeMatrix(unique, lats, lngs, source.walkingTimes(lats, lngs));
+    }
+
+    // Smaller matrix over some of this one's candidates, same start and end, no new lookups
+    public TimeMatrix subset(List<ScenicPoint> points) {
+        List<ScenicPoint> kept = new ArrayList<>();
+        for (ScenicPoint point : new LinkedHashSet<>(points)) {
+            if (idOf(point) >= 0) kept.add(point);
+        }
+
+        int n = kept.size();
+        int[] nodes = new int[n + 2];
+        double[] subLats = new double[n + 2];
+        double[] subLngs = new double[n + 2];
+        for (int i = 0; i < n; i++) {
+            nodes[i] = idOf(kept.get(i));
+        }
+        nodes[n] = start();
+        nodes[n + 1] = end();
+        for (int i = 0; i < n + 2; i++) {
+            subLats[i] = lats[nodes[i]];
+            subLngs[i] = lngs[nodes[i]];
+        }
+
+        int subSize = n + 2;
+        int[] subMinutes = new int[subSize * subSize];
+        for (int i = 0; i < subSize; i++) {
+            for (int j = 0; j < subSize; j++) {
+                subMinutes[i * subSize + j] = time(nodes[i], nodes[j]);
+            }
+        }
+        return new TimeMatrix(kept, subLats, subLngs, subMinutes);
+    }
+
+    public int time(int from, int to) {
+        return minutes[from * size + to];
+    }
+
+    // The backing array, row-major over node ids, for search loops in this package
+    int[] minutes() {
+        return minutes;
+    }
+
+    public int candidateCount() {
+        return candidates.size();
+    }
+
+    public int start() {
+        return size - 2;
+    }
+
+    public int end() {
+        return size - 1;
+    }
+
+    public ScenicPoint candidate(int id) {
+        return candidates.get(id);
+    }
+
+    public List<ScenicPoint> candidates() {
+        return candidates;
+    }
+
+    // Candidate id of a point, or -1 if it isn't part of this matrix
+    public int idOf(ScenicPoint point) {
+        Integer id = ids.get(point);
+        return id != null ? id : -1;
+    }
+
+    public double latitude(int node) {
+        return lats[node];
+    }
+
+    public double longitude(int node) {
+        return lngs[node];
+    }
+}
@@ -0,0 +1,102 @@
+package com.martyna.ScenicRoutes.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// The one HTTP client behind the Google services. A single JDK HttpClient keeps its
+// connections alive and pools them across calls and services; sends never block the caller,
+// they return futures, and every call states its own timeout.
+//
+// Failures surface as the exceptions RestTemplate threw, so GlobalExceptionHandler maps
+// them as before: 4xx/5xx responses as HttpClient/HttpServerErrorException, network
+// failures and timeouts as ResourceAccessException.
+final class GoogleHttpClient {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .connectTimeout(CONNECT_TIMEOUT)
+            .build();
+
+    private GoogleHttpClient() {
+    }
+
+    // POST a JSON body with the API key and field mask headers the Routes API wants
+    static CompletableFuture<byte[]> postJson(String url, byte[] body, String apiKey,
+                                              String fieldMask, Duration timeout) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("X-Goog-Api-Key", apiKey)
+                .header("X-Goog-FieldMask", fieldMask)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return send(request);
+    }
+
+    static CompletableFuture<byte[]> get(String url, Duration timeout) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .GET()
+                .build();
+        return send(request);
+    }
+
+    // Waits for a call, rethrowing its failure as it was raised rather than wrapped
+    static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    // Bodies stay bytes; GoogleJsonReader parses them without decoding to a String first
+    private static CompletableFuture<byte[]> send(HttpRequest request) {
+        return CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, failure) -> {
+                    if (failure != null) throw translate(request, failure);
+                    return checkStatus(response);
+                });
+    }
+
+    private static byte[] checkStatus(HttpResponse<byte[]> response) {
+        int status = response.statusCode();
+        if (status < 400) return response.body();
+
+        HttpStatusCode code = HttpStatusCode.valueOf(status);
+        byte[] body = response.body();
+        HttpHeaders headers = new HttpHeaders();
+        response.headers().map().forEach(headers::addAll);
+
+        if (code.is4xxClientError()) {
+            throw HttpClientErrorException.create(code, "", headers, body, StandardCharsets.UTF_8);
+        }
+        throw HttpServerErrorException.create(code, "", headers, body, StandardCharsets.UTF_8);
+    }
+
+    private static RuntimeException translate(HttpRequest request, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause()
+                : failure;
+        if (cause instanceof RuntimeException runtime) return runtime;
+
+        String message = "I/O error on " + request.method() + " request for \"" + request.uri() + "\"";
+        if (cause instanceof IOException io) return new ResourceAccessException(message + ": " + io.getMessage(), io);
+        return new ResourceAccessException(message + ": " + cause.getMessage());
+    }
+}
@@ -0,0 +1,269 @@
+package com.martyna.ScenicRoutes.service;
+
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.core.ObjectReadContext;
+import tools.jackson.core.json.JsonFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Reads the few fields we use out of Google's responses with a streaming pull parser,
+// straight from the response bytes. Everything else (viewports, icons, opening hours,
+// attributions...) is skipped token by token instead of being built into a JSONObject tree.
+public final class GoogleJsonReader {
+
+    // Thread-safe once built; parsers are per call
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private GoogleJsonReader() {
+    }
+
+    // One Places nearby-search result, as far as we read it. Rating is 3.0 when Google has none.
+    public record PlaceResult(String name, double latitude, double longitude,
+                              double rating, int reviewCount,
+                              String photoReference, List<String> types) {
+    }
+
+    // nextPageToken is null on the last page. Status is Google's, e.g. INVALID_REQUEST
+    // for a page token used before it became valid.
+    public record PlacesPage(List<PlaceResult> results, String nextPageToken, String status) {
+    }
+
+    // A nearby-search page. Results without a name or location are dropped.
+    public static PlacesPage readPlacesPage(byte[] json) {
+        try (JsonParser parser = JSON.createParser(ObjectReadContext.empty(), json)) {
+            List<PlaceResult> results = new ArrayList<>();
+            String nextPageToken = null;
+            String status = null;
+
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals("results") && value == JsonToken.START_ARRAY) {
+                    while (nextElement(parser)) {
+                        PlaceResult place = readPlace(parser);
+                        if (place != null) results.add(place);
+                    }
+                } else if (field.equals("next_page_token")) {
+                    nextPageToken = parser.getValueAsString();
+                } else if (field.equals("status")) {
+                    status = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return new PlacesPage(results, nextPageToken, status);
+        }
+    }
+
+    // computeRoutes with field mask routes.duration: the first route's minutes,
+    // Integer.MAX_VALUE if Google found none (it then leaves routes out or empty)
+    public static int readRouteMinutes(byte[] json) {
+        try (JsonParser parser = JSON.createParser(ObjectReadContext.empty(), json)) {
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals("routes") && value == JsonToken.START_ARRAY) {
+                    if (parser.nextToken() != JsonToken.START_OBJECT) return Integer.MAX_VALUE;
+                    String duration = readFirstRouteField(parser, "duration");
+                    return duration != null ? minutes(duration) : Integer.MAX_VALUE;
+                }
+                parser.skipChildren();
+            }
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    // computeRouteMatrix: [origin][destination] minutes, Integer.MAX_VALUE where no route exists.
+    // One element per cell; zero-valued indices are omitted from the JSON. A cell only gets a
+    // time when its condition is ROUTE_EXISTS and its status carries no error code - a failed
+    // element has neither a condition nor a duration, which must not read as 0 minutes.
+    public static int[][] readRouteMatrix(byte[] json, int originCount, int destinationCount) {
+        int[][] minutes = new int[originCount][destinationCount];
+        for (int[] row : minutes) Arrays.fill(row, Integer.MAX_VALUE);
+
+        try (JsonParser parser = JSON.createParser(ObjectReadContext.empty(), json)) {
+            expect(parser, JsonToken.START_ARRAY);
+            while (nextElement(parser)) {
+                int origin = 0;
+                int destination = 0;
+                String duration = null;
+                boolean routeExists = false;
+                int statusCode = 0;
+
+                while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    switch (field) {
+                        case "originIndex" -> origin = parser.getIntValue();
+                        case "destinationIndex" -> destination = parser.getIntValue();
+                        case "duration" -> duration = parser.getValueAsString();
+                        case "condition" -> routeExists = "ROUTE_EXISTS".equals(parser.getValueAsString());
+                        case "status" -> {
+                            if (value == JsonToken.START_OBJECT) statusCode = readStatusCode(parser);
+                            else parser.skipChildren();
+                        }
+                        default -> parser.skipChildren();
+                    }
+                }
+
+                if (routeExists && statusCode == 0 && duration != null) {
+                    minutes[origin][destination] = minutes(duration);
+                }
+            }
+        }
+        return minutes;
+    }
+
+    // computeRoutes with field mask routes.polyline.encodedPolyline: the first route's polyline
+    public static String readEncodedPolyline(byte[] json) {
+        try (JsonParser parser = JSON.createParser(ObjectReadContext.empty(), json)) {
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals("routes") && value == JsonToken.START_ARRAY
+                        && parser.nextToken() == JsonToken.START_OBJECT) {
+                    String polyline = readFirstRouteField(parser, "polyline");
+                    if (polyline != null) return polyline;
+                    break;
+                }
+                parser.skipChildren();
+            }
+        }
+        throw new IllegalStateException("Google returned no walking route");
+    }
+
+    // Inside a place object, up to and including its END_OBJECT
+    private static PlaceResult readPlace(JsonParser parser) {
+        String name = null;
+        double lat = Double.NaN;
+        double lng = Double.NaN;
+        double rating = 3.0;
+        int reviewCount = 0;
+        String photoReference = null;
+        List<String> types = new ArrayList<>();
+
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "name" -> name = parser.getValueAsString();
+                case "rating" -> rating = parser.getDoubleValue();
+                case "user_ratings_total" -> reviewCount = parser.getIntValue();
+                case "geometry" -> {
+                    if (value != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                        boolean location = parser.currentName().equals("location");
+                        if (parser.nextToken() == JsonToken.START_OBJECT && location) {
+                            while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                                String coordinate = parser.currentName();
+                                parser.nextToken();
+                                if (coordinate.equals("lat")) lat = parser.getDoubleValue();
+                                else if (coordinate.equals("lng")) lng = parser.getDoubleValue();
+                                else parser.skipChildren();
+                            }
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+                case "photos" -> {
+                    if (value != JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    // Only the first photo's reference
+                    while (nextElement(parser)) {
+                        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                            String photoField = parser.currentName();
+                            parser.nextToken();
+                            if (photoReference == null && photoField.equals("photo_reference")) {
+                                photoReference = parser.getValueAsString();
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    }
+                }
+                case "types" -> {
+                    if (value != JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    for (JsonToken type = parser.nextToken(); type != JsonToken.END_ARRAY; type = parser.nextToken()) {
+                        if (type == JsonToken.VALUE_STRING) types.add(parser.getValueAsString());
+                        else parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (name == null || Double.isNaN(lat) || Double.isNaN(lng)) return null;
+        return new PlaceResult(name, lat, lng, rating, reviewCount, photoReference, types);
+    }
+
+    // Inside the first route object: its duration string or polyline.encodedPolyline
+    private static String readFirstRouteField(JsonParser parser, String wanted) {
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!field.equals(wanted)) {
+                parser.skipChildren();
+            } else if (value == JsonToken.VALUE_STRING) {
+                return parser.getValueAsString();
+            } else if (value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                    String polylineField = parser.currentName();
+                    parser.nextToken();
+                    if (polylineField.equals("encodedPolyline")) return parser.getValueAsString();
+                    parser.skipChildren();
+                }
+            }
+        }
+        return null;
+    }
+
+    // Inside a google.rpc.Status object: its code, 0 (OK) when omitted
+    private static int readStatusCode(JsonParser parser) {
+        int code = 0;
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals("code")) code = parser.getIntValue();
+            else parser.skipChildren();
+        }
+        return code;
+    }
+
+    // Moves to the next object of an array; anything else in it is skipped.
+    // False at the array's end.
+    private static boolean nextElement(JsonParser parser) {
+        for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (token == JsonToken.START_OBJECT) return true;
+            if (token == null) return false;
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    // "754s" -> 12
+    private static int minutes(String duration) {
+        return Integer.parseInt(duration.substring(0, duration.length() - 1)) / 60;
+    }
+
+    private static void expect(JsonParser parser, JsonToken token) {
+        JsonToken actual = parser.nextToken();
+        if (actual != token) {
+            throw new IllegalStateException("Unexpected Google response: expected " + token + ", got " + actual);
+        }
+    }
+}
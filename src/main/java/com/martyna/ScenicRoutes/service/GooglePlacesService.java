@@ -1,74 +1,234 @@
 package com.martyna.ScenicRoutes.service;
 
+import com.martyna.ScenicRoutes.model.GoogleTypes;
 import com.martyna.ScenicRoutes.model.ScenicPoint;
+import com.martyna.ScenicRoutes.service.GoogleJsonReader.PlaceResult;
+import com.martyna.ScenicRoutes.service.GoogleJsonReader.PlacesPage;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
+import java.lang.management.ManagementFactory;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Service
 public class GooglePlacesService {
 
+    // Per-call timeout for one page of Places results
+    private static final Duration SEARCH_TIMEOUT = Duration.ofSeconds(10);
+
+    // Google serves at most 3 pages (60 results) per nearby search
+    private static final int MAX_PAGES = 3;
+    // Tries per page token; Google answers INVALID_REQUEST until the token is valid
+    private static final int MAX_TOKEN_ATTEMPTS = 3;
+
     @Value("${google.api.key}")
     private String apiKey;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    // Overridable so the client can be pointed at a local stub
+    @Value("${google.places.base-url:https://maps.googleapis.com}")
+    private String baseUrl;
+
+    // How long a next_page_token takes to become valid
+    @Value("${google.places.page-token-delay-ms:2000}")
+    private long pageTokenDelayMs;
+
+    // Waits out page-token delays for every search in flight, so no request thread sleeps.
+    // It only starts the next fetch; the response is handled on the HTTP client's threads.
+    private final ScheduledExecutorService pageScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "places-pagination");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Pagination metrics
+    private final AtomicInteger searches = new AtomicInteger(0);
+    private final AtomicInteger pagesFetched = new AtomicInteger(0);
+    private final AtomicInteger tokenRetries = new AtomicInteger(0);
+    private final AtomicInteger pagesWaitingForToken = new AtomicInteger(0);
+    private final AtomicInteger callersWaiting = new AtomicInteger(0);
+    private final AtomicInteger peakCallersWaiting = new AtomicInteger(0);
+
+    @PreDestroy
+    public void shutdownPageScheduler() {
+        pageScheduler.shutdownNow();
+    }
 
     public List<ScenicPoint> getNearbyPOIs(double lat, double lng) {
         return getNearbyPOIs(lat, lng, false);
     }
 // include museums for sightseeing mode (normally excluded for walking mode)
     public List<ScenicPoint> getNearbyPOIs(double lat, double lng, boolean includeMuseums) {
-        List<ScenicPoint> allPoints = new ArrayList<>();
-
-        // more results
-        String nextPageToken = null;
-        int pageCount = 0;
-        int maxPages = 3;
+        return searchNearby(lat, lng, includeMuseums).awaitAllPages();
+    }
 
-        do {
-            String url = buildSearchUrl(lat, lng, nextPageToken);
+    // Starts a nearby search and returns at once. Page 1 is fetched immediately; pages 2-3
+    // are chained on the page scheduler once their token is valid, so a caller can start
+    // working on the first page while the rest arrive.
+    public NearbySearch searchNearby(double lat, double lng, boolean includeMuseums) {
+        searches.incrementAndGet();
+        NearbySearch search = new NearbySearch(lat, lng, includeMuseums);
+        search.fetch(null, 1, 1);
+        return search;
+    }
 
-            String response = restTemplate.getForObject(url, String.class);
-            JSONObject json = new JSONObject(response);
+    public PaginationStats getPaginationStats() {
+        return new PaginationStats(
+                searches.get(),
+                pagesFetched.get(),
+                tokenRetries.get(),
+                pagesWaitingForToken.get(),
+                callersWaiting.get(),
+                peakCallersWaiting.get(),
+                ManagementFactory.getThreadMXBean().getThreadCount()
+        );
+    }
 
-            if (json.has("results")) {
-                JSONArray results = json.getJSONArray("results");
-                List<ScenicPoint> pagePoints = processResults(results, includeMuseums);
-                allPoints.addAll(pagePoints);
+    // One nearby search in progress. Pages are fetched strictly one after another.
+    public final class NearbySearch {
+        private final double lat;
+        private final double lng;
+        private final boolean includeMuseums;
+        private final List<ScenicPoint> points = new ArrayList<>();
+        private final CompletableFuture<List<ScenicPoint>> firstPage = new CompletableFuture<>();
+        private final CompletableFuture<List<ScenicPoint>> allPages = new CompletableFuture<>();
+
+        private NearbySearch(double lat, double lng, boolean includeMuseums) {
+            this.lat = lat;
+            this.lng = lng;
+            this.includeMuseums = includeMuseums;
+        }
 
-            }
+        // Blocks until page 1 is in
+        public List<ScenicPoint> awaitFirstPage() {
+            return await(firstPage);
+        }
 
-            // Get next page token
-            nextPageToken = json.has("next_page_token")
-                    ? json.getString("next_page_token")
-                    : null;
+        // Blocks until every page is in; page 1 comes first, in Google's order
+        public List<ScenicPoint> awaitAllPages() {
+            return await(allPages);
+        }
 
-            pageCount++;
+        public CompletableFuture<List<ScenicPoint>> allPages() {
+            return allPages;
+        }
 
-            if (nextPageToken != null && pageCount < maxPages) {
+        private void fetch(String pageToken, int page, int attempt) {
+            fetchPage(buildSearchUrl(lat, lng, pageToken)).whenComplete((result, failure) -> {
+                if (failure != null) {
+                    fail(failure);
+                    return;
+                }
                 try {
-                    Thread.sleep(2000); // 2 second delay required by Google
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
+                    readPage(result, pageToken, page, attempt);
+                } catch (RuntimeException e) {
+                    fail(e);
                 }
+            });
+        }
+
+        private void readPage(PlacesPage result, String pageToken, int page, int attempt) {
+            pagesFetched.incrementAndGet();
+
+            // Token not valid yet - give it another delay
+            if (pageToken != null && "INVALID_REQUEST".equals(result.status())
+                    && attempt < MAX_TOKEN_ATTEMPTS) {
+                tokenRetries.incrementAndGet();
+                scheduleFetch(pageToken, page, attempt + 1);
+                return;
             }
 
-        } while (nextPageToken != null && pageCount < maxPages);
+            points.addAll(processResults(result.results(), includeMuseums));
+            if (page == 1) firstPage.complete(List.copyOf(points));
 
-        return allPoints;
+            String nextPageToken = result.nextPageToken();
+            if (nextPageToken != null && page < MAX_PAGES) {
+                scheduleFetch(nextPageToken, page + 1, 1);
+            } else {
+                allPages.complete(points);
+            }
+        }
+
+        private void scheduleFetch(String pageToken, int page, int attempt) {
+            pagesWaitingForToken.incrementAndGet();
+            try {
+                pageScheduler.schedule(() -> {
+                    pagesWaitingForToken.decrementAndGet();
+                    fetch(pageToken, page, attempt);
+                }, pageTokenDelayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down - keep what we have
+                pagesWaitingForToken.decrementAndGet();
+                allPages.complete(points);
+            }
+        }
+
+        // A failed first page fails the search; a failed later page ends it with the pages
+        // already read, as the old loop did when its sleep was interrupted
+        private void fail(Throwable failure) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause()
+                    : failure;
+            if (firstPage.completeExceptionally(cause)) {
+                allPages.completeExceptionally(cause);
+            } else {
+                System.err.println("Places pagination stopped early: " + cause.getMessage());
+                allPages.complete(points);
+            }
+        }
+
+        private List<ScenicPoint> await(CompletableFuture<List<ScenicPoint>> pages) {
+            int waiting = callersWaiting.incrementAndGet();
+            peakCallersWaiting.accumulateAndGet(waiting, Math::max);
+            try {
+                return GoogleHttpClient.join(pages);
+            } finally {
+                callersWaiting.decrementAndGet();
+            }
+        }
+    }
+
+    // callersWaiting counts request threads blocked on a search right now; with the page
+    // scheduler that is at most one per request, while pagesWaitingForToken can be any
+    // number without holding a thread each.
+    public static class PaginationStats {
+        public final int searches;
+        public final int pagesFetched;
+        public final int tokenRetries;
+        public final int pagesWaitingForToken;
+        public final int callersWaiting;
+        public final int peakCallersWaiting;
+        public final int liveThreads;
+
+        public PaginationStats(int searches, int pagesFetched, int tokenRetries,
+                               int pagesWaitingForToken, int callersWaiting,
+                               int peakCallersWaiting, int liveThreads) {
+            this.searches = searches;
+            this.pagesFetched = pagesFetched;
+            this.tokenRetries = tokenRetries;
+            this.pagesWaitingForToken = pagesWaitingForToken;
+            this.callersWaiting = callersWaiting;
+            this.peakCallersWaiting = peakCallersWaiting;
+            this.liveThreads = liveThreads;
+        }
     }
 
     public List<ScenicPoint> searchByType(double lat, double lng, String type) {
         System.out.println("  Searching Google Places for type: " + type);
 
-        String url = "https://maps.googleapis.com/maps/api/place/nearbysearch/json"
+        String url = baseUrl + "/maps/api/place/nearbysearch/json"
                 + "?location=" + lat + "," + lng
                 + "&radius=1500"  // 1.5km radius - reasonable walking distance
                 + "&type=" + type
@@ -76,21 +236,16 @@ public class GooglePlacesService {
                 + "&key=" + apiKey;
 
         try {
-            String response = restTemplate.getForObject(url, String.class);
-            JSONObject json = new JSONObject(response);
+            PlacesPage page = GoogleHttpClient.join(fetchPage(url));
+            List<ScenicPoint> points = processResults(page.results(), true);
 
-            if (json.has("results")) {
-                JSONArray results = json.getJSONArray("results");
-                List<ScenicPoint> points = processResults(results, true);
+            // Sort by score and take top 20 to avoid too many low-quality results
+            points.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+            List<ScenicPoint> topPoints = points.stream()
+                    .limit(20)
+                    .collect(Collectors.toList());
 
-                // Sort by score and take top 20 to avoid too many low-quality results
-                points.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
-                List<ScenicPoint> topPoints = points.stream()
-                        .limit(20)
-                        .collect(Collectors.toList());
-
-                return topPoints;
-            }
+            return topPoints;
         } catch (Exception e) {
             System.err.println("  ✗ Error searching for type " + type + ": " + e.getMessage());
         }
@@ -98,71 +253,58 @@ public class GooglePlacesService {
         return new ArrayList<>();
     }
 
+    // One page of a nearby search, parsed as it arrives. Package-private so a test stub
+    // can serve pages without HTTP.
+    CompletableFuture<PlacesPage> fetchPage(String url) {
+        return GoogleHttpClient.get(url, SEARCH_TIMEOUT).thenApply(GoogleJsonReader::readPlacesPage);
+    }
+
     private String buildSearchUrl(double lat, double lng, String pageToken) {
         StringBuilder url = new StringBuilder();
-        url.append("https://maps.googleapis.com/maps/api/place/nearbysearch/json");
+        url.append(baseUrl).append("/maps/api/place/nearbysearch/json");
         url.append("?location=").append(lat).append(",").append(lng);
         url.append("&radius=3000");
         // Added more types to catch landmarks like Empire State Building
-        url.append("&type=tourist_attraction|point_of_interest|landmark|park|museum|art_gallery|cafe|restaurant");
+        url.append("&type=").append(URLEncoder.encode(
+                "tourist_attraction|point_of_interest|landmark|park|museum|art_gallery|cafe|restaurant",
+                StandardCharsets.UTF_8));
         url.append("&key=").append(apiKey);
 
         if (pageToken != null) {
-            url.append("&pagetoken=").append(pageToken);
+            url.append("&pagetoken=").append(URLEncoder.encode(pageToken, StandardCharsets.UTF_8));
         }
 
         return url.toString();
     }
 
-    private List<ScenicPoint> processResults(JSONArray results, boolean includeMuseums) {
+    private List<ScenicPoint> processResults(List<PlaceResult> results, boolean includeMuseums) {
         List<ScenicPoint> scenicPoints = new ArrayList<>();
 
-        for (int i = 0; i < results.length(); i++) {
-            JSONObject place = results.getJSONObject(i);
-
-            String name = place.getString("name");
-            double placeLat = place.getJSONObject("geometry")
-                    .getJSONObject("location")
-                    .getDouble("lat");
-            double placeLng = place.getJSONObject("geometry")
-                    .getJSONObject("location")
-                    .getDouble("lng");
-
-            double rating = place.has("rating") ? place.getDouble("rating") : 3.0;
-            int numReviews = place.has("user_ratings_total")
-                    ? place.getInt("user_ratings_total")
-                    : 0;
+        for (PlaceResult place : results) {
+            String name = place.name();
+            double rating = place.rating();
+            int numReviews = place.reviewCount();
+            List<String> types = place.types();
 
             // photo urls
             String photoUrl = null;
-            if (place.has("photos")) {
-                JSONArray photos = place.getJSONArray("photos");
-                if (photos.length() > 0) {
-                    JSONObject photo = photos.getJSONObject(0);
-                    String photoReference = photo.getString("photo_reference");
-                    // Build Google Photos API URL
-                    photoUrl = "https://maps.googleapis.com/maps/api/place/photo"
-                            + "?maxwidth=400"
-                            + "&photoreference=" + photoReference
-                            + "&key=" + apiKey;
-                }
-            }
-            List<String> types = new ArrayList<>();
-            if (place.has("types")) {
-                JSONArray typesArray = place.getJSONArray("types");
-                for (int j = 0; j < typesArray.length(); j++) {
-                    types.add(typesArray.getString(j));
-                }
+            if (place.photoReference() != null) {
+                // Build Google Photos API URL
+                photoUrl = "https://maps.googleapis.com/maps/api/place/photo"
+                        + "?maxwidth=400"
+                        + "&photoreference=" + place.photoReference()
+                        + "&key=" + apiKey;
             }
 
+            short[] typeIds = GoogleTypes.idsOf(types);
 
             // museums removed - no sense for quick walking route
-            if (!includeMuseums && types.contains("museum")) continue;
+            if (!includeMuseums && GoogleTypes.contains(typeIds, GoogleTypes.MUSEUM)) continue;
 
 
-            double score = calculateImprovedScore(rating, numReviews, types, name);
+            double score = calculateImprovedScore(rating, numReviews, typeIds, name);
 
-            ScenicPoint point = new ScenicPoint(name, placeLat, placeLng, score, types, numReviews, rating);
+            ScenicPoint point = new ScenicPoint(name, place.latitude(), place.longitude(), score, types, numReviews, rating);
             point.setPhotoUrl(photoUrl);
             scenicPoints.add(point);
         }
@@ -170,7 +312,7 @@ public class GooglePlacesService {
         return scenicPoints;
     }
 
-    private double calculateImprovedScore(double rating, int numReviews, List<String> types, String name) {
+    private double calculateImprovedScore(double rating, int numReviews, short[] typeIds, String name) {
         // Cap reviews at 50,000 to prevent too popular routes
         int cappedReviews = Math.min(numReviews, 50000);
 
@@ -179,19 +321,19 @@ public class GooglePlacesService {
 
         // Type multipliers - boost important POI types
         double typeMultiplier = 1.0;
-        if (types.contains("tourist_attraction")) {
+        if (GoogleTypes.contains(typeIds, GoogleTypes.TOURIST_ATTRACTION)) {
             typeMultiplier = 1.5;
         }
-        if (types.contains("park") && numReviews > 10000) {
+        if (GoogleTypes.contains(typeIds, GoogleTypes.PARK) && numReviews > 10000) {
             typeMultiplier = Math.max(typeMultiplier, 1.4);
         }
-        if (types.contains("point_of_interest")) {
+        if (GoogleTypes.contains(typeIds, GoogleTypes.POINT_OF_INTEREST)) {
             typeMultiplier = Math.max(typeMultiplier, 1.2);
         }
-        if (types.contains("landmark")) {
+        if (GoogleTypes.contains(typeIds, GoogleTypes.LANDMARK)) {
             typeMultiplier = Math.max(typeMultiplier, 1.4);
         }
-        if (types.contains("museum")) {
+        if (GoogleTypes.contains(typeIds, GoogleTypes.MUSEUM)) {
             typeMultiplier = Math.max(typeMultiplier, 1.5);
         }
 
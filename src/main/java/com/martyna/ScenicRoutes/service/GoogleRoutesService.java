@@ -1,65 +1,83 @@
 package com.martyna.ScenicRoutes.service;
 
 import com.martyna.ScenicRoutes.model.ScenicPoint;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 // Service for Google Routes API integration - handles walking directions and polylines
 @Service
 public class GoogleRoutesService {
 
+    // computeRouteMatrix accepts at most 625 origin x destination elements per call
+    public static final int MAX_MATRIX_SIDE = 25;
+
+    // Per-call timeouts; a full matrix or a many-waypoint polyline takes Google longer
+    private static final Duration WALKING_TIME_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration MATRIX_TIMEOUT = Duration.ofSeconds(20);
+    private static final Duration POLYLINE_TIMEOUT = Duration.ofSeconds(20);
+
+    // Field masks - only the fields each call reads are requested
+    private static final String DURATION_FIELDS = "routes.duration";
+    private static final String MATRIX_FIELDS = "originIndex,destinationIndex,status,duration,condition";
+    private static final String POLYLINE_FIELDS = "routes.polyline.encodedPolyline";
+
+    private static final double[] NO_WAYPOINTS = new double[0];
+
     @Value("${google.api.key}")
     private String apiKey;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    // Overridable so the client can be pointed at a local stub
+    @Value("${google.routes.base-url:https://routes.googleapis.com}")
+    private String baseUrl;
 
     // Calculates walking time between two points using Google Routes API
     public int getWalkingTimeMinutes(
             double fromLat, double fromLng,
             double toLat, double toLng
     ) {
-        String url = "https://routes.googleapis.com/directions/v2:computeRoutes";
-
-        // Build request body with origin and destination
-        JSONObject body = new JSONObject();
-        body.put("travelMode", "WALK");
-        body.put("optimizeWaypointOrder", false);
-
-        body.put("origin", new JSONObject()
-                .put("location", new JSONObject()
-                        .put("latLng", new JSONObject()
-                                .put("latitude", fromLat)
-                                .put("longitude", fromLng))));
-
-        body.put("destination", new JSONObject()
-                .put("location", new JSONObject()
-                        .put("latLng", new JSONObject()
-                                .put("latitude", toLat)
-                                .put("longitude", toLng))));
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("X-Goog-Api-Key", apiKey);
-        headers.set("X-Goog-FieldMask", "routes.duration"); // Only request duration field
-
-        HttpEntity<String> request = new HttpEntity<>(body.toString(), headers);
-        ResponseEntity<String> response =
-                restTemplate.postForEntity(url, request, String.class);
-
-        // Parse response and convert seconds to minutes
-        JSONObject json = new JSONObject(response.getBody());
-        JSONArray routes = json.getJSONArray("routes");
-
-        if (routes.isEmpty()) return Integer.MAX_VALUE;
-
-        String duration = routes.getJSONObject(0).getString("duration");
-        return Integer.parseInt(duration.replace("s", "")) / 60;
+        return GoogleHttpClient.join(getWalkingTimeMinutesAsync(fromLat, fromLng, toLat, toLng));
+    }
+
+    public CompletableFuture<Integer> getWalkingTimeMinutesAsync(
+            double fromLat, double fromLng,
+            double toLat, double toLng
+    ) {
+        byte[] body = RouteRequestBody.route(fromLat, fromLng, toLat, toLng, NO_WAYPOINTS, NO_WAYPOINTS);
+        return GoogleHttpClient.postJson(computeRoutesUrl(), body, apiKey, DURATION_FIELDS, WALKING_TIME_TIMEOUT)
+                .thenApply(GoogleJsonReader::readRouteMinutes);
+    }
+
+    // Walking times for every origin x destination cell in one computeRouteMatrix call.
+    // Result is [origin][destination] in minutes, Integer.MAX_VALUE where no route exists.
+    // Callers split larger matrices into blocks of at most MAX_MATRIX_SIDE x MAX_MATRIX_SIDE.
+    public int[][] getWalkingTimeMatrix(
+            double[] originLats, double[] originLngs,
+            double[] destinationLats, double[] destinationLngs
+    ) {
+        return GoogleHttpClient.join(getWalkingTimeMatrixAsync(originLats, originLngs, destinationLats, destinationLngs));
+    }
+
+    // Non-blocking getWalkingTimeMatrix, so a caller can have several blocks in flight at once
+    public CompletableFuture<int[][]> getWalkingTimeMatrixAsync(
+            double[] originLats, double[] originLngs,
+            double[] destinationLats, double[] destinationLngs
+    ) {
+        if (originLats.length * destinationLats.length > MAX_MATRIX_SIDE * MAX_MATRIX_SIDE) {
+            throw new IllegalArgumentException("Route matrix too large: "
+                    + originLats.length + " x " + destinationLats.length);
+        }
+
+        String url = baseUrl + "/distanceMatrix/v2:computeRouteMatrix";
+        byte[] body = RouteRequestBody.matrix(originLats, originLngs, destinationLats, destinationLngs);
+
+        return GoogleHttpClient.postJson(url, body, apiKey, MATRIX_FIELDS, MATRIX_TIMEOUT)
+                .thenApply(response -> GoogleJsonReader.readRouteMatrix(
+                        response, originLats.length, destinationLats.length
+                ));
     }
 
     // Generates walking route polyline for one-way routes
@@ -69,52 +87,10 @@ public class GoogleRoutesService {
             double startLng,
             List<ScenicPoint> points
     ) {
-        String url = "https://routes.googleapis.com/directions/v2:computeRoutes";
-
-        // Add all points except last as intermediates (last becomes destination)
-        JSONArray intermediates = new JSONArray();
-        for (int i = 0; i < points.size() - 1; i++) {
-            ScenicPoint p = points.get(i);
-            JSONObject waypoint = new JSONObject()
-                    .put("location", new JSONObject()
-                            .put("latLng", new JSONObject()
-                                    .put("latitude", p.getLatitude())
-                                    .put("longitude", p.getLongitude())
-                            )
-                    );
-            intermediates.put(waypoint);
-        }
-
-        JSONObject body = new JSONObject()
-                .put("travelMode", "WALK")
-                .put("origin", new JSONObject()
-                        .put("location", new JSONObject()
-                                .put("latLng", new JSONObject()
-                                        .put("latitude", startLat)
-                                        .put("longitude", startLng))))
-                .put("destination", new JSONObject()
-                        .put("location", new JSONObject()
-                                .put("latLng", new JSONObject()
-                                        .put("latitude", points.get(points.size() - 1).getLatitude())
-                                        .put("longitude", points.get(points.size() - 1).getLongitude()))));
-
-        if (!intermediates.isEmpty()) body.put("intermediates", intermediates);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("X-Goog-Api-Key", apiKey);
-        headers.set("X-Goog-FieldMask", "routes.polyline.encodedPolyline"); // Only request polyline
-
-        HttpEntity<String> request = new HttpEntity<>(body.toString(), headers);
-        String response = restTemplate.postForObject(url, request, String.class);
-
-        // extracts encoded polyline from response
-        JSONObject json = new JSONObject(response);
-        return json
-                .getJSONArray("routes")
-                .getJSONObject(0)
-                .getJSONObject("polyline")
-                .getString("encodedPolyline");
+        // All points except last are intermediates (last becomes destination)
+        ScenicPoint last = points.get(points.size() - 1);
+        return requestPolyline(startLat, startLng, last.getLatitude(), last.getLongitude(),
+                points.subList(0, points.size() - 1));
     }
 
     // handling loop routes
@@ -123,50 +99,8 @@ public class GoogleRoutesService {
             double startLng,
             List<ScenicPoint> points
     ) {
-        String url = "https://routes.googleapis.com/directions/v2:computeRoutes";
-
-        // All pois become intermediate waypoints (loop back to start)
-        JSONArray intermediates = new JSONArray();
-        for (ScenicPoint p : points) {
-            JSONObject waypoint = new JSONObject()
-                    .put("location", new JSONObject()
-                            .put("latLng", new JSONObject()
-                                    .put("latitude", p.getLatitude())
-                                    .put("longitude", p.getLongitude())
-                            )
-                    );
-            intermediates.put(waypoint);
-        }
-
-        // Origin and destination are the same
-        JSONObject body = new JSONObject()
-                .put("travelMode", "WALK")
-                .put("origin", new JSONObject()
-                        .put("location", new JSONObject()
-                                .put("latLng", new JSONObject()
-                                        .put("latitude", startLat)
-                                        .put("longitude", startLng))))
-                .put("destination", new JSONObject()
-                        .put("location", new JSONObject()
-                                .put("latLng", new JSONObject()
-                                        .put("latitude", startLat)
-                                        .put("longitude", startLng))))
-                .put("intermediates", intermediates);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("X-Goog-Api-Key", apiKey);
-        headers.set("X-Goog-FieldMask", "routes.polyline.encodedPolyline");
-
-        HttpEntity<String> request = new HttpEntity<>(body.toString(), headers);
-        String response = restTemplate.postForObject(url, request, String.class);
-
-        JSONObject json = new JSONObject(response);
-        return json
-                .getJSONArray("routes")
-                .getJSONObject(0)
-                .getJSONObject("polyline")
-                .getString("encodedPolyline");
+        // All pois become intermediate waypoints, and the route ends back at the start
+        return requestPolyline(startLat, startLng, startLat, startLng, points);
     }
 
     // generates polyline for point-to-point routes
@@ -177,49 +111,30 @@ public class GoogleRoutesService {
             double endLng,
             List<ScenicPoint> points
     ) {
-        String url = "https://routes.googleapis.com/directions/v2:computeRoutes";
-
         // all pois are intermediate
-        JSONArray intermediates = new JSONArray();
-        for (ScenicPoint p : points) {
-            JSONObject waypoint = new JSONObject()
-                    .put("location", new JSONObject()
-                            .put("latLng", new JSONObject()
-                                    .put("latitude", p.getLatitude())
-                                    .put("longitude", p.getLongitude())
-                            )
-                    );
-            intermediates.put(waypoint);
+        return requestPolyline(startLat, startLng, endLat, endLng, points);
+    }
+
+    private String requestPolyline(
+            double startLat, double startLng,
+            double endLat, double endLng,
+            List<ScenicPoint> intermediates
+    ) {
+        double[] lats = new double[intermediates.size()];
+        double[] lngs = new double[intermediates.size()];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = intermediates.get(i).getLatitude();
+            lngs[i] = intermediates.get(i).getLongitude();
         }
 
-        JSONObject body = new JSONObject()
-                .put("travelMode", "WALK")
-                .put("origin", new JSONObject()
-                        .put("location", new JSONObject()
-                                .put("latLng", new JSONObject()
-                                        .put("latitude", startLat)
-                                        .put("longitude", startLng))))
-                .put("destination", new JSONObject()
-                        .put("location", new JSONObject()
-                                .put("latLng", new JSONObject()
-                                        .put("latitude", endLat)
-                                        .put("longitude", endLng))));
-
-        if (!intermediates.isEmpty()) body.put("intermediates", intermediates);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("X-Goog-Api-Key", apiKey);
-        headers.set("X-Goog-FieldMask", "routes.polyline.encodedPolyline");
-
-        HttpEntity<String> request = new HttpEntity<>(body.toString(), headers);
-        String response = restTemplate.postForObject(url, request, String.class);
-
-        JSONObject json = new JSONObject(response);
-        return json
-                .getJSONArray("routes")
-                .getJSONObject(0)
-                .getJSONObject("polyline")
-                .getString("encodedPolyline");
+        byte[] body = RouteRequestBody.route(startLat, startLng, endLat, endLng, lats, lngs);
+        byte[] response = GoogleHttpClient.join(GoogleHttpClient.postJson(
+                computeRoutesUrl(), body, apiKey, POLYLINE_FIELDS, POLYLINE_TIMEOUT
+        ));
+        return GoogleJsonReader.readEncodedPolyline(response);
+    }
+
+    private String computeRoutesUrl() {
+        return baseUrl + "/directions/v2:computeRoutes";
     }
 }
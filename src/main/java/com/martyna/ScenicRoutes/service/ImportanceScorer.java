@@ -1,5 +1,6 @@
 package com.martyna.ScenicRoutes.service;
 
+import com.martyna.ScenicRoutes.model.GoogleTypes;
 import com.martyna.ScenicRoutes.model.ScenicPoint;
 import com.martyna.ScenicRoutes.model.SightseeingAttraction;
 import com.martyna.ScenicRoutes.model.UserPreferences;
@@ -41,10 +42,9 @@ public class ImportanceScorer {
             score += 20;
         }
 
-        List<String> types = poi.getTypes();
-        if (types.contains("tourist_attraction")) score += 20;
-        if (types.contains("landmark")) score += 15;
-        if (types.contains("point_of_interest")) score += 5;
+        if (poi.hasType(GoogleTypes.TOURIST_ATTRACTION)) score += 20;
+        if (poi.hasType(GoogleTypes.LANDMARK)) score += 15;
+        if (poi.hasType(GoogleTypes.POINT_OF_INTEREST)) score += 5;
 
         String name = poi.getName().toLowerCase();
         if (name.contains("national")) score += 15;
@@ -32,6 +32,9 @@ public class MetricsService {
     private final Map<String, AtomicInteger> algorithmUsageCount = new ConcurrentHashMap<>();
     private final Map<String, AtomicLong> algorithmTotalTimeMs = new ConcurrentHashMap<>();
 
+    // Portfolio strategy that produced the returned route
+    private final Map<String, AtomicInteger> strategyWins = new ConcurrentHashMap<>();
+
     // Error tracking
     private final Map<String, AtomicInteger> errorCount = new ConcurrentHashMap<>();
 
@@ -49,10 +52,16 @@ public class MetricsService {
         algorithmUsageCount.put("TWO_POINT_LOOP", new AtomicInteger(0));
         algorithmUsageCount.put("GREEDY_ONE_WAY", new AtomicInteger(0));
         algorithmUsageCount.put("ASTAR_P2P", new AtomicInteger(0));
+        algorithmUsageCount.put("ANYTIME_ILS", new AtomicInteger(0));
+        algorithmUsageCount.put("PORTFOLIO", new AtomicInteger(0));
+        algorithmUsageCount.put("EXACT_DP", new AtomicInteger(0));
 
         algorithmTotalTimeMs.put("TWO_POINT_LOOP", new AtomicLong(0));
         algorithmTotalTimeMs.put("GREEDY_ONE_WAY", new AtomicLong(0));
         algorithmTotalTimeMs.put("ASTAR_P2P", new AtomicLong(0));
+        algorithmTotalTimeMs.put("ANYTIME_ILS", new AtomicLong(0));
+        algorithmTotalTimeMs.put("PORTFOLIO", new AtomicLong(0));
+        algorithmTotalTimeMs.put("EXACT_DP", new AtomicLong(0));
     }
 
     // Record request
@@ -94,6 +103,10 @@ public class MetricsService {
         categoryBoostCount.computeIfAbsent(category, k -> new AtomicInteger(0)).incrementAndGet();
     }
 
+    public void recordStrategyWin(String strategy) {
+        strategyWins.computeIfAbsent(strategy, k -> new AtomicInteger(0)).incrementAndGet();
+    }
+
     // Get comprehensive metrics
     public MetricsSummary getMetrics() {
         MetricsSummary summary = new MetricsSummary();
@@ -154,6 +167,10 @@ public class MetricsService {
             }
         });
 
+        summary.strategyWins = new HashMap<>();
+        strategyWins.forEach((strategy, count) ->
+                summary.strategyWins.put(strategy, count.get()));
+
         // Errors
         summary.errorBreakdown = new HashMap<>();
         errorCount.forEach((code, count) ->
@@ -183,6 +200,7 @@ public class MetricsService {
         categoryBoostCount.clear();
         algorithmUsageCount.values().forEach(v -> v.set(0));
         algorithmTotalTimeMs.values().forEach(v -> v.set(0));
+        strategyWins.clear();
         errorCount.clear();
     }
 
@@ -206,6 +224,7 @@ public class MetricsService {
         public Map<String, Integer> popularCategories;
         public Map<String, Integer> algorithmUsage;
         public Map<String, Long> algorithmAvgTimeMs;
+        public Map<String, Integer> strategyWins;
         public Map<String, Integer> errorBreakdown;
 
         public LocalDateTime timestamp;
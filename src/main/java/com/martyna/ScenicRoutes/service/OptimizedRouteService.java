@@ -5,9 +5,26 @@ import com.martyna.ScenicRoutes.model.ScenicPoint;
 import com.martyna.ScenicRoutes.model.ScenicRoute;
 import com.martyna.ScenicRoutes.model.UserPreferences;
 import com.martyna.ScenicRoutes.model.UserPreferences.RouteShape;
+import com.martyna.ScenicRoutes.model.UserPreferences.SolverMode;
+import com.martyna.ScenicRoutes.routing.AnytimeOrienteeringSolver;
+import com.martyna.ScenicRoutes.routing.CandidateSet;
+import com.martyna.ScenicRoutes.routing.ExactOrienteeringSolver;
+import com.martyna.ScenicRoutes.routing.ParallelArgmax;
+import com.martyna.ScenicRoutes.routing.RouteEvaluator;
+import com.martyna.ScenicRoutes.routing.RouteImprover;
+import com.martyna.ScenicRoutes.routing.SpatialGrid;
+import com.martyna.ScenicRoutes.routing.TimeMatrix;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 // Core route-planning engine responsible for generating optimized sightseeing routes
 // under real-world constraints such as time limits, user preferences, and route shape.
 @Service
@@ -20,13 +37,33 @@ public class OptimizedRouteService {
     private final WalkingTimeCache cache;
     private final MetricsService metricsService;
 
+    // Anytime solver budget when the request doesn't set one, and the most a request may ask for
+    private final int defaultComputeMs;
+    private final int maxComputeMs;
+
+    // Fixed so the same request and budget explore the same way
+    private static final long ANYTIME_SEED = 0x5EEDL;
+
+    // Portfolio strategy waited for past the deadline: it is quick, and without it a request
+    // whose other strategies all run over would come back empty
+    private static final String FALLBACK_STRATEGY = "GREEDY";
+
+    // POIs closer than this to a candidate add to its density bonus
+    private static final double DENSITY_RADIUS_METERS = 300;
+
+    // Shared by all portfolio requests, so concurrent requests can't oversubscribe the CPUs
+    private final ForkJoinPool portfolioPool;
+
     public OptimizedRouteService(
             GooglePlacesService googlePlacesService,
             GoogleRoutesService routesService,
             TwoPointLoopService twoPointLoopService,
             AStarRouteService aStarRouteService,
             WalkingTimeCache cache,
-            MetricsService metricsService
+            MetricsService metricsService,
+            @Value("${routing.anytime.default-compute-ms:300}") int defaultComputeMs,
+            @Value("${routing.anytime.max-compute-ms:2000}") int maxComputeMs,
+            @Value("${routing.portfolio.parallelism:0}") int portfolioParallelism
     ) {
         this.googlePlacesService = googlePlacesService;
         this.routesService = routesService;
@@ -34,6 +71,16 @@ public class OptimizedRouteService {
         this.aStarRouteService = aStarRouteService;
         this.cache = cache;
         this.metricsService = metricsService;
+        this.defaultComputeMs = defaultComputeMs;
+        this.maxComputeMs = maxComputeMs;
+        this.portfolioPool = new ForkJoinPool(
+                portfolioParallelism > 0 ? portfolioParallelism : Runtime.getRuntime().availableProcessors()
+        );
+    }
+
+    @PreDestroy
+    public void shutdownPortfolioPool() {
+        portfolioPool.shutdownNow();
     }
 
     public ScenicRoute generateOptimizedRoute(
@@ -59,13 +106,21 @@ public class OptimizedRouteService {
                 }
                 validateCoordinates(preferences.getEndLat(), preferences.getEndLng(), "End");
             }
+            long computeBudgetMs = computeBudgetMs(preferences);
 
 
             // Track boosted categories
             preferences.getBoostedCategories().forEach((cat, weight) ->
                     metricsService.recordCategoryBoost(cat.name()));
 
-            List<ScenicPoint> originalPois = googlePlacesService.getNearbyPOIs(startLat, startLng);
+            GooglePlacesService.NearbySearch search = googlePlacesService.searchNearby(startLat, startLng, false);
+            if (buildsFullMatrix(preferences)) {
+                // Fill walking times among the page-1 POIs while pages 2-3 wait on their tokens;
+                // the full matrix below then only fetches pairs involving the later pages
+                prefetchWalkingTimes(startLat, startLng, preferences,
+                        applyPreferenceScoring(search.awaitFirstPage(), preferences));
+            }
+            List<ScenicPoint> originalPois = search.awaitAllPages();
 
             List<ScenicPoint> scoredPois = applyPreferenceScoring(originalPois, preferences);
 
@@ -79,24 +134,40 @@ public class OptimizedRouteService {
 
             ScenicRoute route;
             String algorithm;
+            // Set when the chosen mode already built a matrix over every scored POI
+            TimeMatrix fullMatrix = null;
 
-            if (preferences.getRouteShape() == UserPreferences.RouteShape.LOOP) {
-                algorithm = "TWO_POINT_LOOP";
+            if (preferences.getSolverMode() == SolverMode.PORTFOLIO) {
+                algorithm = "PORTFOLIO";
 
-                route = twoPointLoopService.generateTwoPointLoop(
-                        startLat, startLng, scoredPois, minutes, preferences
+                route = runPortfolio(
+                        startLat, startLng, minutes, preferences, scoredPois,
+                        computeBudgetMs
                 );
+            } else if (preferences.getSolverMode() == SolverMode.EXACT) {
+                algorithm = "EXACT_DP";
+
+                route = solveExactly(
+                        startLat, startLng, minutes, preferences, scoredPois,
+                        computeBudgetMs
+                );
+            } else if (preferences.getRouteShape() == UserPreferences.RouteShape.LOOP) {
+                algorithm = "TWO_POINT_LOOP";
+
+                // Loop scans touch nearly every pair, so the matrix covers all candidates
+                TimeMatrix matrix = buildTimeMatrix(startLat, startLng, startLat, startLng, scoredPois);
+                route = twoPointLoopService.generateTwoPointLoop(matrix, minutes, preferences);
+                fullMatrix = matrix;
             } else if (preferences.getRouteShape() == RouteShape.POINT_TO_POINT && preferences.hasEndPoint()) {
                 algorithm = "ASTAR_P2P";
 
-                route = aStarRouteService.findOptimalPointToPointRoute(
+                // Also the anytime solver's seed, which it then only ever improves on
+                TimeMatrix matrix = buildTimeMatrix(
                         startLat, startLng,
                         preferences.getEndLat(), preferences.getEndLng(),
-                        scoredPois,
-                        minutes,
-                        preferences,
-                        new ArrayList<>()
+                        aStarRouteService.selectCandidates(scoredPois, new ArrayList<>())
                 );
+                route = aStarRouteService.findOptimalPointToPointRoute(matrix, minutes, preferences);
             } else {
                 algorithm = "GREEDY_ONE_WAY";
 
@@ -107,6 +178,13 @@ public class OptimizedRouteService {
                 );
             }
 
+            if (preferences.getSolverMode() == SolverMode.ANYTIME) {
+                algorithm = "ANYTIME_ILS";
+                route = improveUntilDeadline(
+                        route, startLat, startLng, minutes, preferences, scoredPois, fullMatrix,
+                        computeBudgetMs
+                );
+            }
 
             long duration = System.currentTimeMillis() - startTime;
             metricsService.recordSuccess();
@@ -141,48 +219,17 @@ public class OptimizedRouteService {
         }
 
         List<ScenicPoint> scored = new ArrayList<>();
-        Map<UserPreferences.POICategory, Double> explicitlyBoosted = preferences.getCategoryWeights();
+        long avoided = preferences.getAvoidedCategories();
         for (ScenicPoint poi : pois) {
-            List<UserPreferences.POICategory> categories = poi.getAllCategories();
-
-
-        }
-        for (ScenicPoint poi : pois) {
-            List<UserPreferences.POICategory> categories = poi.getAllCategories();
-
-            // First, check if any category is excluded
-            boolean isExcluded = false;
-            for (UserPreferences.POICategory category : categories) {
-                if (explicitlyBoosted.containsKey(category) &&
-                        explicitlyBoosted.get(category) == 0.0) {
-                    isExcluded = true;
-                    break;
-                }
-            }
+            long categories = poi.categoryMask();
 
             // Skip this POI entirely if it contains any excluded category
-            if (isExcluded) {
+            if ((categories & avoided) != 0) {
                 continue;
             }
 
-            // Now find the highest boost weight for non-excluded categories
-            double maxWeight = 0.0;
-            boolean hasMatchingCategory = false;
-
-            for (UserPreferences.POICategory category : categories) {
-                if (explicitlyBoosted.containsKey(category)) {
-                    hasMatchingCategory = true;
-                    double weight = explicitlyBoosted.get(category);
-                    if (weight > maxWeight) {
-                        maxWeight = weight;
-                    }
-                }
-            }
-
-            // If no matching category found in preferences, treat as neutral
-            if (!hasMatchingCategory) {
-                maxWeight = 1.0;
-            }
+            // Highest weight among its categories; neutral if it has none
+            double maxWeight = preferences.getMaxCategoryWeight(categories);
 
             double weightedScore = poi.getScore() * maxWeight;
             ScenicPoint weighted = new ScenicPoint(
@@ -208,24 +255,16 @@ public class OptimizedRouteService {
     ) {
 
         List<ScenicPoint> selectedPois = selectPOIsGreedy(startLat, startLng, pois, minutes);
-        List<ScenicPoint> orderedRoute = reorderPOIsNearestNeighbor(startLat, startLng, selectedPois);
-        List<ScenicPoint> finalRoute = trimRouteToTimeBudget(startLat, startLng, orderedRoute, minutes);
 
-        int totalWalkingTime = 0;
-        double totalScore = 0, currentLat = startLat, currentLng = startLng;
+        // Only legs between the selected POIs are ever walked, so the matrix covers just those
+        TimeMatrix matrix = buildTimeMatrix(startLat, startLng, startLat, startLng, selectedPois);
 
-        for (ScenicPoint poi : finalRoute) {
-            int travelTime = cache.getWalkingTimeMinutes(
-                    currentLat, currentLng,
-                    poi.getLatitude(), poi.getLongitude()
-            );
-            totalWalkingTime += travelTime;
-            totalScore += poi.getScore();
-            currentLat = poi.getLatitude();
-            currentLng = poi.getLongitude();
-        }
+        List<ScenicPoint> orderedRoute = reorderPOIsNearestNeighbor(startLat, startLng, selectedPois);
+        List<ScenicPoint> finalRoute = fitToBudget(matrix, orderedRoute, minutes, true);
 
-        int totalTimeUsed = totalWalkingTime + (finalRoute.size() * 5);
+        int[] ids = finalRoute.stream().mapToInt(matrix::idOf).toArray();
+        double totalScore = finalRoute.stream().mapToDouble(ScenicPoint::getScore).sum();
+        int totalTimeUsed = new RouteEvaluator(matrix, RouteEvaluator.VISIT_MINUTES, true).minutes(ids);
 
         String polyline = "";
         if (!finalRoute.isEmpty()) {
@@ -235,164 +274,445 @@ public class OptimizedRouteService {
         return new ScenicRoute(finalRoute, totalScore, totalTimeUsed, polyline);
     }
 
-    private List<ScenicPoint> selectPOIsGreedy(
+    // Keeps improving the mode's route over all scored POIs for budgetMs, counted once the
+    // matrix is built. The original route is returned untouched unless a better one was found.
+    private ScenicRoute improveUntilDeadline(
+            ScenicRoute route,
             double startLat,
             double startLng,
-            List<ScenicPoint> pois,
-            int minutes
+            int minutes,
+            UserPreferences preferences,
+            List<ScenicPoint> scoredPois,
+            TimeMatrix fullMatrix,
+            long budgetMs
     ) {
-        List<ScenicPoint> selected = new ArrayList<>();
-        Set<ScenicPoint> used = new HashSet<>();
+        RouteShape shape = preferences.getRouteShape();
+        double endLat = endLatitude(preferences, startLat);
+        double endLng = endLongitude(preferences, startLng);
 
-        int maxPOIs = Math.min((minutes / 8) + 3, 20);
+        TimeMatrix matrix = fullMatrix != null
+                ? fullMatrix
+                : buildTimeMatrix(startLat, startLng, endLat, endLng, scoredPois);
+        long deadlineNanos = deadlineAfter(budgetMs);
 
-        for (int i = 0; i < maxPOIs && used.size() < pois.size(); i++) {
-            ScenicPoint best = null;
-            double bestScore = -Double.MAX_VALUE;
+        int[] initial = route.getPoints().stream().mapToInt(matrix::idOf).toArray();
+        CandidateSet candidates = CandidateSet.of(matrix.candidates());
 
-            for (ScenicPoint poi : pois) {
-                if (used.contains(poi)) continue;
+        AnytimeOrienteeringSolver solver = new AnytimeOrienteeringSolver(
+                matrix, candidates.scores(), RouteEvaluator.VISIT_MINUTES, minutes, shape == RouteShape.ONE_WAY,
+                ANYTIME_SEED
+        );
+        AnytimeOrienteeringSolver.Solution solution = solver.improve(initial, deadlineNanos);
 
-                double densityBonus = calculateDensityBonus(poi, pois, used);
+        if (solution.score() <= route.getTotalScore() + 0.01) return route;
 
-                double distanceFromStart = calculateDistance(
-                        startLat, startLng, poi.getLatitude(), poi.getLongitude()
-                );
+        List<ScenicPoint> points = candidates.pointsOf(solution.route());
+        String polyline = polylineFor(shape, startLat, startLng, endLat, endLng, points);
+        return new ScenicRoute(points, solution.score(), solution.minutes(), polyline);
+    }
 
-                double proximityBonus = 0;
-                if (i < 3 && distanceFromStart < 1000) proximityBonus = 200;
+    // Optimal route over the best POIs that can be reached at all. The solver stops budgetMs
+    // after the matrix is built, with the best route over the subsets it finished.
+    private ScenicRoute solveExactly(
+            double startLat,
+            double startLng,
+            int minutes,
+            UserPreferences preferences,
+            List<ScenicPoint> scoredPois,
+            long budgetMs
+    ) {
+        RouteShape shape = preferences.getRouteShape();
+        double endLat = endLatitude(preferences, startLat);
+        double endLng = endLongitude(preferences, startLng);
+
+        TimeMatrix matrix = buildTimeMatrix(startLat, startLng, endLat, endLng, scoredPois);
+        List<ScenicPoint> points = exactRoute(matrix, minutes, shape == RouteShape.ONE_WAY, deadlineAfter(budgetMs));
+        if (points.isEmpty()) return new ScenicRoute(new ArrayList<>(), 0, 0, "");
+
+        int[] ids = points.stream().mapToInt(matrix::idOf).toArray();
+        double score = points.stream().mapToDouble(ScenicPoint::getScore).sum();
+        String polyline = polylineFor(shape, startLat, startLng, endLat, endLng, points);
+        int walk = new RouteEvaluator(matrix, RouteEvaluator.VISIT_MINUTES, shape == RouteShape.ONE_WAY).minutes(ids);
+        return new ScenicRoute(points, score, walk, polyline);
+    }
 
+    // Exact DP over the highest-scoring candidates that fit the budget on their own,
+    // as many as the solver takes. Empty when nothing fits.
+    private List<ScenicPoint> exactRoute(TimeMatrix matrix, int minutes, boolean openEnd, long deadlineNanos) {
+        RouteEvaluator evaluator = new RouteEvaluator(matrix, RouteEvaluator.VISIT_MINUTES, openEnd);
+        CandidateSet candidates = CandidateSet.of(matrix.candidates());
+        List<Integer> reachable = new ArrayList<>();
+        int[] alone = new int[1];
+        for (int id = 0; id < candidates.size(); id++) {
+            alone[0] = id;
+            if (evaluator.minutes(alone) <= minutes) reachable.add(id);
+        }
+        // Stable sort, so equal scores keep matrix order
+        reachable.sort((a, b) -> Double.compare(candidates.score(b), candidates.score(a)));
 
-                double score = poi.getScore() + densityBonus + proximityBonus;
+        int count = Math.min(reachable.size(), ExactOrienteeringSolver.MAX_CANDIDATES);
+        int[] topIds = reachable.subList(0, count).stream().mapToInt(Integer::intValue).toArray();
+        TimeMatrix top = matrix.subset(candidates.pointsOf(topIds));
+        CandidateSet topCandidates = CandidateSet.of(top.candidates());
 
-                if (score > bestScore) {
-                    bestScore = score;
-                    best = poi;
-                }
+        ExactOrienteeringSolver.Solution solution = new ExactOrienteeringSolver(
+                top, topCandidates.scores(), RouteEvaluator.VISIT_MINUTES, minutes, openEnd
+        ).solve(deadlineNanos);
+
+        if (solution == null) return new ArrayList<>();
+        return topCandidates.pointsOf(solution.route());
+    }
+
+    // Runs every strategy that fits the shape on the portfolio pool over one shared matrix
+    // and keeps the highest-scoring route that fits. Strategies still running budgetMs after
+    // the matrix is built are abandoned, except the fallback.
+    private ScenicRoute runPortfolio(
+            double startLat,
+            double startLng,
+            int minutes,
+            UserPreferences preferences,
+            List<ScenicPoint> scoredPois,
+            long budgetMs
+    ) {
+        RouteShape shape = preferences.getRouteShape();
+        boolean openEnd = shape == RouteShape.ONE_WAY;
+        double endLat = endLatitude(preferences, startLat);
+        double endLng = endLongitude(preferences, startLng);
+
+        TimeMatrix matrix = buildTimeMatrix(startLat, startLng, endLat, endLng, scoredPois);
+        CandidateSet candidates = CandidateSet.of(matrix.candidates());
+        long deadlineNanos = deadlineAfter(budgetMs);
+
+        Map<String, Callable<List<ScenicPoint>>> strategies = new LinkedHashMap<>();
+        strategies.put(FALLBACK_STRATEGY, () -> fitToBudget(
+                matrix,
+                reorderPOIsNearestNeighbor(startLat, startLng, selectPOIsGreedy(startLat, startLng, scoredPois, minutes)),
+                minutes,
+                openEnd
+        ));
+        if (shape == RouteShape.LOOP) {
+            strategies.put("LOOP_BUILDER", () ->
+                    twoPointLoopService.buildLoop(matrix, minutes, preferences).getPoints());
+        }
+        strategies.put("LOCAL_SEARCH", () -> candidates.pointsOf(new AnytimeOrienteeringSolver(
+                matrix, candidates.scores(), RouteEvaluator.VISIT_MINUTES, minutes, openEnd, ANYTIME_SEED
+        ).improve(new int[0], deadlineNanos).route()));
+        strategies.put("EXACT_DP", () -> exactRoute(matrix, minutes, openEnd, deadlineNanos));
+        if (!openEnd) {
+            // Exact over the top candidates only - the search is exponential in their count
+            strategies.put("EXACT_SEARCH", () -> aStarRouteService.searchRoute(
+                    matrix.subset(aStarRouteService.selectCandidates(scoredPois, new ArrayList<>())),
+                    minutes, preferences, deadlineNanos
+            ).getPoints());
+        }
+
+        RouteEvaluator evaluator = new RouteEvaluator(matrix, RouteEvaluator.VISIT_MINUTES, openEnd);
+        Map<String, Future<List<ScenicPoint>>> running = new LinkedHashMap<>();
+        strategies.forEach((name, strategy) -> running.put(name, portfolioPool.submit(strategy)));
+
+        String winner = null;
+        List<ScenicPoint> bestPoints = new ArrayList<>();
+        int bestMinutes = 0;
+        double bestScore = 0;
+
+        for (Map.Entry<String, Future<List<ScenicPoint>>> entry : running.entrySet()) {
+            List<ScenicPoint> points;
+            try {
+                long waitNanos = Math.max(0, deadlineNanos - System.nanoTime());
+                points = entry.getKey().equals(FALLBACK_STRATEGY)
+                        ? entry.getValue().get()
+                        : entry.getValue().get(waitNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                continue;
+            } catch (ExecutionException e) {
+                System.err.println("Portfolio strategy " + entry.getKey() + " failed: " + e.getCause());
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
 
-            if (best == null) break;
+            int[] ids = points.stream().mapToInt(matrix::idOf).toArray();
+            if (Arrays.stream(ids).anyMatch(id -> id < 0)) continue;
+            int walk = evaluator.minutes(ids);
+            if (walk > minutes) continue;
+
+            double score = points.stream().mapToDouble(ScenicPoint::getScore).sum();
+            boolean better = winner == null
+                    || score > bestScore + 0.01
+                    || (Math.abs(score - bestScore) <= 0.01 && walk < bestMinutes);
+            if (better) {
+                winner = entry.getKey();
+                bestPoints = points;
+                bestMinutes = walk;
+                bestScore = score;
+            }
+        }
 
-            selected.add(best);
-            used.add(best);
+        if (winner == null) return new ScenicRoute(new ArrayList<>(), 0, 0, "");
+        metricsService.recordStrategyWin(winner);
 
-            double dist = calculateDistance(startLat, startLng, best.getLatitude(), best.getLongitude());
+        String polyline = bestPoints.isEmpty()
+                ? ""
+                : polylineFor(shape, startLat, startLng, endLat, endLng, bestPoints);
+        return new ScenicRoute(bestPoints, bestScore, bestMinutes, polyline);
+    }
+
+    private String polylineFor(
+            RouteShape shape,
+            double startLat, double startLng,
+            double endLat, double endLng,
+            List<ScenicPoint> points
+    ) {
+        if (shape == RouteShape.LOOP) {
+            return cache.getWalkingPolylineForLoop(startLat, startLng, points);
+        } else if (shape == RouteShape.POINT_TO_POINT) {
+            return cache.getWalkingPolylinePointToPoint(startLat, startLng, endLat, endLng, points);
         }
+        return cache.getWalkingPolylineWithWaypoints(startLat, startLng, points);
+    }
 
-        return selected;
+    // Loops and one-way walks use the start as the matrix end node
+    private double endLatitude(UserPreferences preferences, double startLat) {
+        return preferences.getRouteShape() == RouteShape.POINT_TO_POINT ? preferences.getEndLat() : startLat;
     }
-    // makes sure the points are in order, minimizing backtracking
-    private List<ScenicPoint> reorderPOIsNearestNeighbor(
+
+    private double endLongitude(UserPreferences preferences, double startLng) {
+        return preferences.getRouteShape() == RouteShape.POINT_TO_POINT ? preferences.getEndLng() : startLng;
+    }
+
+    // Deadline on the System.nanoTime clock the solvers poll. Taken once the POIs and the
+    // matrix are in, so the Places pagination and walking-time fetches don't eat the budget.
+    private static long deadlineAfter(long budgetMs) {
+        return System.nanoTime() + budgetMs * 1_000_000;
+    }
+
+    // Modes that build a matrix over every scored POI, so page-1 pairs are never wasted
+    private static boolean buildsFullMatrix(UserPreferences preferences) {
+        SolverMode mode = preferences.getSolverMode();
+        return mode == SolverMode.PORTFOLIO
+                || mode == SolverMode.EXACT
+                || mode == SolverMode.ANYTIME
+                || preferences.getRouteShape() == RouteShape.LOOP;
+    }
+
+    private void prefetchWalkingTimes(
+            double startLat, double startLng,
+            UserPreferences preferences,
+            List<ScenicPoint> firstPagePois
+    ) {
+        if (firstPagePois.isEmpty()) return;
+
+        buildTimeMatrix(
+                startLat, startLng,
+                endLatitude(preferences, startLat), endLongitude(preferences, startLng),
+                firstPagePois
+        );
+    }
+
+    // Walking times for this request, filled from the cache in batched matrix calls
+    private TimeMatrix buildTimeMatrix(
+            double startLat, double startLng,
+            double endLat, double endLng,
+            List<ScenicPoint> candidates
+    ) {
+        return TimeMatrix.build(startLat, startLng, endLat, endLng, candidates, cache::getWalkingTimeMatrix);
+    }
+
+    private List<ScenicPoint> selectPOIsGreedy(
             double startLat,
             double startLng,
-            List<ScenicPoint> pois
+            List<ScenicPoint> pois,
+            int minutes
     ) {
-        if (pois.isEmpty()) return new ArrayList<>();
+        List<ScenicPoint> selected = new ArrayList<>();
+        DensityState state = new DensityState(startLat, startLng, CandidateSet.of(pois));
+        CandidateSet candidates = state.candidates;
 
-        List<ScenicPoint> ordered = new ArrayList<>();
-        Set<ScenicPoint> remaining = new HashSet<>(pois);
+        int maxPOIs = Math.min((minutes / 8) + 3, 20);
 
-        double currentLat = startLat;
-        double currentLng = startLng;
+        for (int i = 0; i < maxPOIs && state.usedCount < candidates.size(); i++) {
+            int step = i;
 
-        while (!remaining.isEmpty()) {
-            ScenicPoint nearest = null;
-            double minDistance = Double.MAX_VALUE;
+            int bestId = ParallelArgmax.argmax(candidates.size(), candidate -> {
+                if (state.used[candidate]) return ParallelArgmax.SKIP;
 
-            for (ScenicPoint poi : remaining) {
-                double distance = calculateDistance(
-                        currentLat, currentLng,
-                        poi.getLatitude(), poi.getLongitude()
-                );
+                double proximityBonus = 0;
+                if (step < 3 && state.fromStart[candidate] < 1000) proximityBonus = 200;
 
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    nearest = poi;
-                }
-            }
 
-            if (nearest != null) {
-                ordered.add(nearest);
-                remaining.remove(nearest);
-                currentLat = nearest.getLatitude();
-                currentLng = nearest.getLongitude();
-            }
+                return candidates.score(candidate) + state.density[candidate] + proximityBonus;
+            });
+
+            if (bestId == ParallelArgmax.NONE) break;
+
+            selected.add(candidates.point(bestId));
+            state.markUsed(bestId);
         }
 
-        return ordered;
+        return selected;
     }
-    // if we get more pois fill the route with them until time runs out
-    private List<ScenicPoint> trimRouteToTimeBudget(
-            double startLat,
-            double startLng,
-            List<ScenicPoint> orderedPois,
-            int maxMinutes
-    ) {
-        List<ScenicPoint> trimmed = new ArrayList<>();
-        double currentLat = startLat;
-        double currentLng = startLng;
-        int timeUsed = 0;
 
-        for (ScenicPoint poi : orderedPois) {
-            int travelTime = cache.getWalkingTimeMinutes(
-                    currentLat, currentLng,
-                    poi.getLatitude(), poi.getLongitude()
-            );
+    // Per-request working set for selectPOIsGreedy. Each candidate's density bonus - half the
+    // score of every unused POI within DENSITY_RADIUS_METERS - is computed once from a grid
+    // query and then kept current as POIs are used, instead of a scan of all POIs per
+    // candidate per step.
+    private static final class DensityState {
+        final CandidateSet candidates;
+        final double[] fromStart;
+        // POIs within the density radius of each candidate, ascending, the candidate itself excluded
+        final int[][] neighbours;
+        final double[] density;
+        final boolean[] used;
+        int usedCount;
+
+        DensityState(double startLat, double startLng, CandidateSet candidates) {
+            this.candidates = candidates;
+            int n = candidates.size();
+            this.fromStart = new double[n];
+            this.neighbours = new int[n][];
+            this.density = new double[n];
+            this.used = new boolean[n];
+
+            SpatialGrid grid = SpatialGrid.of(candidates, DENSITY_RADIUS_METERS);
+            for (int i = 0; i < n; i++) {
+                double lat = candidates.latitude(i);
+                double lng = candidates.longitude(i);
+                fromStart[i] = SpatialGrid.distanceMeters(startLat, startLng, lat, lng);
+
+                int[] near = grid.within(lat, lng, DENSITY_RADIUS_METERS);
+                int kept = 0;
+                for (int other : near) {
+                    if (other != i) near[kept++] = other;
+                }
+                neighbours[i] = Arrays.copyOf(near, kept);
+            }
+            for (int i = 0; i < n; i++) {
+                density[i] = densityOf(i);
+            }
+        }
 
-            int timeWithThisPOI = timeUsed + travelTime + 5;
+        // Uses the POI and any equal duplicates of it, then refreshes the bonus of every
+        // candidate near them - the only ones it can change
+        void markUsed(int id) {
+            ScenicPoint poi = candidates.point(id);
+            List<Integer> marked = new ArrayList<>();
+            marked.add(id);
+            for (int other : neighbours[id]) {
+                if (!used[other] && candidates.point(other).equals(poi)) marked.add(other);
+            }
 
-            if (timeWithThisPOI <= maxMinutes) {
-                trimmed.add(poi);
-                timeUsed = timeWithThisPOI;
-                currentLat = poi.getLatitude();
-                currentLng = poi.getLongitude();
+            for (int each : marked) {
+                used[each] = true;
+                usedCount++;
+            }
+            for (int each : marked) {
+                for (int other : neighbours[each]) {
+                    density[other] = densityOf(other);
+                }
             }
         }
 
-        return trimmed;
+        // Summed in id order, so the bonus is the same as a full scan over the POI list
+        private double densityOf(int id) {
+            double densityScore = 0;
+            for (int other : neighbours[id]) {
+                if (used[other] || candidates.point(other) == candidates.point(id)) continue;
+                densityScore += candidates.score(other) * 0.5;
+            }
+            return densityScore;
+        }
     }
 
-    private double calculateDensityBonus(
-            ScenicPoint poi,
-            List<ScenicPoint> allPois,
-            Set<ScenicPoint> used
+    // makes sure the points are in order, minimizing backtracking
+    private List<ScenicPoint> reorderPOIsNearestNeighbor(
+            double startLat,
+            double startLng,
+            List<ScenicPoint> pois
     ) {
-        double densityScore = 0;
-        int nearbyCount = 0;
+        if (pois.isEmpty()) return new ArrayList<>();
 
-        for (ScenicPoint other : allPois) {
-            if (other == poi || used.contains(other)) continue;
+        CandidateSet unique = CandidateSet.of(new ArrayList<>(new LinkedHashSet<>(pois)));
+        SpatialGrid grid = SpatialGrid.of(unique, DENSITY_RADIUS_METERS);
 
-            double distance = calculateDistance(
-                    poi.getLatitude(), poi.getLongitude(),
-                    other.getLatitude(), other.getLongitude()
-            );
+        List<ScenicPoint> ordered = new ArrayList<>();
+        boolean[] visited = new boolean[unique.size()];
 
-            if (distance < 300) {
-                nearbyCount++;
-                densityScore += other.getScore() * 0.5;
-            }
-        }
+        double currentLat = startLat;
+        double currentLng = startLng;
 
+        while (ordered.size() < unique.size()) {
+            // Equal distances go to the earlier POI
+            int nearest = grid.nearest(currentLat, currentLng, visited);
+            if (nearest < 0) break;
 
-        return densityScore;
-    }
+            ordered.add(unique.point(nearest));
+            visited[nearest] = true;
+            currentLat = unique.latitude(nearest);
+            currentLng = unique.longitude(nearest);
+        }
 
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371000;
+        return ordered;
+    }
+    // Orders the stops for the shortest walk on real walking times. While the walk still runs
+    // over the budget, drops the stop worth the least score per minute it costs and reorders;
+    // then puts dropped stops back wherever the shortened walk still has room for them.
+    // Replaces a trim that dropped whichever stops came late in the original order.
+    private List<ScenicPoint> fitToBudget(
+            TimeMatrix matrix,
+            List<ScenicPoint> orderedPois,
+            int maxMinutes,
+            boolean openEnd
+    ) {
+        RouteImprover improver = new RouteImprover(matrix, openEnd);
+        RouteEvaluator evaluator = new RouteEvaluator(matrix, RouteEvaluator.VISIT_MINUTES, openEnd);
+        CandidateSet candidates = CandidateSet.of(matrix.candidates());
+        int[] ids = improver.improve(orderedPois.stream().mapToInt(matrix::idOf).toArray());
+        List<Integer> dropped = new ArrayList<>();
+
+        while (ids.length > 0 && evaluator.minutes(ids) > maxMinutes) {
+            int drop = 0;
+            double worst = Double.MAX_VALUE;
+            for (int i = 0; i < ids.length; i++) {
+                long saved = -(long) evaluator.removeDelta(ids, ids.length, i);
+                double worth = candidates.score(ids[i]) / Math.max(1, saved);
+                if (worth < worst) {
+                    worst = worth;
+                    drop = i;
+                }
+            }
 
-        double lat1Rad = Math.toRadians(lat1);
-        double lat2Rad = Math.toRadians(lat2);
-        double deltaLat = Math.toRadians(lat2 - lat1);
-        double deltaLon = Math.toRadians(lon2 - lon1);
+            dropped.add(ids[drop]);
+            int[] kept = new int[ids.length - 1];
+            System.arraycopy(ids, 0, kept, 0, drop);
+            System.arraycopy(ids, drop + 1, kept, drop, kept.length - drop);
+            ids = improver.improve(kept);
+        }
 
-        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
-                Math.cos(lat1Rad) * Math.cos(lat2Rad) *
-                        Math.sin(deltaLon / 2) * Math.sin(deltaLon / 2);
+        // Last dropped first - the later a stop was dropped, the more it was worth
+        for (int i = dropped.size() - 1; i >= 0; i--) {
+            int id = dropped.get(i);
+            int current = evaluator.minutes(ids);
+            int bestMinutes = Integer.MAX_VALUE;
+            int bestAt = -1;
+            for (int at = 0; at <= ids.length; at++) {
+                int walk = RouteEvaluator.add(current, evaluator.insertDelta(ids, ids.length, at, id));
+                if (walk <= maxMinutes && walk < bestMinutes) {
+                    bestMinutes = walk;
+                    bestAt = at;
+                }
+            }
+            if (bestAt < 0) continue;
 
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+            int[] grown = new int[ids.length + 1];
+            System.arraycopy(ids, 0, grown, 0, bestAt);
+            grown[bestAt] = id;
+            System.arraycopy(ids, bestAt, grown, bestAt + 1, ids.length - bestAt);
+            ids = improver.improve(grown);
+        }
 
-        return R * c;
+        return candidates.pointsOf(ids);
     }
 
     private void validateCoordinates(double lat, double lng, String pointName) {
@@ -410,6 +730,18 @@ public class OptimizedRouteService {
         }
     }
 
+    private long computeBudgetMs(UserPreferences preferences) {
+        Integer requested = preferences.getMaxComputeMs();
+        if (requested == null) return defaultComputeMs;
+        if (requested <= 0) {
+            throw new RouteGenerationException(
+                    "Compute budget must be a positive number of milliseconds",
+                    "INVALID_COMPUTE_BUDGET"
+            );
+        }
+        return Math.min(requested, maxComputeMs);
+    }
+
     private void validateTimeLimit(int minutes) {
         if (minutes < 10) {
             throw new RouteGenerationException(
@@ -0,0 +1,147 @@
+package com.martyna.ScenicRoutes.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Request bodies for computeRoutes and computeRouteMatrix, written straight from coordinate
+// arrays as UTF-8 bytes. The JSON around the coordinates is pre-encoded once; each body is
+// assembled in a per-thread scratch buffer and copied out at its exact size, so a call
+// allocates one byte[] instead of a JSONObject tree per waypoint plus its toString().
+//
+// Coordinates are written with 7 decimals (about 1 cm), finer than the 1e-6 degree
+// CoordinateKey the caches key on.
+final class RouteRequestBody {
+
+    private static final byte[] ROUTE_START = ascii("{\"travelMode\":\"WALK\",\"origin\":");
+    private static final byte[] DESTINATION = ascii(",\"destination\":");
+    private static final byte[] INTERMEDIATES = ascii(",\"intermediates\":[");
+
+    private static final byte[] MATRIX_START = ascii("{\"travelMode\":\"WALK\",\"origins\":[");
+    private static final byte[] DESTINATIONS = ascii("],\"destinations\":[");
+    private static final byte[] MATRIX_WAYPOINT_START = ascii("{\"waypoint\":");
+
+    private static final byte[] LATITUDE = ascii("{\"location\":{\"latLng\":{\"latitude\":");
+    private static final byte[] LONGITUDE = ascii(",\"longitude\":");
+    private static final byte[] WAYPOINT_END = ascii("}}}");
+
+    private static final long COORDINATE_SCALE = 10_000_000L;
+
+    // Grows to the largest body this thread has written and stays there
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private RouteRequestBody() {
+    }
+
+    // computeRoutes from origin to destination through the intermediates, in order.
+    // An empty intermediates array leaves the field out.
+    static byte[] route(double originLat, double originLng,
+                        double destinationLat, double destinationLng,
+                        double[] intermediateLats, double[] intermediateLngs) {
+        Scratch out = SCRATCH.get().reset();
+        out.put(ROUTE_START);
+        writeWaypoint(out, originLat, originLng);
+        out.put(DESTINATION);
+        writeWaypoint(out, destinationLat, destinationLng);
+
+        if (intermediateLats.length > 0) {
+            out.put(INTERMEDIATES);
+            for (int i = 0; i < intermediateLats.length; i++) {
+                if (i > 0) out.put((byte) ',');
+                writeWaypoint(out, intermediateLats[i], intermediateLngs[i]);
+            }
+            out.put((byte) ']');
+        }
+
+        out.put((byte) '}');
+        return out.toByteArray();
+    }
+
+    // computeRouteMatrix for every origin x destination pair
+    static byte[] matrix(double[] originLats, double[] originLngs,
+                         double[] destinationLats, double[] destinationLngs) {
+        Scratch out = SCRATCH.get().reset();
+        out.put(MATRIX_START);
+        writeMatrixWaypoints(out, originLats, originLngs);
+        out.put(DESTINATIONS);
+        writeMatrixWaypoints(out, destinationLats, destinationLngs);
+        out.put((byte) ']');
+        out.put((byte) '}');
+        return out.toByteArray();
+    }
+
+    private static void writeMatrixWaypoints(Scratch out, double[] lats, double[] lngs) {
+        for (int i = 0; i < lats.length; i++) {
+            if (i > 0) out.put((byte) ',');
+            out.put(MATRIX_WAYPOINT_START);
+            writeWaypoint(out, lats[i], lngs[i]);
+            out.put((byte) '}');
+        }
+    }
+
+    // {"location":{"latLng":{"latitude":..,"longitude":..}}}
+    private static void writeWaypoint(Scratch out, double lat, double lng) {
+        out.put(LATITUDE);
+        writeCoordinate(out, lat);
+        out.put(LONGITUDE);
+        writeCoordinate(out, lng);
+        out.put(WAYPOINT_END);
+    }
+
+    // Fixed-point decimal without going through Double.toString
+    private static void writeCoordinate(Scratch out, double degrees) {
+        long fixed = Math.round(degrees * COORDINATE_SCALE);
+        if (fixed < 0) {
+            out.put((byte) '-');
+            fixed = -fixed;
+        }
+        long whole = fixed / COORDINATE_SCALE;
+        long fraction = fixed % COORDINATE_SCALE;
+
+        out.putDigits(whole);
+        out.put((byte) '.');
+        for (long divisor = COORDINATE_SCALE / 10; divisor > 0; divisor /= 10) {
+            out.put((byte) ('0' + fraction / divisor % 10));
+        }
+    }
+
+    private static byte[] ascii(String json) {
+        return json.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final class Scratch {
+        private byte[] bytes = new byte[1024];
+        private int length;
+
+        Scratch reset() {
+            length = 0;
+            return this;
+        }
+
+        void put(byte b) {
+            ensureCapacity(1);
+            bytes[length++] = b;
+        }
+
+        void put(byte[] fragment) {
+            ensureCapacity(fragment.length);
+            System.arraycopy(fragment, 0, bytes, length, fragment.length);
+            length += fragment.length;
+        }
+
+        // A non-negative whole number
+        void putDigits(long value) {
+            if (value >= 10) putDigits(value / 10);
+            put((byte) ('0' + value % 10));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
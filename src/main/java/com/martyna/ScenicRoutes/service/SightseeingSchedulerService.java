@@ -4,6 +4,8 @@ import com.martyna.ScenicRoutes.model.*;
 import com.martyna.ScenicRoutes.model.SightseeingSchedule.Break;
 import com.martyna.ScenicRoutes.model.SightseeingSchedule.ScheduledStop;
 import com.martyna.ScenicRoutes.model.UserPreferences.POICategory;
+import com.martyna.ScenicRoutes.routing.ParallelArgmax;
+import com.martyna.ScenicRoutes.routing.TimeMatrix;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -72,9 +74,16 @@ public class SightseeingSchedulerService {
         List<Break> breaks = new ArrayList<>();
         Set<SightseeingAttraction> used = new HashSet<>();
 
+        // Every walk below is between the start and these attractions, fetched in one go
+        List<ScenicPoint> candidatePois = new ArrayList<>();
+        for (SightseeingAttraction attr : boosted) candidatePois.add(attr.getWrappedPOI());
+        for (SightseeingAttraction attr : optional) candidatePois.add(attr.getWrappedPOI());
+        TimeMatrix matrix = TimeMatrix.build(
+                startLat, startLng, startLat, startLng, candidatePois, cache::getWalkingTimeMatrix
+        );
+
         LocalTime currentTime = startTime;
-        double currentLat = startLat;
-        double currentLng = startLng;
+        int current = matrix.start();
         boolean hadLunch = false;
 
         // pick 1 poi per boosted category (with proximity check, time checks)
@@ -95,12 +104,12 @@ public class SightseeingSchedulerService {
 
             // Proximity check
             if (!guaranteed.isEmpty()) {
-                int walkTime = cache.getWalkingTimeMinutes(currentLat, currentLng, best.getLatitude(), best.getLongitude());
+                int walkTime = matrix.time(current, matrix.idOf(best.getWrappedPOI()));
 
                 if (walkTime > 30) {
                     // Try to find closer alternative
                     for (SightseeingAttraction alt : inCategory) {
-                        int altWalk = cache.getWalkingTimeMinutes(currentLat, currentLng, alt.getLatitude(), alt.getLongitude());
+                        int altWalk = matrix.time(current, matrix.idOf(alt.getWrappedPOI()));
                         if (altWalk <= 30) {
                             best = alt;
                             break;
@@ -109,8 +118,7 @@ public class SightseeingSchedulerService {
                 }
 
                 // Update current position for next proximity check
-                currentLat = best.getLatitude();
-                currentLng = best.getLongitude();
+                current = matrix.idOf(best.getWrappedPOI());
             }
 
             guaranteed.add(best);
@@ -135,8 +143,7 @@ public class SightseeingSchedulerService {
 
 
         // Reset position to start
-        currentLat = startLat;
-        currentLng = startLng;
+        current = matrix.start();
         currentTime = startTime;
 
         while (!toSchedule.isEmpty()) {
@@ -144,27 +151,36 @@ public class SightseeingSchedulerService {
             if (timeLeft < 20) break;
 
             // Find nearest attraction that fits
-            SightseeingAttraction nearest = null;
-            int nearestWalk = Integer.MAX_VALUE;
+            SightseeingAttraction[] remaining = toSchedule.toArray(new SightseeingAttraction[0]);
+            int from = current;
+            LocalTime now = currentTime;
+            boolean lunchPending = includeLunch && !hadLunch;
 
-            for (SightseeingAttraction attr : toSchedule) {
-                if (used.contains(attr)) continue;
+            int nearestId = ParallelArgmax.argmax(remaining.length, candidate -> {
+                SightseeingAttraction attr = remaining[candidate];
+                if (used.contains(attr)) return ParallelArgmax.SKIP;
 
-                int walk = cache.getWalkingTimeMinutes(currentLat, currentLng, attr.getLatitude(), attr.getLongitude());
+                int walk = matrix.time(from, matrix.idOf(attr.getWrappedPOI()));
+                if (walk == Integer.MAX_VALUE) return ParallelArgmax.SKIP;
                 int total = walk + attr.getVisitDuration();
 
                 // Account for lunch
                 int lunchBuffer = 0;
-                LocalTime afterWalk = currentTime.plusMinutes(walk);
+                LocalTime afterWalk = now.plusMinutes(walk);
                 LocalTime afterVisit = afterWalk.plusMinutes(attr.getVisitDuration());
-                if (includeLunch && !hadLunch && afterVisit.getHour() >= 13) {
+                if (lunchPending && afterVisit.getHour() >= 13) {
                     lunchBuffer = 60;
                 }
 
-                if (total + lunchBuffer <= timeLeft && walk < nearestWalk) {
-                    nearest = attr;
-                    nearestWalk = walk;
-                }
+                // Shortest walk wins
+                return total + lunchBuffer <= timeLeft ? -walk : ParallelArgmax.SKIP;
+            });
+
+            SightseeingAttraction nearest = null;
+            int nearestWalk = Integer.MAX_VALUE;
+            if (nearestId != ParallelArgmax.NONE) {
+                nearest = remaining[nearestId];
+                nearestWalk = matrix.time(current, matrix.idOf(nearest.getWrappedPOI()));
             }
 
             if (nearest == null) {
@@ -190,7 +206,7 @@ public class SightseeingSchedulerService {
                 hadLunch = true;
 
                 // Recalculate walk after lunch
-                nearestWalk = cache.getWalkingTimeMinutes(currentLat, currentLng, nearest.getLatitude(), nearest.getLongitude());
+                nearestWalk = matrix.time(current, matrix.idOf(nearest.getWrappedPOI()));
                 currentTime = currentTime.plusMinutes(nearestWalk);
             }
 
@@ -204,8 +220,7 @@ public class SightseeingSchedulerService {
             used.add(nearest);
             toSchedule.remove(nearest);
             currentTime = departure;
-            currentLat = nearest.getLatitude();
-            currentLng = nearest.getLongitude();
+            current = matrix.idOf(nearest.getWrappedPOI());
         }
 
         // Final lunch check
@@ -3,6 +3,12 @@ package com.martyna.ScenicRoutes.service;
 import com.martyna.ScenicRoutes.model.ScenicPoint;
 import com.martyna.ScenicRoutes.model.ScenicRoute;
 import com.martyna.ScenicRoutes.model.UserPreferences;
+import com.martyna.ScenicRoutes.routing.CandidateSet;
+import com.martyna.ScenicRoutes.routing.ParallelArgmax;
+import com.martyna.ScenicRoutes.routing.RouteEvaluator;
+import com.martyna.ScenicRoutes.routing.RouteImprover;
+import com.martyna.ScenicRoutes.routing.SpatialGrid;
+import com.martyna.ScenicRoutes.routing.TimeMatrix;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -15,272 +21,237 @@ public class TwoPointLoopService {
     private final GoogleRoutesService routesService;
     private final WalkingTimeCache cache;
 
+    // Outward legs longer than this many minutes are never taken
+    private static final int MAX_OUTWARD_MINUTES = 30;
+
+    // Straight-line reach of an outward leg. Google walks at about 1.4 m/s and never beats
+    // the straight line, so at 2 m/s this keeps every POI the minute check could accept.
+    private static final double MAX_OUTWARD_METERS = (MAX_OUTWARD_MINUTES + 1) * 60 * 2.0;
+
     public TwoPointLoopService(GoogleRoutesService routesService, WalkingTimeCache cache) {
         this.routesService = routesService;
         this.cache = cache;
     }
 
+    // The matrix's end node is the loop's return point (same spot as its start)
     public ScenicRoute generateTwoPointLoop(
-            double startLat,
-            double startLng,
-            List<ScenicPoint> pois,
+            TimeMatrix matrix,
             int minutes,
             UserPreferences preferences
     ) {
-        Set<ScenicPoint> allPoisSet = new HashSet<>(pois);
-        List<ScenicPoint> allPois = new ArrayList<>(allPoisSet);
+        ScenicRoute loop = buildLoop(matrix, minutes, preferences);
+        if (loop.getPoints().isEmpty()) return loop;
 
-        List<ScenicPoint> outwardRoute = new ArrayList<>();
-        Set<ScenicPoint> usedOnOutward = new HashSet<>();
+        String polyline = generateSafePolyline(
+                matrix.latitude(matrix.start()), matrix.longitude(matrix.start()), loop.getPoints()
+        );
+        return new ScenicRoute(loop.getPoints(), loop.getTotalScore(), loop.getTotalTime(), polyline);
+    }
 
-        double currentLat = startLat;
-        double currentLng = startLng;
-        int outwardTime = 0;
+    // Same loop without the polyline, for callers that only compare candidate routes.
+    //
+    // Everything that doesn't depend on the outward position - each candidate's weighted
+    // score and its time back home - is computed once up front, and the routes are kept as
+    // id arrays reused across extensions, so one extension is a single pass over the
+    // candidates per stop it tries rather than a rebuild of lists and category lookups.
+    public ScenicRoute buildLoop(
+            TimeMatrix matrix,
+            int minutes,
+            UserPreferences preferences
+    ) {
+        LoopState state = new LoopState(matrix, preferences);
 
-        ScenicRoute bestValidLoop = null;
+        int current = matrix.start();
+        int outwardTime = 0;
 
         while (true) {
 
-            ScenicPoint nextOutward = findBestOutwardPOI(
-                    currentLat, currentLng,
-                    allPois,
-                    usedOnOutward,
-                    preferences
-            );
+            int nextOutward = findBestOutwardPOI(state, current);
 
-            if (nextOutward == null) break;
+            if (nextOutward < 0) break;
 
-            int travelTime = cache.getWalkingTimeMinutes(
-                    currentLat, currentLng,
-                    nextOutward.getLatitude(), nextOutward.getLongitude()
-            );
-            int visitTime = 5;
+            int travelTime = matrix.time(current, nextOutward);
+            int visitTime = RouteEvaluator.VISIT_MINUTES;
 
             // add to outward route
-            outwardRoute.add(nextOutward);
-            usedOnOutward.add(nextOutward);
+            state.outward[state.outwardCount++] = nextOutward;
+            state.used[nextOutward] = true;
             int newOutwardTime = outwardTime + travelTime + visitTime;
 
             // Find optimal return route from this position
-            ScenicRoute returnRoute = findOptimalReturnRoute(
-                    nextOutward.getLatitude(), nextOutward.getLongitude(),
-                    startLat, startLng,
-                    allPois,
-                    usedOnOutward,
-                    minutes - newOutwardTime,
-                    preferences
-            );
+            int returnTime = findOptimalReturnRoute(state, nextOutward, minutes - newOutwardTime);
 
-            int totalTime = newOutwardTime + returnRoute.getTotalTime();
+            int totalTime = newOutwardTime + returnTime;
 
             if (totalTime <= minutes) {
-                // Valid loop - combine outward and return
-                List<ScenicPoint> fullRoute = new ArrayList<>();
-                fullRoute.addAll(outwardRoute);
-                fullRoute.addAll(returnRoute.getPoints());
-
-                double totalScore = fullRoute.stream()
-                        .mapToDouble(ScenicPoint::getScore)
-                        .sum();
-
-                String polyline = generateSafePolyline(startLat, startLng, fullRoute);
-
-                bestValidLoop = new ScenicRoute(fullRoute, totalScore, totalTime, polyline);
+                // Valid loop - outward followed by return
+                state.keepAsBest();
 
-                currentLat = nextOutward.getLatitude();
-                currentLng = nextOutward.getLongitude();
+                current = nextOutward;
                 outwardTime = newOutwardTime;
 
             } else {
                 // Doesn't fit - revert and stop
-                outwardRoute.remove(outwardRoute.size() - 1);
-                usedOnOutward.remove(nextOutward);
+                state.outwardCount--;
+                state.used[nextOutward] = false;
                 break;
             }
         }
 
-        if (bestValidLoop == null) return new ScenicRoute(new ArrayList<>(), 0, 0, "");
+        if (state.bestCount < 0) return new ScenicRoute(new ArrayList<>(), 0, 0, "");
 
-        return bestValidLoop;
+        // Outward and return legs were each chosen greedily - reorder the whole loop on real
+        // times, keeping its stops, which never makes it longer than the loop that fit
+        int[] assembled = Arrays.copyOf(state.best, state.bestCount);
+        int[] improved = new RouteImprover(matrix, false).improve(assembled);
+        int totalTime = state.evaluator.minutes(improved);
+
+        List<ScenicPoint> fullRoute = state.pois.pointsOf(improved);
+
+        double totalScore = fullRoute.stream()
+                .mapToDouble(ScenicPoint::getScore)
+                .sum();
+
+        return new ScenicRoute(fullRoute, totalScore, totalTime, "");
     }
 
     //Finds best next POI for outward route based on quality-to-time efficiency
-    private ScenicPoint findBestOutwardPOI(
-            double currentLat,
-            double currentLng,
-            List<ScenicPoint> allPois,
-            Set<ScenicPoint> used,
-            UserPreferences preferences
-    ) {
-        ScenicPoint best = null;
-        double bestScore = -Double.MAX_VALUE;
+    private int findBestOutwardPOI(LoopState state, int current) {
+        // Only POIs within walking reach of the current spot need their times checked
+        int[] nearby = state.grid.within(
+                state.matrix.latitude(current), state.matrix.longitude(current), MAX_OUTWARD_METERS
+        );
 
-        for (ScenicPoint poi : allPois) {
-            if (used.contains(poi)) continue;
+        int best = ParallelArgmax.argmax(nearby.length, index -> {
+            int candidate = nearby[index];
+            if (state.used[candidate]) return ParallelArgmax.SKIP;
 
-            int travelTime = cache.getWalkingTimeMinutes(
-                    currentLat, currentLng,
-                    poi.getLatitude(), poi.getLongitude()
-            );
+            int travelTime = state.matrix.time(current, candidate);
 
             // Skip unreachable or too-distant POIs (>30 min)
-            if (travelTime == Integer.MAX_VALUE || travelTime > 30) continue;
-
-            // Apply user preference multipliers, use highest if multiple categories
-            List<UserPreferences.POICategory> categories = poi.getAllCategories();
-            double maxWeight = 1.0;
-            for (UserPreferences.POICategory category : categories) {
-                double weight = preferences.getCategoryWeight(category);
-                if (weight > maxWeight) {
-                    maxWeight = weight;
-                }
-            }
+            if (travelTime == Integer.MAX_VALUE || travelTime > MAX_OUTWARD_MINUTES) return ParallelArgmax.SKIP;
 
             // Score by quality-to-time efficiency
-            double poiQuality = poi.getScore() * maxWeight;
-            double efficiency = poiQuality / Math.max(1, travelTime);
-
-            if (efficiency > bestScore) {
-                bestScore = efficiency;
-                best = poi;
-            }
-        }
+            return state.pois.weightedScore(candidate) / Math.max(1, travelTime);
+        });
 
-        return best;
+        // nearby is ascending, so ties still go to the lowest candidate id
+        return best == ParallelArgmax.NONE ? -1 : nearby[best];
     }
 
     // Finds optimal return route to start, prioritizing POIs that move
-    // towards the start
-    private ScenicRoute findOptimalReturnRoute(
-            double fromLat,
-            double fromLng,
-            double toLat,
-            double toLng,
-            List<ScenicPoint> allPois,
-            Set<ScenicPoint> usedPois,
-            int timeLimit,
-            UserPreferences preferences
-    ) {
-
-        List<ScenicPoint> returnRoute = new ArrayList<>();
-        Set<ScenicPoint> used = new HashSet<>(usedPois);
-
-        double currentLat = fromLat;
-        double currentLng = fromLng;
+    // towards the start. Leaves the route in state.returning and returns
+    // its walking time including visits (999 if home is out of reach).
+    private int findOptimalReturnRoute(LoopState state, int from, int timeLimit) {
+        int[] toHome = state.toHome;
+        boolean[] used = state.returnUsed;
+        System.arraycopy(state.used, 0, used, 0, state.candidates);
+        state.returnCount = 0;
+
+        int current = from;
         int timeRemaining = timeLimit;
+        int routeTime = 0;
 
         // Check if we can reach the start point directly
-        int directHomeTime = cache.getWalkingTimeMinutes(fromLat, fromLng, toLat, toLng);
-        if (directHomeTime > timeLimit) return new ScenicRoute(returnRoute, 0, 999, "");
+        int directHomeTime = toHome[from];
+        if (directHomeTime > timeLimit) return 999;
 
 
         // Greedily add POIs while moving toward the start location, keep 15min buffer
-        int iteration = 0;
         while (timeRemaining > directHomeTime + 15) {
-            iteration++;
-            ScenicPoint best = null;
-            double bestScore = -Double.MAX_VALUE;
-            int bestTravelTime = 0;
-            int bestTimeToHome = 0;
-
-            for (ScenicPoint poi : allPois) {
-                if (used.contains(poi)) continue;
+            int position = current;
+            int remaining = timeRemaining;
 
-                int travelTime = cache.getWalkingTimeMinutes(
-                        currentLat, currentLng,
-                        poi.getLatitude(), poi.getLongitude()
-                );
+            // Bonus for pois that move us closer back
+            int currentDistToHome = toHome[current];
 
-                if (travelTime == Integer.MAX_VALUE) continue;
+            int best = ParallelArgmax.argmax(state.candidates, candidate -> {
+                if (used[candidate]) return ParallelArgmax.SKIP;
 
-                // Check if we can visit this POI and still get back
-                int timeToHome = cache.getWalkingTimeMinutes(
-                        poi.getLatitude(), poi.getLongitude(),
-                        toLat, toLng
-                );
+                int travelTime = state.matrix.time(position, candidate);
+                int timeToHome = toHome[candidate];
 
-                int totalTimeNeeded = travelTime + 10 + timeToHome;
+                if (travelTime == Integer.MAX_VALUE || timeToHome == Integer.MAX_VALUE) return ParallelArgmax.SKIP;
 
-                if (timeRemaining < totalTimeNeeded) {
-                    continue;
-                }
+                // Check if we can visit this POI and still get back
+                int totalTimeNeeded = travelTime + RouteEvaluator.VISIT_MINUTES + timeToHome;
 
-                // Apply user preference multipliers
-                List<UserPreferences.POICategory> categories = poi.getAllCategories();
-                double maxWeight = 1.0;
-                for (UserPreferences.POICategory category : categories) {
-                    double weight = preferences.getCategoryWeight(category);
-                    if (weight > maxWeight) {
-                        maxWeight = weight;
-                    }
+                if (remaining < totalTimeNeeded) {
+                    return ParallelArgmax.SKIP;
                 }
 
-                double poiQuality = poi.getScore() * maxWeight;
-
-                // Bonus for pois that move us closer back
-                int currentDistToHome = cache.getWalkingTimeMinutes(
-                        currentLat, currentLng, toLat, toLng
-                );
-
                 double homeProgressBonus = 0;
                 if (timeToHome < currentDistToHome) {
                     homeProgressBonus = (currentDistToHome - timeToHome) * 2;
                 }
 
-                double totalScore = (poiQuality + homeProgressBonus) / Math.max(1, travelTime);
+                return (state.pois.weightedScore(candidate) + homeProgressBonus) / Math.max(1, travelTime);
+            });
 
-                if (totalScore > bestScore) {
-                    bestScore = totalScore;
-                    best = poi;
-                    bestTravelTime = travelTime;
-                    bestTimeToHome = timeToHome;
-                }
-            }
-
-            if (best == null) break;
+            if (best == ParallelArgmax.NONE) break;
 
-            returnRoute.add(best);
-            used.add(best);
-            timeRemaining -= (bestTravelTime + 10);
+            int bestTravelTime = state.matrix.time(current, best);
+            state.returning[state.returnCount++] = best;
+            used[best] = true;
+            timeRemaining -= (bestTravelTime + RouteEvaluator.VISIT_MINUTES);
+            routeTime += bestTravelTime + RouteEvaluator.VISIT_MINUTES; // Visit time
 
-            currentLat = best.getLatitude();
-            currentLng = best.getLongitude();
+            current = best;
         }
 
-        int actualTime = calculateRouteTime(fromLat, fromLng, returnRoute, toLat, toLng);
-        double score = returnRoute.stream().mapToDouble(ScenicPoint::getScore).sum();
-
-        return new ScenicRoute(returnRoute, score, actualTime, "");
+        // Final leg to end point
+        return routeTime + toHome[current];
     }
 
-    // Calculates total walking time for a route segment including visit times
-    private int calculateRouteTime(
-            double startLat, double startLng,
-            List<ScenicPoint> points,
-            double endLat, double endLng
-    ) {
-        if (points.isEmpty()) {
-            return cache.getWalkingTimeMinutes(startLat, startLng, endLat, endLng);
+    // Per-request working set for buildLoop, sized once for the matrix
+    private final class LoopState {
+        final TimeMatrix matrix;
+        // Closed loop: the walk ends back at the matrix end node
+        final RouteEvaluator evaluator;
+        final int candidates;
+        // Candidate data by matrix id; weighted scores use the highest preference boost
+        // among each candidate's categories
+        final CandidateSet pois;
+        // Minutes from each candidate back to the loop's end
+        final int[] toHome;
+        // Candidate positions, for the outward reach query
+        final SpatialGrid grid;
+
+        final int[] outward;
+        final boolean[] used;
+        int outwardCount;
+
+        final int[] returning;
+        final boolean[] returnUsed;
+        int returnCount;
+
+        final int[] best;
+        int bestCount = -1;
+
+        LoopState(TimeMatrix matrix, UserPreferences preferences) {
+            this.matrix = matrix;
+            this.evaluator = new RouteEvaluator(matrix, RouteEvaluator.VISIT_MINUTES, false);
+            this.candidates = matrix.candidateCount();
+            this.toHome = new int[candidates];
+            this.outward = new int[candidates];
+            this.used = new boolean[candidates];
+            this.returning = new int[candidates];
+            this.returnUsed = new boolean[candidates];
+            this.best = new int[candidates];
+
+            this.pois = CandidateSet.of(matrix.candidates(), preferences);
+            this.grid = SpatialGrid.of(pois, MAX_OUTWARD_METERS / 4);
+
+            for (int candidate = 0; candidate < candidates; candidate++) {
+                toHome[candidate] = matrix.time(candidate, matrix.end());
+            }
         }
 
-        int time = 0;
-        double currentLat = startLat;
-        double currentLng = startLng;
-
-        for (ScenicPoint poi : points) {
-            time += cache.getWalkingTimeMinutes(
-                    currentLat, currentLng,
-                    poi.getLatitude(), poi.getLongitude()
-            );
-            time += 10; // Visit time
-            currentLat = poi.getLatitude();
-            currentLng = poi.getLongitude();
+        void keepAsBest() {
+            System.arraycopy(outward, 0, best, 0, outwardCount);
+            System.arraycopy(returning, 0, best, outwardCount, returnCount);
+            bestCount = outwardCount + returnCount;
         }
-
-        // Final leg to end point
-        time += cache.getWalkingTimeMinutes(currentLat, currentLng, endLat, endLng);
-
-        return time;
     }
 
     private String generateSafePolyline(double startLat, double startLng, List<ScenicPoint> points) {
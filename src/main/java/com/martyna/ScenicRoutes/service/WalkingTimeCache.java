@@ -1,9 +1,25 @@
 package com.martyna.ScenicRoutes.service;
 
+import com.martyna.ScenicRoutes.cache.CoordinateKey;
+import com.martyna.ScenicRoutes.cache.LongPairIntMap;
+import com.martyna.ScenicRoutes.cache.StripedLongPairIntMap;
+import com.martyna.ScenicRoutes.cache.WalkingTimeStore;
+import com.martyna.ScenicRoutes.cache.WeightedStringCache;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 // Cache for Google Maps walking time requests
 @Service
@@ -11,19 +27,49 @@ public class WalkingTimeCache {
 
     private final GoogleRoutesService routesService;
 
-    // cache for walking times
-    private final Map<String, Integer> walkingTimeCache = new ConcurrentHashMap<>();
+    // cache for walking times, keyed by the packed origin and destination coordinates
+    private final StripedLongPairIntMap walkingTimeCache;
 
-    // cache for polylines
-    private final Map<String, String> polylineCache = new ConcurrentHashMap<>();
+    // cache for polylines, weighed by size since they are large and rarely reused
+    private final WeightedStringCache polylineCache;
 
-    // Statistics
-    private int cacheHits = 0;
-    private int cacheMisses = 0;
-    private int totalRequests = 0;
+    // on-disk L2 for walking times, so a restart doesn't mean paying for them again
+    private final WalkingTimeStore walkingTimeStore;
+
+    // Misses currently being fetched, so concurrent callers share one upstream call per key.
+    // Pairwise lookups and matrix cells share the walking-time map.
+    private final Map<PairKey, CompletableFuture<Integer>> walkingTimesInFlight = new ConcurrentHashMap<>();
+    // Held while a matrix claims its missing cells, so overlapping matrices don't split
+    // each other's cells into extra, smaller batches
+    private final Object matrixClaimLock = new Object();
+    private final Map<String, CompletableFuture<String>> polylinesInFlight = new ConcurrentHashMap<>();
+
+    // Caps walking-time calls in flight to Google across all requests; a request's misses
+    // are all sent at once, so without it a few large requests could flood the API quota
+    private final Semaphore fetchPermits;
 
-    public WalkingTimeCache(GoogleRoutesService routesService) {
+    // Statistics
+    private final AtomicInteger cacheHits = new AtomicInteger(0);
+    private final AtomicInteger storeHits = new AtomicInteger(0);
+    private final AtomicInteger cacheMisses = new AtomicInteger(0);
+    private final AtomicInteger coalescedWaits = new AtomicInteger(0);
+    private final AtomicInteger totalRequests = new AtomicInteger(0);
+
+    public WalkingTimeCache(
+            GoogleRoutesService routesService,
+            @Value("${cache.walking-time.max-bytes:33554432}") long walkingTimeMaxBytes,
+            @Value("${cache.polyline.max-bytes:16777216}") long polylineMaxBytes,
+            @Value("${cache.walking-time.store.path:}") String storePath,
+            @Value("${cache.walking-time.store.slots:4194304}") int storeSlots,
+            @Value("${cache.walking-time.max-concurrent-fetches:8}") int maxConcurrentFetches
+    ) {
         this.routesService = routesService;
+        this.fetchPermits = new Semaphore(maxConcurrentFetches);
+        this.walkingTimeCache = new StripedLongPairIntMap(walkingTimeMaxBytes);
+        this.polylineCache = new WeightedStringCache(polylineMaxBytes);
+        this.walkingTimeStore = storePath.isBlank()
+                ? null
+                : new WalkingTimeStore(Path.of(storePath), storeSlots);
     }
 
     // Get walking time with caching
@@ -31,28 +77,261 @@ public class WalkingTimeCache {
             double fromLat, double fromLng,
             double toLat, double toLng
     ) {
-        totalRequests++;
-        String key = createLocationKey(fromLat, fromLng, toLat, toLng);
+        int requestCount = totalRequests.incrementAndGet();
+        long fromKey = CoordinateKey.pack(fromLat, fromLng);
+        long toKey = CoordinateKey.pack(toLat, toLng);
 
-        Integer cached = walkingTimeCache.get(key);
-        if (cached != null) {
-            cacheHits++;
+        int cached = lookupWalkingTime(fromKey, toKey);
+        if (cached != LongPairIntMap.NO_VALUE) {
+            cacheHits.incrementAndGet();
             return cached;
         }
 
-        // Cache miss - call API
-        cacheMisses++;
-        int time = routesService.getWalkingTimeMinutes(fromLat, fromLng, toLat, toLng);
-        walkingTimeCache.put(key, time);
+        // Cache miss - call API, unless another request is already fetching this pair
+        int time = loadOnce(walkingTimesInFlight, new PairKey(fromKey, toKey), () -> {
+            int raced = lookupWalkingTime(fromKey, toKey);
+            if (raced != LongPairIntMap.NO_VALUE) return raced;
+
+            cacheMisses.incrementAndGet();
+            int fetched;
+            fetchPermits.acquireUninterruptibly();
+            try {
+                fetched = routesService.getWalkingTimeMinutes(fromLat, fromLng, toLat, toLng);
+            } finally {
+                fetchPermits.release();
+            }
+            storeWalkingTime(fromKey, toKey, fetched);
+            return fetched;
+        });
 
         // Logs to track cache effectiveness
-        if (totalRequests % 50 == 0) {
+        if (requestCount % 50 == 0) {
             logCacheStats();
         }
 
         return time;
     }
 
+    // Walking times between every pair of the given points, row-major: [from * n + to].
+    // Cached cells are read directly; the missing ones are fetched with batched
+    // computeRouteMatrix calls, all in flight at once up to the fetch limit, and stored in
+    // bulk, instead of one computeRoutes call per pair. Cells another request is already
+    // fetching are waited on instead of fetched again.
+    public int[] getWalkingTimeMatrix(double[] lats, double[] lngs) {
+        int n = lats.length;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = CoordinateKey.pack(lats[i], lngs[i]);
+        }
+
+        int[] times = new int[n * n];
+        boolean[] missing = new boolean[n * n];
+        int lookups = 0;
+        int missingCount = 0;
+
+        for (int from = 0; from < n; from++) {
+            for (int to = 0; to < n; to++) {
+                // Same spot (e.g. a loop's start and end) is zero minutes away
+                if (keys[from] == keys[to]) continue;
+
+                lookups++;
+                int cached = lookupWalkingTime(keys[from], keys[to]);
+                if (cached == LongPairIntMap.NO_VALUE) {
+                    missing[from * n + to] = true;
+                    missingCount++;
+                } else {
+                    times[from * n + to] = cached;
+                }
+            }
+        }
+
+        totalRequests.addAndGet(lookups);
+        cacheHits.addAndGet(lookups - missingCount);
+        if (missingCount == 0) return times;
+
+        Map<Integer, CompletableFuture<Integer>> claimed = new HashMap<>();
+        Map<Integer, CompletableFuture<Integer>> awaited = new HashMap<>();
+        synchronized (matrixClaimLock) {
+            for (int cell = 0; cell < n * n; cell++) {
+                if (!missing[cell]) continue;
+                CompletableFuture<Integer> mine = new CompletableFuture<>();
+                CompletableFuture<Integer> existing = walkingTimesInFlight.putIfAbsent(cellKey(keys, cell), mine);
+                if (existing == null) {
+                    claimed.put(cell, mine);
+                } else {
+                    awaited.put(cell, existing);
+                    missing[cell] = false;
+                }
+            }
+        }
+
+        // A fetch that finished between the lookup and the claim has already been stored
+        for (int cell : new ArrayList<>(claimed.keySet())) {
+            int raced = lookupWalkingTime(keys[cell / n], keys[cell % n]);
+            if (raced == LongPairIntMap.NO_VALUE) continue;
+            times[cell] = raced;
+            missing[cell] = false;
+            release(claimed.remove(cell), keys, cell, raced);
+        }
+
+        cacheMisses.addAndGet(claimed.size());
+        coalescedWaits.addAndGet(awaited.size());
+        try {
+            fetchMissingCells(lats, lngs, keys, times, missing, claimed);
+        } catch (RuntimeException e) {
+            // Requests waiting on these cells fail with this one instead of hanging
+            claimed.forEach((cell, future) -> {
+                future.completeExceptionally(e);
+                walkingTimesInFlight.remove(cellKey(keys, cell), future);
+            });
+            throw e;
+        }
+
+        for (Map.Entry<Integer, CompletableFuture<Integer>> entry : awaited.entrySet()) {
+            times[entry.getKey()] = await(entry.getValue());
+        }
+        return times;
+    }
+
+    // Fetches the claimed cells block by block, releasing each once it is cached
+    private void fetchMissingCells(
+            double[] lats, double[] lngs, long[] keys, int[] times, boolean[] missing,
+            Map<Integer, CompletableFuture<Integer>> claimed
+    ) {
+        if (claimed.isEmpty()) return;
+        int n = lats.length;
+        int side = GoogleRoutesService.MAX_MATRIX_SIDE;
+
+        // Blocks cover disjoint cells, so all of them are requested before waiting on any
+        List<PendingBlock> pending = new ArrayList<>();
+        for (int originStart = 0; originStart < n; originStart += side) {
+            int originEnd = Math.min(originStart + side, n);
+
+            // Destinations that at least one origin in this block still needs
+            List<Integer> destinations = new ArrayList<>();
+            for (int to = 0; to < n; to++) {
+                for (int from = originStart; from < originEnd; from++) {
+                    if (missing[from * n + to]) {
+                        destinations.add(to);
+                        break;
+                    }
+                }
+            }
+
+            for (int d = 0; d < destinations.size(); d += side) {
+                List<Integer> destinationBlock = destinations.subList(d, Math.min(d + side, destinations.size()));
+                PendingBlock block = requestMatrixBlock(lats, lngs, missing, originStart, originEnd, destinationBlock);
+                if (block != null) pending.add(block);
+            }
+        }
+
+        for (PendingBlock block : pending) {
+            storeMatrixBlock(block, keys, times, missing, claimed);
+        }
+    }
+
+    // Starts the computeRouteMatrix call for one block; null if none of its cells are missing
+    private PendingBlock requestMatrixBlock(
+            double[] lats, double[] lngs, boolean[] missing,
+            int originStart, int originEnd,
+            List<Integer> destinations
+    ) {
+        int n = lats.length;
+
+        // Only origins with a missing cell in this block are sent
+        List<Integer> origins = new ArrayList<>();
+        for (int from = originStart; from < originEnd; from++) {
+            for (int to : destinations) {
+                if (missing[from * n + to]) {
+                    origins.add(from);
+                    break;
+                }
+            }
+        }
+        if (origins.isEmpty()) return null;
+
+        double[] originLats = new double[origins.size()];
+        double[] originLngs = new double[origins.size()];
+        for (int i = 0; i < origins.size(); i++) {
+            originLats[i] = lats[origins.get(i)];
+            originLngs[i] = lngs[origins.get(i)];
+        }
+        double[] destinationLats = new double[destinations.size()];
+        double[] destinationLngs = new double[destinations.size()];
+        for (int i = 0; i < destinations.size(); i++) {
+            destinationLats[i] = lats[destinations.get(i)];
+            destinationLngs[i] = lngs[destinations.get(i)];
+        }
+
+        // Waits here only when the limit is reached; the permit is returned once the call completes
+        fetchPermits.acquireUninterruptibly();
+        CompletableFuture<int[][]> response;
+        try {
+            response = routesService.getWalkingTimeMatrixAsync(
+                    originLats, originLngs, destinationLats, destinationLngs
+            );
+        } catch (RuntimeException e) {
+            fetchPermits.release();
+            throw e;
+        }
+        response.whenComplete((block, failure) -> fetchPermits.release());
+
+        return new PendingBlock(origins, destinations, response);
+    }
+
+    // Waits for a block's response and fills its missing cells, here and in both cache layers
+    private void storeMatrixBlock(PendingBlock pending, long[] keys, int[] times, boolean[] missing,
+                                  Map<Integer, CompletableFuture<Integer>> claimed) {
+        int n = keys.length;
+        int[][] block = GoogleHttpClient.join(pending.response());
+
+        for (int i = 0; i < pending.origins().size(); i++) {
+            int from = pending.origins().get(i);
+            for (int j = 0; j < pending.destinations().size(); j++) {
+                int to = pending.destinations().get(j);
+                if (!missing[from * n + to]) continue;
+
+                int minutes = block[i][j];
+                times[from * n + to] = minutes;
+                missing[from * n + to] = false;
+                storeWalkingTime(keys[from], keys[to], minutes);
+                release(claimed.remove(from * n + to), keys, from * n + to, minutes);
+            }
+        }
+    }
+
+    // Both layers. "No route" isn't kept: Google gives it for failed elements and transient
+    // errors as well, and a cached one would stay unreachable until evicted - or for good on disk.
+    private void storeWalkingTime(long fromKey, long toKey, int minutes) {
+        if (minutes == Integer.MAX_VALUE) return;
+        walkingTimeCache.put(fromKey, toKey, minutes);
+        if (walkingTimeStore != null) walkingTimeStore.put(fromKey, toKey, minutes);
+    }
+
+    // Hands a claimed cell's time to whoever waits on it; it is cached by now, if it is kept at all
+    private void release(CompletableFuture<Integer> future, long[] keys, int cell, int minutes) {
+        future.complete(minutes);
+        walkingTimesInFlight.remove(cellKey(keys, cell), future);
+    }
+
+    private static PairKey cellKey(long[] keys, int cell) {
+        return new PairKey(keys[cell / keys.length], keys[cell % keys.length]);
+    }
+
+    // Memory first, then the persistent store (promoting what it finds)
+    private int lookupWalkingTime(long fromKey, long toKey) {
+        int cached = walkingTimeCache.get(fromKey, toKey);
+        if (cached != LongPairIntMap.NO_VALUE || walkingTimeStore == null) return cached;
+
+        int stored = walkingTimeStore.get(fromKey, toKey);
+        if (stored != WalkingTimeStore.NO_VALUE) {
+            storeHits.incrementAndGet();
+            walkingTimeCache.put(fromKey, toKey, stored);
+            return stored;
+        }
+        return LongPairIntMap.NO_VALUE;
+    }
+
     //Get polyline for one-way route with caching
     public String getWalkingPolylineWithWaypoints(
             double startLat, double startLng,
@@ -62,16 +341,12 @@ public class WalkingTimeCache {
 
         String cached = polylineCache.get(key);
         if (cached != null) {
-            cacheHits++;
+            cacheHits.incrementAndGet();
             return cached;
         }
 
-        // Cache miss - call API
-        cacheMisses++;
-        String polyline = routesService.getWalkingPolylineWithWaypoints(startLat, startLng, points);
-        polylineCache.put(key, polyline);
-
-        return polyline;
+        // Cache miss - call API, unless another request is already fetching this polyline
+        return loadPolylineOnce(key, () -> routesService.getWalkingPolylineWithWaypoints(startLat, startLng, points));
     }
 
     //Get polyline for loop routes with caching
@@ -83,16 +358,12 @@ public class WalkingTimeCache {
 
         String cached = polylineCache.get(key);
         if (cached != null) {
-            cacheHits++;
+            cacheHits.incrementAndGet();
             return cached;
         }
 
-        // Cache miss - call API
-        cacheMisses++;
-        String polyline = routesService.getWalkingPolylineForLoop(startLat, startLng, points);
-        polylineCache.put(key, polyline);
-
-        return polyline;
+        // Cache miss - call API, unless another request is already fetching this polyline
+        return loadPolylineOnce(key, () -> routesService.getWalkingPolylineForLoop(startLat, startLng, points));
     }
 
     //Get polyline for point-to-point routes with caching
@@ -105,22 +376,60 @@ public class WalkingTimeCache {
 
         String cached = polylineCache.get(key);
         if (cached != null) {
-            cacheHits++;
+            cacheHits.incrementAndGet();
             return cached;
         }
 
-        // Cache miss - call API
-        cacheMisses++;
-        String polyline = routesService.getWalkingPolylinePointToPoint(
+        // Cache miss - call API, unless another request is already fetching this polyline
+        return loadPolylineOnce(key, () -> routesService.getWalkingPolylinePointToPoint(
                 startLat, startLng, endLat, endLng, points
-        );
-        polylineCache.put(key, polyline);
+        ));
+    }
+
+    private String loadPolylineOnce(String key, Supplier<String> fetch) {
+        return loadOnce(polylinesInFlight, key, () -> {
+            String raced = polylineCache.get(key);
+            if (raced != null) return raced;
 
-        return polyline;
+            cacheMisses.incrementAndGet();
+            String polyline = fetch.get();
+            polylineCache.put(key, polyline);
+            return polyline;
+        });
     }
 
-    private String createLocationKey(double lat1, double lng1, double lat2, double lng2) {
-        return String.format("%.6f,%.6f->%.6f,%.6f", lat1, lng1, lat2, lng2);
+    // Single-flight: the first caller for a key runs the loader, later callers wait on its future.
+    // The loader must store its result in the cache, if it is kept, before the in-flight entry
+    // is removed.
+    private <K, V> V loadOnce(Map<K, CompletableFuture<V>> inFlight, K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            coalescedWaits.incrementAndGet();
+            return await(existing);
+        }
+
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // Another caller's result, with its failure rethrown as it was thrown there
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
     }
 
     private String createPolylineKey(
@@ -158,35 +467,59 @@ public class WalkingTimeCache {
 
     public CacheStats getStats() {
         return new CacheStats(
-                totalRequests,
-                cacheHits,
-                cacheMisses,
+                totalRequests.get(),
+                cacheHits.get(),
+                cacheMisses.get(),
                 walkingTimeCache.size(),
-                polylineCache.size()
+                polylineCache.size(),
+                walkingTimeCache.evictions(),
+                polylineCache.evictions(),
+                walkingTimeCache.rejections(),
+                polylineCache.rejections(),
+                walkingTimeCache.estimatedBytes(),
+                polylineCache.estimatedBytes(),
+                storeHits.get(),
+                walkingTimeStore != null ? walkingTimeStore.size() : 0,
+                coalescedWaits.get()
         );
     }
 
     // Log cache performance
     private void logCacheStats() {
-        double hitRate = totalRequests > 0
-                ? (cacheHits * 100.0 / totalRequests)
+        double hitRate = totalRequests.get() > 0
+                ? (cacheHits.get() * 100.0 / totalRequests.get())
                 : 0;
 
     }
 
 
+    // Clears the in-memory layers only; the persistent store is meant to outlive them
     public void clearCache() {
         walkingTimeCache.clear();
         polylineCache.clear();
-        cacheHits = 0;
-        cacheMisses = 0;
-        totalRequests = 0;
+        cacheHits.set(0);
+        storeHits.set(0);
+        cacheMisses.set(0);
+        coalescedWaits.set(0);
+        totalRequests.set(0);
+    }
+
+    @PreDestroy
+    public void flushStore() {
+        if (walkingTimeStore != null) walkingTimeStore.flush();
     }
 
     public int getCacheSize() {
         return walkingTimeCache.size() + polylineCache.size();
     }
 
+    private record PairKey(long fromKey, long toKey) {
+    }
+
+    private record PendingBlock(List<Integer> origins, List<Integer> destinations,
+                                CompletableFuture<int[][]> response) {
+    }
+
     // Cache statistics data class
     public static class CacheStats {
         public final int totalRequests;
@@ -194,14 +527,37 @@ public class WalkingTimeCache {
         public final int misses;
         public final int walkingTimeCacheSize;
         public final int polylineCacheSize;
+        public final long walkingTimeEvictions;
+        public final long polylineEvictions;
+        // Newcomers the admission filter turned away; they evicted nothing
+        public final long walkingTimeRejections;
+        public final long polylineRejections;
+        public final long walkingTimeBytes;
+        public final long polylineBytes;
+        public final int storeHits;
+        public final int storeSize;
+        public final int coalescedWaits;
 
         public CacheStats(int totalRequests, int hits, int misses,
-                          int walkingTimeCacheSize, int polylineCacheSize) {
+                          int walkingTimeCacheSize, int polylineCacheSize,
+                          long walkingTimeEvictions, long polylineEvictions,
+                          long walkingTimeRejections, long polylineRejections,
+                          long walkingTimeBytes, long polylineBytes,
+                          int storeHits, int storeSize, int coalescedWaits) {
             this.totalRequests = totalRequests;
             this.hits = hits;
             this.misses = misses;
             this.walkingTimeCacheSize = walkingTimeCacheSize;
             this.polylineCacheSize = polylineCacheSize;
+            this.walkingTimeEvictions = walkingTimeEvictions;
+            this.polylineEvictions = polylineEvictions;
+            this.walkingTimeRejections = walkingTimeRejections;
+            this.polylineRejections = polylineRejections;
+            this.walkingTimeBytes = walkingTimeBytes;
+            this.polylineBytes = polylineBytes;
+            this.storeHits = storeHits;
+            this.storeSize = storeSize;
+            this.coalescedWaits = coalescedWaits;
         }
 
         public double getHitRate() {
@@ -211,5 +567,9 @@ public class WalkingTimeCache {
         public int getTotalCacheSize() {
             return walkingTimeCacheSize + polylineCacheSize;
         }
+
+        public long getTotalEstimatedBytes() {
+            return walkingTimeBytes + polylineBytes;
+        }
     }
 }
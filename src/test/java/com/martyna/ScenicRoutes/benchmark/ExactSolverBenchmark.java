@@ -0,0 +1,90 @@
+package com.martyna.ScenicRoutes.benchmark;
+
+import com.martyna.ScenicRoutes.model.ScenicPoint;
+import com.martyna.ScenicRoutes.model.ScenicRoute;
+import com.martyna.ScenicRoutes.model.UserPreferences;
+import com.martyna.ScenicRoutes.routing.ExactOrienteeringSolver;
+import com.martyna.ScenicRoutes.routing.TimeMatrix;
+import com.martyna.ScenicRoutes.service.AStarRouteService;
+import com.martyna.ScenicRoutes.service.StubRoutesService;
+import com.martyna.ScenicRoutes.service.WalkingTimeCache;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Exact DP against the point-to-point A* on the same matrix, by candidate count and budget,
+// to show where each one is the cheaper exact answer.
+// Not part of the test suite - run main() from the IDE, or org.openjdk.jmh.Main on the test classpath
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExactSolverBenchmark {
+
+    @Param({"8", "12", "16"})
+    private int candidates;
+
+    @Param({"60", "120"})
+    private int timeLimit;
+
+    private AStarRouteService aStar;
+    private TimeMatrix matrix;
+    private double[] scores;
+    private UserPreferences preferences;
+
+    @Setup
+    public void setUp() {
+        StubRoutesService routes = new StubRoutesService(0);
+        aStar = new AStarRouteService(new WalkingTimeCache(routes, 1 << 20, 1 << 20, "", 0, 8));
+        preferences = new UserPreferences();
+
+        Random random = new Random(42);
+        List<ScenicPoint> pois = new ArrayList<>();
+        for (int i = 0; i < candidates; i++) {
+            pois.add(new ScenicPoint("POI " + i,
+                    40.75 + random.nextDouble() * 0.03,
+                    -73.99 + random.nextDouble() * 0.03,
+                    50 + random.nextDouble() * 500));
+        }
+
+        matrix = TimeMatrix.build(40.755, -73.985, 40.775, -73.965, pois, (lats, lngs) -> {
+            int n = lats.length;
+            int[] minutes = new int[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    minutes[i * n + j] = StubRoutesService.walkingMinutes(lats[i], lngs[i], lats[j], lngs[j]);
+                }
+            }
+            return minutes;
+        });
+
+        scores = new double[candidates];
+        for (int i = 0; i < candidates; i++) {
+            scores[i] = matrix.candidate(i).getScore();
+        }
+    }
+
+    @Benchmark
+    public ExactOrienteeringSolver.Solution exactDp() {
+        return new ExactOrienteeringSolver(matrix, scores, 5, timeLimit, false).solve(Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public ScenicRoute aStar() {
+        return aStar.searchRoute(matrix, timeLimit, preferences, Long.MAX_VALUE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExactSolverBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,96 @@
+package com.martyna.ScenicRoutes.benchmark;
+
+import com.martyna.ScenicRoutes.service.GoogleJsonReader;
+import com.martyna.ScenicRoutes.service.GoogleJsonReader.PlaceResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Reading a 20-result Places nearby-search page (test resource google/nearby-search-page.json):
+// decoded and built into a JSONObject tree as before, versus pulled straight from the bytes.
+// main() adds the GC profiler - gc.alloc.rate.norm is the bytes allocated per page.
+// Not part of the test suite - run main() from the IDE, or org.openjdk.jmh.Main on the test classpath
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlacesParsingBenchmark {
+
+    private byte[] page;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = PlacesParsingBenchmark.class.getResourceAsStream("/google/nearby-search-page.json")) {
+            page = in.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public List<PlaceResult> tree() {
+        JSONObject json = new JSONObject(new String(page, StandardCharsets.UTF_8));
+        List<PlaceResult> places = new ArrayList<>();
+        if (!json.has("results")) return places;
+
+        // The field reads processResults made on the tree
+        JSONArray results = json.getJSONArray("results");
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject place = results.getJSONObject(i);
+
+            String name = place.getString("name");
+            double placeLat = place.getJSONObject("geometry")
+                    .getJSONObject("location")
+                    .getDouble("lat");
+            double placeLng = place.getJSONObject("geometry")
+                    .getJSONObject("location")
+                    .getDouble("lng");
+
+            double rating = place.has("rating") ? place.getDouble("rating") : 3.0;
+            int numReviews = place.has("user_ratings_total")
+                    ? place.getInt("user_ratings_total")
+                    : 0;
+
+            String photoReference = null;
+            if (place.has("photos")) {
+                JSONArray photos = place.getJSONArray("photos");
+                if (photos.length() > 0) {
+                    photoReference = photos.getJSONObject(0).getString("photo_reference");
+                }
+            }
+            List<String> types = new ArrayList<>();
+            if (place.has("types")) {
+                JSONArray typesArray = place.getJSONArray("types");
+                for (int j = 0; j < typesArray.length(); j++) {
+                    types.add(typesArray.getString(j));
+                }
+            }
+
+            places.add(new PlaceResult(name, placeLat, placeLng, rating, numReviews, photoReference, types));
+        }
+        return places;
+    }
+
+    @Benchmark
+    public List<PlaceResult> streaming() {
+        return GoogleJsonReader.readPlacesPage(page).results();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PlacesParsingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,151 @@
+package com.martyna.ScenicRoutes.benchmark;
+
+import com.martyna.ScenicRoutes.model.ScenicPoint;
+import com.martyna.ScenicRoutes.model.UserPreferences;
+import com.martyna.ScenicRoutes.model.UserPreferences.POICategory;
+import com.martyna.ScenicRoutes.service.SmartVisitDurationHelper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// The primary-category lookups of a 60-POI schedule build, read from the point versus resolved
+// per call by the rules getPrimaryCategory used to run every time.
+// Not part of the test suite - run main() from the IDE, or org.openjdk.jmh.Main on the test classpath
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimaryCategoryBenchmark {
+
+    private static final int POIS = 60;
+
+    private static final List<List<String>> TYPES = List.of(
+            List.of("park", "point_of_interest", "establishment"),
+            List.of("tourist_attraction", "museum", "point_of_interest"),
+            List.of("cafe", "store", "establishment"),
+            List.of("place_of_worship", "church", "historic_site"),
+            List.of("landmark", "tourist_attraction"),
+            List.of("zoo", "park")
+    );
+
+    private final UserPreferences preferences = new UserPreferences();
+    private final List<ScenicPoint> pois = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        preferences.setCategoryWeight(POICategory.MUSEUM, 2.0);
+        preferences.setCategoryWeight(POICategory.CAFE, 0.0);
+
+        Random random = new Random(42);
+        for (int i = 0; i < POIS; i++) {
+            pois.add(new ScenicPoint("Attraction " + i,
+                    40.75 + random.nextDouble() * 0.03,
+                    -73.99 + random.nextDouble() * 0.03,
+                    50 + random.nextDouble() * 500,
+                    TYPES.get(i % TYPES.size()),
+                    random.nextInt(60000),
+                    3.8 + random.nextDouble()));
+        }
+    }
+
+    @Benchmark
+    public int cached() {
+        return scheduleLookups(ScenicPoint::getPrimaryCategory);
+    }
+
+    @Benchmark
+    public int resolvedPerCall() {
+        return scheduleLookups(PrimaryCategoryBenchmark::resolve);
+    }
+
+    // The category lookups a schedule build makes: importance and preference boost for every
+    // POI, then the weight check, grouping and visit duration of the 15 it keeps
+    private int scheduleLookups(Function<ScenicPoint, POICategory> category) {
+        int sum = 0;
+        for (ScenicPoint poi : pois) {
+            sum += category.apply(poi).ordinal();
+            sum += preferences.getCategoryWeight(category.apply(poi)) > 1.0 ? 1 : 0;
+        }
+
+        Map<POICategory, Integer> byCategory = new HashMap<>();
+        for (ScenicPoint poi : pois.subList(0, 15)) {
+            if (preferences.getCategoryWeight(category.apply(poi)) == 0.0) continue;
+            byCategory.merge(category.apply(poi), 1, Integer::sum);
+            sum += SmartVisitDurationHelper.getSmartVisitMinutes(poi, category.apply(poi));
+        }
+        return sum + byCategory.size();
+    }
+
+    // getPrimaryCategory before it was cached, minus its debug print
+    private static POICategory resolve(ScenicPoint poi) {
+        String name = poi.getName();
+        List<String> types = poi.getTypes();
+
+        if (name != null) {
+            String lowerName = name.toLowerCase();
+            if (lowerName.contains("empire state building") ||
+                    lowerName.contains("top of the rock") ||
+                    lowerName.contains("one world observatory") ||
+                    (lowerName.contains("observation"))) {
+                return POICategory.OBSERVATION_DECK;
+            }
+        }
+        if (types.contains("observation_deck")) {
+            return POICategory.OBSERVATION_DECK;
+        }
+        for (String type : types) {
+            if (type.equals("museum")) return POICategory.MUSEUM;
+            if (type.equals("zoo")) return POICategory.ZOO;
+            if (type.equals("aquarium")) return POICategory.AQUARIUM;
+        }
+
+        for (String type : types) {
+            if (type.equals("landmark") || type.equals("tourist_attraction") ||
+                    type.equals("point_of_interest") || type.equals("establishment"))
+                continue;
+
+            for (POICategory category : POICategory.values()) {
+                if (category == POICategory.MUSEUM ||
+                        category == POICategory.ZOO ||
+                        category == POICategory.AQUARIUM ||
+                        category == POICategory.OBSERVATION_DECK ||
+                        category == POICategory.LANDMARK ||
+                        category == POICategory.HIDDEN_GEM ||
+                        category == POICategory.TRENDING) {
+                    continue;
+                }
+
+                if (category.matchesGoogleType(type)) {
+                    return category;
+                }
+            }
+        }
+
+        if (types.contains("landmark") || types.contains("tourist_attraction")) {
+            return POICategory.LANDMARK;
+        }
+
+        int reviews = poi.getReviewCount();
+        if (reviews >= 100 && reviews <= 2000 && poi.getRating() >= 4.5) return POICategory.HIDDEN_GEM;
+        if (reviews > 10000) return POICategory.TRENDING;
+
+        return POICategory.LANDMARK;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PrimaryCategoryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,88 @@
+package com.martyna.ScenicRoutes.benchmark;
+
+import com.martyna.ScenicRoutes.model.ScenicPoint;
+import com.martyna.ScenicRoutes.model.ScenicRoute;
+import com.martyna.ScenicRoutes.model.UserPreferences;
+import com.martyna.ScenicRoutes.routing.TimeMatrix;
+import com.martyna.ScenicRoutes.service.StubRoutesService;
+import com.martyna.ScenicRoutes.service.TwoPointLoopService;
+import com.martyna.ScenicRoutes.service.WalkingTimeCache;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Loop builder over a full 60-candidate matrix with typed POIs, at a short and a long time budget.
+// Not part of the test suite - run main() from the IDE, or org.openjdk.jmh.Main on the test classpath
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TwoPointLoopBenchmark {
+
+    private static final int CANDIDATES = 60;
+
+    private static final List<List<String>> TYPES = List.of(
+            List.of("park", "point_of_interest"),
+            List.of("museum", "tourist_attraction"),
+            List.of("cafe", "store"),
+            List.of("church", "historic_site"),
+            List.of("restaurant")
+    );
+
+    @Param({"60", "180"})
+    private int minutes;
+
+    private TwoPointLoopService loopService;
+    private TimeMatrix matrix;
+    private UserPreferences preferences;
+
+    @Setup
+    public void setUp() {
+        StubRoutesService routes = new StubRoutesService(0);
+        loopService = new TwoPointLoopService(routes, new WalkingTimeCache(routes, 1 << 20, 1 << 20, "", 0, 8));
+        preferences = new UserPreferences();
+        preferences.setCategoryWeight(UserPreferences.POICategory.PARK, 2.0);
+
+        Random random = new Random(42);
+        List<ScenicPoint> pois = new ArrayList<>();
+        for (int i = 0; i < CANDIDATES; i++) {
+            pois.add(new ScenicPoint("POI " + i,
+                    40.75 + random.nextDouble() * 0.03,
+                    -73.99 + random.nextDouble() * 0.03,
+                    50 + random.nextDouble() * 500,
+                    TYPES.get(i % TYPES.size()),
+                    random.nextInt(3000),
+                    3.5 + random.nextDouble() * 1.5));
+        }
+
+        matrix = TimeMatrix.build(40.765, -73.975, 40.765, -73.975, pois, (lats, lngs) -> {
+            int n = lats.length;
+            int[] times = new int[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    times[i * n + j] = StubRoutesService.walkingMinutes(lats[i], lngs[i], lats[j], lngs[j]);
+                }
+            }
+            return times;
+        });
+    }
+
+    @Benchmark
+    public ScenicRoute buildLoop() {
+        return loopService.buildLoop(matrix, minutes, preferences);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TwoPointLoopBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
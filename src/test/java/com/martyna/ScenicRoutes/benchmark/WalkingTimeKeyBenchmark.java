@@ -0,0 +1,84 @@
+package com.martyna.ScenicRoutes.benchmark;
+
+import com.martyna.ScenicRoutes.cache.CoordinateKey;
+import com.martyna.ScenicRoutes.cache.StripedLongPairIntMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Compares the old String.format-keyed walking-time map with the packed primitive map.
+// Not part of the test suite - run main() from the IDE, or org.openjdk.jmh.Main on the test classpath
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WalkingTimeKeyBenchmark {
+
+    // Roughly a 60-POI request: every ordered pair of 60 points
+    private static final int POINTS = 60;
+
+    private final double[] lats = new double[POINTS];
+    private final double[] lngs = new double[POINTS];
+
+    private final Map<String, Integer> stringKeyed = new ConcurrentHashMap<>();
+    private final StripedLongPairIntMap packedKeyed = new StripedLongPairIntMap();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < POINTS; i++) {
+            lats[i] = 40.75 + random.nextDouble() * 0.03;
+            lngs[i] = -73.99 + random.nextDouble() * 0.03;
+        }
+
+        for (int i = 0; i < POINTS; i++) {
+            for (int j = 0; j < POINTS; j++) {
+                int minutes = random.nextInt(40);
+                stringKeyed.put(stringKey(lats[i], lngs[i], lats[j], lngs[j]), minutes);
+                packedKeyed.put(CoordinateKey.pack(lats[i], lngs[i]), CoordinateKey.pack(lats[j], lngs[j]), minutes);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS * POINTS)
+    public long stringKeyLookup() {
+        long sum = 0;
+        for (int i = 0; i < POINTS; i++) {
+            for (int j = 0; j < POINTS; j++) {
+                sum += stringKeyed.get(stringKey(lats[i], lngs[i], lats[j], lngs[j]));
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS * POINTS)
+    public long packedKeyLookup() {
+        long sum = 0;
+        for (int i = 0; i < POINTS; i++) {
+            for (int j = 0; j < POINTS; j++) {
+                sum += packedKeyed.get(CoordinateKey.pack(lats[i], lngs[i]), CoordinateKey.pack(lats[j], lngs[j]));
+            }
+        }
+        return sum;
+    }
+
+    private static String stringKey(double lat1, double lng1, double lat2, double lng2) {
+        return String.format("%.6f,%.6f->%.6f,%.6f", lat1, lng1, lat2, lng2);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WalkingTimeKeyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,37 @@
+package com.martyna.ScenicRoutes.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Counters saturate at 15 and are halved once a sample's worth of increments has gone by
+class FrequencySketchTest {
+
+    @Test
+    void countsUpToFifteen() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(42);
+            assertEquals(Math.min(i + 1, 15), sketch.frequency(42));
+        }
+        assertEquals(0, sketch.frequency(43));
+    }
+
+    @Test
+    void agesOldCountsOut() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int i = 0; i < 8; i++) {
+            sketch.increment(42);
+        }
+
+        // Other keys share some of its counters, so the count may creep up first; the
+        // reset within the next sample (10 * 64 increments) then halves it
+        int before = sketch.frequency(42);
+        for (int i = 0; i < 10 * 64 && sketch.frequency(42) >= before; i++) {
+            before = sketch.frequency(42);
+            sketch.increment(1000 + i);
+        }
+
+        assertEquals(before / 2, sketch.frequency(42));
+    }
+}
@@ -0,0 +1,118 @@
+package com.martyna.ScenicRoutes.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Bounded maps under eviction: probe chains that wrap past the end of the table survive
+// backward-shift deletion, the size stays within its bound, and TinyLFU keeps hot keys
+class LongPairIntMapTest {
+
+    @Test
+    void lookupsSurviveEvictionsFromChainsThatWrapAround() {
+        // Keys whose home slot is one of the last three of the 16-slot table, so their probe
+        // chains run off the end and continue from slot 0
+        List<long[]> keys = keysHomedAt(13, 15, 200);
+        Random random = new Random(83);
+
+        for (int maxSize : new int[] {3, 5, 8}) {
+            LongPairIntMap map = LongPairIntMap.bounded(maxSize);
+            Map<Integer, Integer> lastValue = new HashMap<>();
+            for (int step = 0; step < 3000; step++) {
+                int key = random.nextInt(keys.size());
+                if (random.nextBoolean()) {
+                    int value = random.nextInt(1000);
+                    map.put(keys.get(key)[0], keys.get(key)[1], value);
+                    lastValue.put(key, value);
+                } else {
+                    map.get(keys.get(key)[0], keys.get(key)[1]);
+                }
+
+                // Every entry the map holds can still be found, with the value last put
+                int found = 0;
+                for (Map.Entry<Integer, Integer> entry : lastValue.entrySet()) {
+                    long[] k = keys.get(entry.getKey());
+                    int value = map.get(k[0], k[1]);
+                    if (value == LongPairIntMap.NO_VALUE) continue;
+                    assertEquals((int) entry.getValue(), value);
+                    found++;
+                }
+                assertEquals(map.size(), found, "step " + step);
+                assertTrue(map.size() <= maxSize);
+            }
+            assertTrue(map.evictions() > 0);
+        }
+    }
+
+    @Test
+    void staysWithinItsBudget() {
+        long budget = 1 << 16;
+        int maxSize = LongPairIntMap.maxSizeForBudget(budget);
+        LongPairIntMap map = LongPairIntMap.bounded(maxSize);
+        long sketchBytes = new FrequencySketch(maxSize).estimatedBytes();
+
+        Random random = new Random(89);
+        for (int i = 0; i < 20 * maxSize; i++) {
+            map.put(random.nextLong() & Long.MAX_VALUE, random.nextLong(), i);
+            assertTrue(map.size() <= maxSize);
+        }
+
+        assertEquals(maxSize, map.size());
+        assertTrue(map.estimatedBytes() - sketchBytes <= budget, map.estimatedBytes() + " bytes");
+        // Every put past the bound either evicted an entry or was turned away
+        assertEquals(19L * maxSize, map.evictions() + map.rejections());
+    }
+
+    @Test
+    void coldKeyIsRejectedInFavourOfAHotVictim() {
+        LongPairIntMap map = LongPairIntMap.bounded(1);
+        map.put(1, 1, 10);
+        for (int i = 0; i < 5; i++) {
+            map.get(1, 1);
+        }
+
+        map.put(2, 2, 20);
+        assertEquals(1, map.rejections());
+        assertEquals(0, map.evictions());
+        assertEquals(10, map.get(1, 1));
+
+        // Once the newcomer is asked for more often than the resident, it gets in
+        for (int i = 0; i < 10; i++) {
+            map.get(2, 2);
+        }
+        map.put(2, 2, 20);
+        assertEquals(1, map.rejections());
+        assertEquals(1, map.evictions());
+        assertEquals(20, map.get(2, 2));
+        assertEquals(LongPairIntMap.NO_VALUE, map.get(1, 1));
+    }
+
+    @Test
+    void updatingAResidentKeyNeitherEvictsNorRejects() {
+        LongPairIntMap map = LongPairIntMap.bounded(2);
+        map.put(1, 1, 10);
+        map.put(2, 2, 20);
+        map.put(1, 1, 11);
+
+        assertEquals(11, map.get(1, 1));
+        assertEquals(20, map.get(2, 2));
+        assertEquals(0, map.evictions() + map.rejections());
+    }
+
+    // count distinct keys whose home slot in a 16-slot table lies in from..to
+    private static List<long[]> keysHomedAt(int from, int to, int count) {
+        List<long[]> keys = new ArrayList<>();
+        for (long first = 1; keys.size() < count; first++) {
+            int home = LongPairIntMap.hash(first, 7) & 15;
+            if (home >= from && home <= to) keys.add(new long[] {first, 7});
+        }
+        return keys;
+    }
+}
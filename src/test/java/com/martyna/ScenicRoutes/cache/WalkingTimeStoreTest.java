@@ -0,0 +1,128 @@
+package com.martyna.ScenicRoutes.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The store across a flush and a fresh instance on the same file, as after a restart:
+// records come back, torn or corrupted ones read as absent, and a full table stops growing
+class WalkingTimeStoreTest {
+
+    private static final int SLOTS = 64;
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_BYTES = 24;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsSurviveAReopen() {
+        Path file = directory.resolve("walking-times.bin");
+        WalkingTimeStore store = new WalkingTimeStore(file, SLOTS);
+        for (int i = 0; i < 40; i++) {
+            store.put(1000 + i, 2000 - i, i);
+        }
+        // A pair already stored keeps its first value
+        store.put(1000, 2000, 99);
+        store.flush();
+
+        WalkingTimeStore reopened = new WalkingTimeStore(file, SLOTS);
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i, reopened.get(1000 + i, 2000 - i));
+        }
+        assertEquals(WalkingTimeStore.NO_VALUE, reopened.get(2000, 1000));
+        assertEquals(40, reopened.size());
+    }
+
+    @Test
+    void tornRecordReadsAsEmptyAndIsWrittenAgain() throws IOException {
+        Path file = directory.resolve("walking-times.bin");
+        WalkingTimeStore store = new WalkingTimeStore(file, SLOTS);
+        store.put(11, 22, 7);
+        store.put(33, 44, 8);
+        store.flush();
+
+        // As if the process died before the checksum landed
+        writeInt(file, recordOffset(11, 22) + 20, 0);
+
+        WalkingTimeStore reopened = new WalkingTimeStore(file, SLOTS);
+        assertEquals(WalkingTimeStore.NO_VALUE, reopened.get(11, 22));
+        assertEquals(8, reopened.get(33, 44));
+
+        reopened.put(11, 22, 9);
+        reopened.flush();
+        assertEquals(9, new WalkingTimeStore(file, SLOTS).get(11, 22));
+    }
+
+    @Test
+    void recordThatFailsItsChecksumIsIgnored() throws IOException {
+        Path file = directory.resolve("walking-times.bin");
+        WalkingTimeStore store = new WalkingTimeStore(file, SLOTS);
+        store.put(11, 22, 7);
+        store.flush();
+
+        // The minutes changed under a checksum written for 7
+        writeInt(file, recordOffset(11, 22) + 16, 3);
+
+        assertEquals(WalkingTimeStore.NO_VALUE, new WalkingTimeStore(file, SLOTS).get(11, 22));
+    }
+
+    @Test
+    void fullTableKeepsWhatItHasAndStopsTakingMore() {
+        Path file = directory.resolve("walking-times.bin");
+        // 16 slots, filled to three quarters
+        WalkingTimeStore store = new WalkingTimeStore(file, 16);
+        for (int i = 0; i < 30; i++) {
+            store.put(i + 1, 500, i);
+        }
+
+        assertEquals(12, store.size());
+        for (int i = 0; i < 30; i++) {
+            assertEquals(i < 12 ? i : WalkingTimeStore.NO_VALUE, store.get(i + 1, 500));
+        }
+
+        store.flush();
+        WalkingTimeStore reopened = new WalkingTimeStore(file, 16);
+        reopened.put(1000, 500, 1);
+        assertEquals(WalkingTimeStore.NO_VALUE, reopened.get(1000, 500));
+        assertEquals(11, reopened.get(12, 500));
+        assertEquals(12, reopened.size());
+    }
+
+    @Test
+    void fileWithAnotherLayoutIsLeftAlone() {
+        Path file = directory.resolve("walking-times.bin");
+        WalkingTimeStore store = new WalkingTimeStore(file, SLOTS);
+        store.put(11, 22, 7);
+        store.flush();
+
+        WalkingTimeStore resized = new WalkingTimeStore(file, 2 * SLOTS);
+        assertEquals(WalkingTimeStore.NO_VALUE, resized.get(11, 22));
+        resized.put(33, 44, 8);
+        assertEquals(WalkingTimeStore.NO_VALUE, resized.get(33, 44));
+
+        assertEquals(7, new WalkingTimeStore(file, SLOTS).get(11, 22));
+    }
+
+    // Where a pair lands when its home slot was free
+    private static int recordOffset(long from, long to) {
+        return HEADER_BYTES + (LongPairIntMap.hash(from, to) & (SLOTS - 1)) * RECORD_BYTES;
+    }
+
+    private static void writeInt(Path file, int offset, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            mapped.putInt(offset, value);
+            mapped.force();
+        }
+    }
+}
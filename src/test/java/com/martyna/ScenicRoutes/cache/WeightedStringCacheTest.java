@@ -0,0 +1,86 @@
+package com.martyna.ScenicRoutes.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Byte-weighted LRU with TinyLFU admission: the budget holds, hot entries aren't flushed by
+// cold newcomers, and a newcomer turned away never costs the value already cached
+class WeightedStringCacheTest {
+
+    @Test
+    void staysWithinItsBudget() {
+        long maxBytes = 20_000;
+        WeightedStringCache cache = new WeightedStringCache(maxBytes);
+        long emptyBytes = cache.estimatedBytes();
+
+        Random random = new Random(97);
+        for (int i = 0; i < 2000; i++) {
+            String key = "route-" + random.nextInt(300);
+            if (random.nextInt(3) == 0) {
+                cache.get(key);
+            } else {
+                cache.put(key, "x".repeat(random.nextInt(1500)));
+            }
+            assertTrue(cache.estimatedBytes() - emptyBytes <= maxBytes, "step " + i);
+        }
+        assertTrue(cache.evictions() > 0);
+    }
+
+    @Test
+    void coldNewcomerIsRejectedInFavourOfAHotVictim() {
+        WeightedStringCache cache = new WeightedStringCache(1000);
+        cache.put("hot", "h".repeat(500));
+        for (int i = 0; i < 5; i++) {
+            cache.get("hot");
+        }
+
+        cache.put("cold", "c".repeat(500));
+
+        assertEquals(1, cache.rejections());
+        assertEquals(0, cache.evictions());
+        assertEquals("h".repeat(500), cache.get("hot"));
+        assertNull(cache.get("cold"));
+    }
+
+    @Test
+    void rejectedUpdateKeepsThePreviousValue() {
+        WeightedStringCache cache = new WeightedStringCache(1000);
+        cache.put("hot", "h".repeat(200));
+        cache.put("key", "old");
+        for (int i = 0; i < 5; i++) {
+            cache.get("hot");
+        }
+
+        // Needs the hot entry's room, which a key asked for less often doesn't get
+        cache.put("key", "n".repeat(700));
+        assertEquals(1, cache.rejections());
+        assertEquals("old", cache.get("key"));
+
+        // Too big for the whole budget
+        cache.put("key", "n".repeat(2000));
+        assertEquals(2, cache.rejections());
+        assertEquals("old", cache.get("key"));
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.evictions());
+    }
+
+    @Test
+    void admittedNewcomerEvictsFromTheLeastRecentlyUsedEnd() {
+        WeightedStringCache cache = new WeightedStringCache(1000);
+        cache.put("first", "a".repeat(300));
+        cache.put("second", "b".repeat(300));
+        cache.get("first");
+
+        cache.put("third", "c".repeat(300));
+
+        assertEquals(1, cache.evictions());
+        assertNull(cache.get("second"));
+        assertEquals("a".repeat(300), cache.get("first"));
+        assertEquals("c".repeat(300), cache.get("third"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.martyna.ScenicRoutes.model;
+
+import com.martyna.ScenicRoutes.model.UserPreferences.POICategory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Type strings through their interned ids and back, and a point's category mask against
+// the categories worked out from its type strings one by one
+class GoogleTypesTest {
+
+    @Test
+    void typesRoundTripThroughTheirIds() {
+        List<String> types = List.of("museum", "point_of_interest", "establishment", "types_test_unseen_type", "museum");
+        assertEquals(-1, GoogleTypes.find("types_test_unseen_type"));
+
+        short[] ids = GoogleTypes.idsOf(types);
+
+        assertEquals(types, GoogleTypes.view(ids));
+        assertEquals(GoogleTypes.MUSEUM, ids[0]);
+        assertEquals(ids[0], ids[4]);
+        for (int i = 0; i < types.size(); i++) {
+            assertEquals(ids[i], GoogleTypes.find(types.get(i)));
+            assertEquals(ids[i], GoogleTypes.intern(types.get(i)));
+            assertEquals(types.get(i), GoogleTypes.name(ids[i]));
+        }
+        assertTrue(GoogleTypes.view(ids).contains("establishment"));
+        assertFalse(GoogleTypes.view(ids).contains("types_test_never_seen"));
+        assertEquals(-1, GoogleTypes.find("types_test_never_seen"));
+    }
+
+    @Test
+    void categoryMaskMatchesTheCategoriesOfEachType() {
+        List<List<String>> typeLists = List.of(
+                List.of(),
+                List.of("observation_deck", "point_of_interest"),
+                List.of("church", "place_of_worship", "establishment"),
+                List.of("cafe", "restaurant", "store", "zoo"),
+                List.of("types_test_unknown", "fountain", "monument"));
+        // Review counts and ratings: none, a hidden gem, trending, and too few reviews to be a gem
+        double[][] popularity = {{0, 0.0}, {500, 4.7}, {20_000, 4.0}, {50, 4.9}};
+
+        for (List<String> types : typeLists) {
+            for (double[] reviewsAndRating : popularity) {
+                int reviewCount = (int) reviewsAndRating[0];
+                double rating = reviewsAndRating[1];
+                ScenicPoint point = new ScenicPoint("Spot", 52.23, 21.01, 5, types, reviewCount, rating);
+
+                List<POICategory> expected = new ArrayList<>();
+                for (POICategory category : POICategory.values()) {
+                    boolean matches = types.stream().anyMatch(category::matchesGoogleType)
+                            || category == POICategory.HIDDEN_GEM && reviewCount >= 100 && reviewCount <= 2000 && rating >= 4.5
+                            || category == POICategory.TRENDING && reviewCount > 10000;
+                    if (matches) expected.add(category);
+                }
+
+                String where = types + " with " + reviewCount + " reviews at " + rating;
+                assertEquals(expected, point.getAllCategories(), where);
+                long mask = 0;
+                for (POICategory category : expected) {
+                    mask |= category.bit();
+                }
+                assertEquals(mask, point.categoryMask(), where);
+                for (String type : types) {
+                    assertTrue(point.hasType(type), where);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.martyna.ScenicRoutes.routing;
+
+import com.martyna.ScenicRoutes.model.ScenicPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Whatever the seed and however short the budget, the solver returns a feasible route that
+// scores at least as well as the seed did
+class AnytimeOrienteeringSolverTest {
+
+    private static final int VISIT_MINUTES = 5;
+
+    @Test
+    void improvesFeasibleSeedsWithinTheLimit() {
+        Random random = new Random(41);
+        for (int instance = 0; instance < 60; instance++) {
+            TimeMatrix matrix = randomAsymmetricMatrix(random, 5 + random.nextInt(20));
+            double[] scores = scores(matrix);
+            int timeLimit = 30 + random.nextInt(120);
+            boolean openEnd = instance % 2 == 0;
+            RouteEvaluator evaluator = new RouteEvaluator(matrix, VISIT_MINUTES, openEnd);
+
+            int[] seed = feasibleSeed(random, matrix, evaluator, timeLimit);
+            double seedScore = score(seed, scores);
+
+            AnytimeOrienteeringSolver.Solution solution = new AnytimeOrienteeringSolver(
+                    matrix, scores, VISIT_MINUTES, timeLimit, openEnd, instance
+            ).improve(seed, System.nanoTime() + 5_000_000L);
+
+            assertValid(matrix, evaluator, scores, timeLimit, solution);
+            assertTrue(solution.score() >= seedScore - 1e-9,
+                    "scored " + solution.score() + " from a seed of " + seedScore);
+        }
+    }
+
+    @Test
+    void repairsSeedsThatDoNotFit() {
+        Random random = new Random(43);
+        for (int instance = 0; instance < 40; instance++) {
+            TimeMatrix matrix = randomAsymmetricMatrix(random, 8 + random.nextInt(10));
+            double[] scores = scores(matrix);
+            int timeLimit = 20 + random.nextInt(40);
+            boolean openEnd = instance % 2 == 1;
+            RouteEvaluator evaluator = new RouteEvaluator(matrix, VISIT_MINUTES, openEnd);
+
+            // Every candidate, some twice, plus ids that aren't candidates at all
+            int n = matrix.candidateCount();
+            int[] seed = new int[n + 4];
+            for (int i = 0; i < n; i++) {
+                seed[i] = i;
+            }
+            seed[n] = 0;
+            seed[n + 1] = n - 1;
+            seed[n + 2] = -1;
+            seed[n + 3] = n + 7;
+
+            AnytimeOrienteeringSolver.Solution solution = new AnytimeOrienteeringSolver(
+                    matrix, scores, VISIT_MINUTES, timeLimit, openEnd, instance
+            ).improve(seed, System.nanoTime() + 5_000_000L);
+
+            assertValid(matrix, evaluator, scores, timeLimit, solution);
+        }
+    }
+
+    @Test
+    void expiredDeadlineKeepsTheSeed() {
+        Random random = new Random(47);
+        TimeMatrix matrix = randomAsymmetricMatrix(random, 20);
+        double[] scores = scores(matrix);
+        RouteEvaluator evaluator = new RouteEvaluator(matrix, VISIT_MINUTES, false);
+        int[] seed = feasibleSeed(random, matrix, evaluator, 90);
+
+        AnytimeOrienteeringSolver.Solution solution = new AnytimeOrienteeringSolver(
+                matrix, scores, VISIT_MINUTES, 90, false, 1
+        ).improve(seed, System.nanoTime());
+
+        assertValid(matrix, evaluator, scores, 90, solution);
+        assertTrue(solution.score() >= score(seed, scores) - 1e-9);
+    }
+
+    // Unique candidate ids; minutes and score that match the route itself, within the limit
+    private static void assertValid(TimeMatrix matrix, RouteEvaluator evaluator, double[] scores,
+                                    int timeLimit, AnytimeOrienteeringSolver.Solution solution) {
+        boolean[] seen = new boolean[matrix.candidateCount()];
+        for (int id : solution.route()) {
+            assertTrue(id >= 0 && id < matrix.candidateCount() && !seen[id], "bad id " + id);
+            seen[id] = true;
+        }
+        assertEquals(evaluator.minutes(solution.route()), solution.minutes());
+        assertTrue(solution.minutes() <= timeLimit, solution.minutes() + " > " + timeLimit);
+        assertEquals(score(solution.route(), scores), solution.score(), 1e-9);
+    }
+
+    // Candidates in random order, each kept only if the route still fits
+    private static int[] feasibleSeed(Random random, TimeMatrix matrix, RouteEvaluator evaluator, int timeLimit) {
+        List<Integer> order = new ArrayList<>();
+        for (int id = 0; id < matrix.candidateCount(); id++) {
+            order.add(id);
+        }
+        Collections.shuffle(order, random);
+
+        int[] route = new int[matrix.candidateCount()];
+        int length = 0;
+        for (int id : order) {
+            route[length] = id;
+            if (evaluator.minutes(route, length + 1) <= timeLimit) length++;
+        }
+        return Arrays.copyOf(route, length);
+    }
+
+    private static double score(int[] route, double[] scores) {
+        double total = 0;
+        for (int id : route) {
+            total += scores[id];
+        }
+        return total;
+    }
+
+    private static double[] scores(TimeMatrix matrix) {
+        double[] scores = new double[matrix.candidateCount()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = matrix.candidate(i).getScore();
+        }
+        return scores;
+    }
+
+    // Independent times each way, not always obeying the triangle inequality, and a few
+    // unreachable legs - harsher than real walking times. The direct walk always exists.
+    private static TimeMatrix randomAsymmetricMatrix(Random random, int candidates) {
+        List<ScenicPoint> pois = new ArrayList<>();
+        for (int i = 0; i < candidates; i++) {
+            pois.add(new ScenicPoint("POI " + i, 52.22 + i * 0.001, 21.00, 10 + random.nextInt(90)));
+        }
+        return TimeMatrix.build(52.2, 21.0, 52.21, 21.01, pois, (lats, lngs) -> {
+            int n = lats.length;
+            int[] minutes = new int[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i == j) continue;
+                    minutes[i * n + j] = random.nextInt(20) == 0 ? Integer.MAX_VALUE : 1 + random.nextInt(15);
+                }
+            }
+            minutes[(n - 2) * n + n - 1] = 10;
+            return minutes;
+        });
+    }
+}
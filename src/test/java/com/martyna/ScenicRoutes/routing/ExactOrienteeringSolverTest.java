@@ -0,0 +1,133 @@
+package com.martyna.ScenicRoutes.routing;
+
+import com.martyna.ScenicRoutes.model.ScenicPoint;
+import com.martyna.ScenicRoutes.service.StubRoutesService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The DP against brute force on tiny instances, then as the reference the heuristics must not beat
+class ExactOrienteeringSolverTest {
+
+    private static final int VISIT_MINUTES = 5;
+
+    @Test
+    void matchesBruteForceOnSmallInstances() {
+        Random random = new Random(11);
+        for (int instance = 0; instance < 40; instance++) {
+            TimeMatrix matrix = randomMatrix(random, 3 + random.nextInt(5));
+            double[] scores = scores(matrix);
+            int timeLimit = 20 + random.nextInt(60);
+            boolean openEnd = instance % 2 == 0;
+
+            ExactOrienteeringSolver.Solution solution = new ExactOrienteeringSolver(
+                    matrix, scores, VISIT_MINUTES, timeLimit, openEnd
+            ).solve(Long.MAX_VALUE);
+
+            double expected = bruteForce(matrix, scores, timeLimit, openEnd, 0, matrix.start(), 0, 0);
+            assertNotNull(solution);
+            assertTrue(solution.exact());
+            assertEquals(expected, solution.score(), 1e-9);
+            assertEquals(walkMinutes(matrix, solution.route(), openEnd), solution.minutes());
+            assertTrue(solution.minutes() <= timeLimit);
+        }
+    }
+
+    @Test
+    void heuristicsNeverBeatTheOptimum() {
+        Random random = new Random(5);
+        for (int instance = 0; instance < 10; instance++) {
+            TimeMatrix matrix = randomMatrix(random, 12);
+            double[] scores = scores(matrix);
+            int timeLimit = 40 + random.nextInt(80);
+
+            ExactOrienteeringSolver.Solution optimum = new ExactOrienteeringSolver(
+                    matrix, scores, VISIT_MINUTES, timeLimit, false
+            ).solve(Long.MAX_VALUE);
+
+            AnytimeOrienteeringSolver.Solution local = new AnytimeOrienteeringSolver(
+                    matrix, scores, VISIT_MINUTES, timeLimit, false, instance
+            ).improve(new int[0], System.nanoTime() + 50_000_000L);
+
+            PointToPointSearch.Result search = PointToPointSearch.search(
+                    matrix, new int[matrix.candidateCount() + 2], scores, VISIT_MINUTES, timeLimit
+            );
+
+            assertNotNull(optimum);
+            assertTrue(local.score() <= optimum.score() + 1e-9);
+            assertTrue(search == null || search.score() <= optimum.score() + 1e-9);
+        }
+    }
+
+    @Test
+    void returnsNullWhenEvenTheDirectWalkDoesNotFit() {
+        // Start and end are about 1.3 km apart
+        TimeMatrix matrix = randomMatrix(new Random(2), 4);
+        int direct = matrix.time(matrix.start(), matrix.end());
+
+        assertNull(new ExactOrienteeringSolver(
+                matrix, scores(matrix), VISIT_MINUTES, direct - 1, false
+        ).solve(Long.MAX_VALUE));
+    }
+
+    private static double bruteForce(TimeMatrix matrix, double[] scores, int timeLimit, boolean openEnd,
+                                     int visited, int current, int time, double score) {
+        double best = -1;
+        int toEnd = openEnd ? 0 : matrix.time(current, matrix.end());
+        if (time + toEnd <= timeLimit) best = score;
+
+        for (int next = 0; next < matrix.candidateCount(); next++) {
+            if ((visited & (1 << next)) != 0) continue;
+            int newTime = time + matrix.time(current, next) + VISIT_MINUTES;
+            if (newTime > timeLimit) continue;
+            best = Math.max(best, bruteForce(matrix, scores, timeLimit, openEnd,
+                    visited | (1 << next), next, newTime, score + scores[next]));
+        }
+        return best;
+    }
+
+    private static int walkMinutes(TimeMatrix matrix, int[] route, boolean openEnd) {
+        int total = 0;
+        int current = matrix.start();
+        for (int id : route) {
+            total += matrix.time(current, id) + VISIT_MINUTES;
+            current = id;
+        }
+        return openEnd ? total : total + matrix.time(current, matrix.end());
+    }
+
+    private static double[] scores(TimeMatrix matrix) {
+        double[] scores = new double[matrix.candidateCount()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = matrix.candidate(i).getScore();
+        }
+        return scores;
+    }
+
+    private static TimeMatrix randomMatrix(Random random, int candidates) {
+        List<ScenicPoint> pois = new ArrayList<>();
+        for (int i = 0; i < candidates; i++) {
+            pois.add(new ScenicPoint("POI " + i,
+                    52.22 + random.nextDouble() * 0.02,
+                    21.00 + random.nextDouble() * 0.02,
+                    50 + random.nextInt(10) * 50));
+        }
+        return TimeMatrix.build(52.225, 21.005, 52.235, 21.015, pois, (lats, lngs) -> {
+            int n = lats.length;
+            int[] minutes = new int[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    minutes[i * n + j] = StubRoutesService.walkingMinutes(lats[i], lngs[i], lats[j], lngs[j]);
+                }
+            }
+            return minutes;
+        });
+    }
+}
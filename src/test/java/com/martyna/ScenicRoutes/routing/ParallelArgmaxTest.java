@@ -0,0 +1,92 @@
+package com.martyna.ScenicRoutes.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Requests never reach the split path with the default threshold, so these force it with
+// small ones and hold it to the plain loop's answer - ties, skipped and NaN scores included
+class ParallelArgmaxTest {
+
+    @Test
+    void splitScanMatchesThePlainLoop() {
+        Random random = new Random(67);
+        for (int instance = 0; instance < 300; instance++) {
+            double[] scores = randomScores(random, random.nextInt(300));
+            int expected = firstMaximum(scores);
+
+            assertEquals(expected, ParallelArgmax.argmax(scores.length, id -> scores[id], Integer.MAX_VALUE));
+            for (int threshold : new int[] {1, 2, 3, 5, 8, 17}) {
+                assertEquals(expected, ParallelArgmax.argmax(scores.length, id -> scores[id], threshold),
+                        "threshold " + threshold + " over " + Arrays.toString(scores));
+            }
+        }
+    }
+
+    @Test
+    void splitScanInsideAnotherPool() {
+        // As in the portfolio, where the tasks fork onto the strategy's own pool
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            Random random = new Random(71);
+            for (int instance = 0; instance < 100; instance++) {
+                double[] scores = randomScores(random, 1 + random.nextInt(200));
+                int threshold = 1 + random.nextInt(8);
+
+                assertEquals(firstMaximum(scores), (int) pool.submit(() ->
+                        ParallelArgmax.argmax(scores.length, id -> scores[id], threshold)).join());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void nothingToPick() {
+        double[] skipped = new double[50];
+        Arrays.fill(skipped, ParallelArgmax.SKIP);
+        skipped[7] = Double.NaN;
+
+        assertEquals(ParallelArgmax.NONE, ParallelArgmax.argmax(0, id -> 1.0, 1));
+        assertEquals(ParallelArgmax.NONE, ParallelArgmax.argmax(skipped.length, id -> skipped[id], 1));
+        assertEquals(ParallelArgmax.NONE, ParallelArgmax.argmax(skipped.length, id -> skipped[id]));
+    }
+
+    // The lowest id with the highest score, skipping SKIP and NaN
+    private static int firstMaximum(double[] scores) {
+        int best = ParallelArgmax.NONE;
+        for (int id = 0; id < scores.length; id++) {
+            if (Double.isNaN(scores[id]) || scores[id] == ParallelArgmax.SKIP) continue;
+            if (best == ParallelArgmax.NONE || scores[id] > scores[best]) best = id;
+        }
+        return best;
+    }
+
+    // Few distinct values, so most instances have ties for the top score, plus some
+    // negative and infinite ones; every tenth instance has nothing but skips and NaN
+    private static double[] randomScores(Random random, int count) {
+        boolean nothingToPick = random.nextInt(10) == 0;
+        double[] scores = new double[count];
+        for (int id = 0; id < count; id++) {
+            int kind = random.nextInt(10);
+            if (nothingToPick) {
+                scores[id] = kind < 7 ? ParallelArgmax.SKIP : Double.NaN;
+            } else if (kind < 2) {
+                scores[id] = ParallelArgmax.SKIP;
+            } else if (kind == 2) {
+                scores[id] = Double.NaN;
+            } else if (kind == 3) {
+                scores[id] = -random.nextInt(4);
+            } else if (kind == 4 && random.nextInt(20) == 0) {
+                scores[id] = Double.POSITIVE_INFINITY;
+            } else {
+                scores[id] = random.nextInt(4);
+            }
+        }
+        return scores;
+    }
+}
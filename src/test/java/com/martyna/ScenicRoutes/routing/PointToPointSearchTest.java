@@ -0,0 +1,182 @@
+package com.martyna.ScenicRoutes.routing;
+
+import com.martyna.ScenicRoutes.model.ScenicPoint;
+import com.martyna.ScenicRoutes.model.ScenicRoute;
+import com.martyna.ScenicRoutes.model.UserPreferences;
+import com.martyna.ScenicRoutes.service.AStarRouteService;
+import com.martyna.ScenicRoutes.service.StubRoutesService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The bitmask search against brute force on small matrices, and the routes it still returns
+// when cut off by the deadline or the state cap
+class PointToPointSearchTest {
+
+    private static final int VISIT_MINUTES = 5;
+
+    @Test
+    void matchesBruteForceOnSmallInstances() {
+        Random random = new Random(17);
+        for (int instance = 0; instance < 40; instance++) {
+            int n = 3 + random.nextInt(6);
+            TimeMatrix matrix = randomMatrix(random, n, instance % 4 == 0);
+            double[] scores = scores(matrix);
+            int timeLimit = matrix.time(matrix.start(), matrix.end()) + random.nextInt(60);
+
+            PointToPointSearch.Result result = PointToPointSearch.search(
+                    matrix, new int[n + 2], scores, VISIT_MINUTES, timeLimit
+            );
+
+            Best expected = new Best();
+            bruteForce(matrix, scores, timeLimit, 0, matrix.start(), 0, 0, 0, expected);
+            assertNotNull(result);
+            assertFeasible(matrix, result.path(), result.minutes(), timeLimit);
+            assertEquals(expected.count, result.path().length);
+            assertEquals(expected.score, result.score(), 1e-9);
+            assertEquals(expected.minutes, result.minutes());
+        }
+    }
+
+    @Test
+    void serviceSearchMatchesBruteForceWithItsHeuristic() {
+        AStarRouteService service = new AStarRouteService(null);
+        UserPreferences preferences = new UserPreferences();
+        Random random = new Random(23);
+        for (int instance = 0; instance < 20; instance++) {
+            TimeMatrix matrix = randomMatrix(random, 4 + random.nextInt(5), false);
+            int timeLimit = matrix.time(matrix.start(), matrix.end()) + 20 + random.nextInt(40);
+
+            ScenicRoute route = service.searchRoute(matrix, timeLimit, preferences, Long.MAX_VALUE);
+
+            Best expected = new Best();
+            bruteForce(matrix, scores(matrix), timeLimit, 0, matrix.start(), 0, 0, 0, expected);
+            int[] ids = route.getPoints().stream().mapToInt(matrix::idOf).toArray();
+            assertFeasible(matrix, ids, route.getTotalTime(), timeLimit);
+            assertEquals(expected.count, ids.length);
+            assertEquals(expected.score, route.getTotalScore(), 1e-9);
+        }
+    }
+
+    @Test
+    void expiredDeadlineStillReturnsAFeasibleRoute() {
+        TimeMatrix matrix = randomMatrix(new Random(29), 30, false);
+        int timeLimit = matrix.time(matrix.start(), matrix.end()) + 120;
+
+        PointToPointSearch.Result result = PointToPointSearch.search(
+                matrix, new int[32], scores(matrix), VISIT_MINUTES, timeLimit, System.nanoTime()
+        );
+
+        assertNotNull(result);
+        assertFeasible(matrix, result.path(), result.minutes(), timeLimit);
+    }
+
+    @Test
+    void stateCapStillReturnsAFeasibleRoute() {
+        // A limit loose enough for nearly every subset of 40 candidates - without the state
+        // cap the search would not finish
+        TimeMatrix matrix = randomMatrix(new Random(31), 40, false);
+        int timeLimit = 2000;
+
+        PointToPointSearch.Result result = PointToPointSearch.search(
+                matrix, new int[42], scores(matrix), VISIT_MINUTES, timeLimit
+        );
+
+        assertNotNull(result);
+        assertFeasible(matrix, result.path(), result.minutes(), timeLimit);
+        assertTrue(result.path().length > 0);
+    }
+
+    // Unique candidate ids, and minutes that are the real walk - legs plus visits - within the limit
+    private static void assertFeasible(TimeMatrix matrix, int[] path, int minutes, int timeLimit) {
+        boolean[] seen = new boolean[matrix.candidateCount()];
+        int total = 0;
+        int current = matrix.start();
+        for (int id : path) {
+            assertTrue(id >= 0 && id < matrix.candidateCount() && !seen[id], "bad id " + id);
+            seen[id] = true;
+            assertTrue(matrix.time(current, id) != Integer.MAX_VALUE);
+            total += matrix.time(current, id) + VISIT_MINUTES;
+            current = id;
+        }
+        assertTrue(matrix.time(current, matrix.end()) != Integer.MAX_VALUE);
+        total += matrix.time(current, matrix.end());
+
+        assertEquals(total, minutes);
+        assertTrue(minutes <= timeLimit, minutes + " > " + timeLimit);
+    }
+
+    // Most candidates, then the highest score, then the shortest walk - the search's own order
+    private static void bruteForce(TimeMatrix matrix, double[] scores, int timeLimit,
+                                   int visited, int current, int time, double score, int count, Best best) {
+        int toEnd = matrix.time(current, matrix.end());
+        if (toEnd != Integer.MAX_VALUE && time + toEnd <= timeLimit) {
+            best.offer(count, score, time + toEnd);
+        }
+
+        for (int next = 0; next < matrix.candidateCount(); next++) {
+            if ((visited & (1 << next)) != 0) continue;
+            int leg = matrix.time(current, next);
+            if (leg == Integer.MAX_VALUE) continue;
+            int newTime = time + leg + VISIT_MINUTES;
+            if (newTime > timeLimit) continue;
+            bruteForce(matrix, scores, timeLimit, visited | (1 << next), next, newTime,
+                    score + scores[next], count + 1, best);
+        }
+    }
+
+    private static final class Best {
+        int count = -1;
+        double score;
+        int minutes;
+
+        void offer(int count, double score, int minutes) {
+            boolean better = this.count < 0
+                    || count > this.count
+                    || count == this.count && score > this.score + 1e-9
+                    || count == this.count && Math.abs(score - this.score) <= 1e-9 && minutes < this.minutes;
+            if (better) {
+                this.count = count;
+                this.score = score;
+                this.minutes = minutes;
+            }
+        }
+    }
+
+    private static double[] scores(TimeMatrix matrix) {
+        double[] scores = new double[matrix.candidateCount()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = matrix.candidate(i).getScore();
+        }
+        return scores;
+    }
+
+    // Whole-number scores, so the search's 0.01 score tolerance never decides a tie.
+    // With cutOff, the last candidate can't be walked to from anywhere.
+    private static TimeMatrix randomMatrix(Random random, int candidates, boolean cutOff) {
+        List<ScenicPoint> pois = new ArrayList<>();
+        for (int i = 0; i < candidates; i++) {
+            pois.add(new ScenicPoint("POI " + i,
+                    52.22 + random.nextDouble() * 0.02,
+                    21.00 + random.nextDouble() * 0.02,
+                    1 + random.nextInt(9)));
+        }
+        return TimeMatrix.build(52.225, 21.005, 52.235, 21.015, pois, (lats, lngs) -> {
+            int n = lats.length;
+            int[] minutes = new int[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    minutes[i * n + j] = StubRoutesService.walkingMinutes(lats[i], lngs[i], lats[j], lngs[j]);
+                    if (cutOff && j == candidates - 1 && i != j) minutes[i * n + j] = Integer.MAX_VALUE;
+                }
+            }
+            return minutes;
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package com.martyna.ScenicRoutes.routing;
+
+import com.martyna.ScenicRoutes.model.ScenicPoint;
+import com.martyna.ScenicRoutes.service.StubRoutesService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Every O(1) delta against evaluating the changed route from scratch
+class RouteEvaluatorTest {
+
+    @Test
+    void deltasMatchFullEvaluation() {
+        Random random = new Random(3);
+        for (int instance = 0; instance < 30; instance++) {
+            TimeMatrix matrix = randomMatrix(random, 6 + random.nextInt(6));
+            RouteEvaluator evaluator = new RouteEvaluator(
+                    matrix, RouteEvaluator.VISIT_MINUTES, instance % 2 == 0
+            );
+
+            int[] route = {0, 1, 2, 3, 4};
+            int length = 2 + random.nextInt(3);
+            int before = evaluator.minutes(route, length);
+            int outside = 5;
+
+            for (int position = 0; position <= length; position++) {
+                int[] changed = new int[length + 1];
+                System.arraycopy(route, 0, changed, 0, position);
+                changed[position] = outside;
+                System.arraycopy(route, position, changed, position + 1, length - position);
+                assertEquals(evaluator.minutes(changed) - before,
+                        evaluator.insertDelta(route, length, position, outside));
+            }
+
+            for (int position = 0; position < length; position++) {
+                int[] changed = new int[length - 1];
+                System.arraycopy(route, 0, changed, 0, position);
+                System.arraycopy(route, position + 1, changed, position, length - position - 1);
+                assertEquals(evaluator.minutes(changed) - before,
+                        evaluator.removeDelta(route, length, position));
+
+                changed = Arrays.copyOf(route, length);
+                changed[position] = outside;
+                assertEquals(evaluator.minutes(changed) - before,
+                        evaluator.replaceDelta(route, length, position, outside));
+
+                for (int other = 0; other < length; other++) {
+                    changed = Arrays.copyOf(route, length);
+                    changed[position] = route[other];
+                    changed[other] = route[position];
+                    assertEquals(evaluator.minutes(changed) - before,
+                            evaluator.swapDelta(route, length, position, other));
+                }
+            }
+        }
+    }
+
+    @Test
+    void openEndSkipsTheLastLeg() {
+        TimeMatrix matrix = randomMatrix(new Random(8), 3);
+        int[] route = {2, 0, 1};
+
+        int closed = new RouteEvaluator(matrix, RouteEvaluator.VISIT_MINUTES, false).minutes(route);
+        int open = new RouteEvaluator(matrix, RouteEvaluator.VISIT_MINUTES, true).minutes(route);
+
+        assertEquals(matrix.time(1, matrix.end()), closed - open);
+    }
+
+    private static TimeMatrix randomMatrix(Random random, int candidates) {
+        List<ScenicPoint> pois = new ArrayList<>();
+        for (int i = 0; i < candidates; i++) {
+            pois.add(new ScenicPoint("POI " + i,
+                    52.22 + random.nextDouble() * 0.02,
+                    21.00 + random.nextDouble() * 0.02,
+                    100));
+        }
+        return TimeMatrix.build(52.225, 21.005, 52.235, 21.015, pois, (lats, lngs) -> {
+            int n = lats.length;
+            int[] minutes = new int[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    minutes[i * n + j] = StubRoutesService.walkingMinutes(lats[i], lngs[i], lats[j], lngs[j]);
+                }
+            }
+            return minutes;
+        });
+    }
+}
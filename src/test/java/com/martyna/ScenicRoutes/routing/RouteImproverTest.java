@@ -0,0 +1,200 @@
+package com.martyna.ScenicRoutes.routing;
+
+import com.martyna.ScenicRoutes.model.ScenicPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The improver on random asymmetric matrices, closed and open-ended: the same stops, a walk
+// that is never longer, and no single reversal or chain move - either way round, to either
+// side - left that would shorten it. Walks are summed here leg by leg, not by the improver.
+class RouteImproverTest {
+
+    @Test
+    void keepsTheStopsAndNeverLengthensTheWalk() {
+        Random random = new Random(73);
+        for (int instance = 0; instance < 300; instance++) {
+            TimeMatrix matrix = randomAsymmetricMatrix(random, 2 + random.nextInt(30));
+            boolean openEnd = instance % 2 == 0;
+            int[] route = randomRoute(random, matrix, random.nextInt(matrix.candidateCount() + 1));
+
+            int[] improved = new RouteImprover(matrix, openEnd).improve(route);
+
+            assertPermutation(route, improved);
+            assertTrue(walk(matrix, improved, openEnd) <= walk(matrix, route, openEnd),
+                    Arrays.toString(route) + " became " + Arrays.toString(improved));
+        }
+    }
+
+    @Test
+    void noSingleMoveShortensTheResult() {
+        Random random = new Random(79);
+        for (int instance = 0; instance < 300; instance++) {
+            TimeMatrix matrix = randomAsymmetricMatrix(random, 4 + random.nextInt(10));
+            boolean openEnd = instance % 2 == 1;
+            int[] route = randomRoute(random, matrix, 2 + random.nextInt(matrix.candidateCount() - 1));
+
+            int[] improved = new RouteImprover(matrix, openEnd).improve(route);
+
+            assertPermutation(route, improved);
+            long length = walk(matrix, improved, openEnd);
+            for (int[] neighbour : neighbours(improved)) {
+                assertTrue(walk(matrix, neighbour, openEnd) >= length,
+                        (openEnd ? "open " : "closed ") + Arrays.toString(improved) + " walks " + length
+                                + ", " + Arrays.toString(neighbour) + " " + walk(matrix, neighbour, openEnd));
+            }
+        }
+    }
+
+    @Test
+    void movesChainsBothWays() {
+        // Stops on a line, walked out and back along it. The chain 1, 2 belongs after 3 and
+        // the chain 5, 6 before 4, so the best order needs a shift in each direction.
+        TimeMatrix matrix = lineMatrix(8);
+        long best = walk(matrix, new int[] {0, 1, 2, 3, 4, 5, 6, 7}, false);
+        for (int[] route : new int[][] {{1, 2, 0, 3, 5, 6, 4, 7}, {0, 4, 5, 6, 1, 2, 3, 7}}) {
+            int[] improved = new RouteImprover(matrix, false).improve(route);
+            assertPermutation(route, improved);
+            assertEquals(best, walk(matrix, improved, false));
+        }
+    }
+
+    @Test
+    void openEndIgnoresTheWayBack() {
+        // Open-ended, the walk stops at the farthest stop; closed, it has to come back
+        TimeMatrix matrix = lineMatrix(6);
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5},
+                new RouteImprover(matrix, true).improve(new int[] {5, 3, 1, 0, 2, 4}));
+        assertEquals(walk(matrix, new int[] {0, 1, 2, 3, 4, 5}, false),
+                walk(matrix, new RouteImprover(matrix, false).improve(new int[] {5, 3, 1, 0, 2, 4}), false));
+    }
+
+    @Test
+    void shortRoutesComeBackAsTheyAre() {
+        TimeMatrix matrix = lineMatrix(3);
+        RouteImprover improver = new RouteImprover(matrix, false);
+        assertArrayEquals(new int[0], improver.improve(new int[0]));
+        assertArrayEquals(new int[] {2}, improver.improve(new int[] {2}));
+    }
+
+    // Same ids, none of them the start or end node
+    private static void assertPermutation(int[] route, int[] improved) {
+        int[] expected = route.clone();
+        int[] actual = improved.clone();
+        Arrays.sort(expected);
+        Arrays.sort(actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    // Every order one reversal, relocate or Or-opt move away, chains of up to three stops
+    // put back anywhere else as they are or reversed
+    private static List<int[]> neighbours(int[] route) {
+        List<int[]> result = new ArrayList<>();
+        int k = route.length;
+        for (int i = 0; i < k; i++) {
+            for (int j = i + 1; j < k; j++) {
+                int[] reversed = route.clone();
+                for (int a = i, b = j; a < b; a++, b--) {
+                    int swap = reversed[a];
+                    reversed[a] = reversed[b];
+                    reversed[b] = swap;
+                }
+                result.add(reversed);
+            }
+        }
+
+        for (int s = 0; s < k; s++) {
+            for (int e = s; e < Math.min(k, s + 3); e++) {
+                int[] chain = Arrays.copyOfRange(route, s, e + 1);
+                int[] rest = new int[k - chain.length];
+                System.arraycopy(route, 0, rest, 0, s);
+                System.arraycopy(route, e + 1, rest, s, k - e - 1);
+
+                for (int at = 0; at <= rest.length; at++) {
+                    for (boolean flip : new boolean[] {false, true}) {
+                        int[] moved = new int[k];
+                        System.arraycopy(rest, 0, moved, 0, at);
+                        for (int c = 0; c < chain.length; c++) {
+                            moved[at + c] = chain[flip ? chain.length - 1 - c : c];
+                        }
+                        System.arraycopy(rest, at, moved, at + chain.length, rest.length - at);
+                        result.add(moved);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    // Legs from the start through every stop to the end; the last one is free when open-ended.
+    // Unreachable legs add Integer.MAX_VALUE each, so they still count against a walk.
+    private static long walk(TimeMatrix matrix, int[] route, boolean openEnd) {
+        long total = 0;
+        int current = matrix.start();
+        for (int id : route) {
+            total += matrix.time(current, id);
+            current = id;
+        }
+        if (!openEnd) total += matrix.time(current, matrix.end());
+        return total;
+    }
+
+    private static int[] randomRoute(Random random, TimeMatrix matrix, int length) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < matrix.candidateCount(); id++) {
+            ids.add(id);
+        }
+        Collections.shuffle(ids, random);
+        return ids.subList(0, length).stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Stops 0..count-1 a minute apart on a line that starts and ends one minute before stop 0
+    private static TimeMatrix lineMatrix(int count) {
+        List<ScenicPoint> pois = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            pois.add(new ScenicPoint("POI " + i, 52.22 + i * 0.001, 21.00, 10));
+        }
+        return TimeMatrix.build(52.219, 21.0, 52.219, 21.0, pois, (lats, lngs) -> {
+            int n = lats.length;
+            int[] position = new int[n];
+            for (int i = 0; i < count; i++) {
+                position[i] = i + 1;
+            }
+            int[] minutes = new int[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    minutes[i * n + j] = Math.abs(position[i] - position[j]);
+                }
+            }
+            return minutes;
+        });
+    }
+
+    // Independent times each way, not always obeying the triangle inequality, and a few
+    // unreachable legs
+    private static TimeMatrix randomAsymmetricMatrix(Random random, int candidates) {
+        List<ScenicPoint> pois = new ArrayList<>();
+        for (int i = 0; i < candidates; i++) {
+            pois.add(new ScenicPoint("POI " + i, 52.22 + i * 0.001, 21.00, 10));
+        }
+        return TimeMatrix.build(52.2, 21.0, 52.21, 21.01, pois, (lats, lngs) -> {
+            int n = lats.length;
+            int[] minutes = new int[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i == j) continue;
+                    minutes[i * n + j] = random.nextInt(25) == 0 ? Integer.MAX_VALUE : 1 + random.nextInt(30);
+                }
+            }
+            return minutes;
+        });
+    }
+}
@@ -0,0 +1,193 @@
+package com.martyna.ScenicRoutes.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Grid lookups against a brute-force haversine scan over every point, for queries inside the
+// grid, beyond its edges and further from the equator than any of its points
+class SpatialGridTest {
+
+    @Test
+    void withinMatchesBruteForce() {
+        Random random = new Random(53);
+        for (int instance = 0; instance < 300; instance++) {
+            double[][] points = randomPoints(random, instance);
+            SpatialGrid grid = new SpatialGrid(points[0], points[1], 20 + random.nextInt(1000));
+
+            for (int query = 0; query < 20; query++) {
+                double[] spot = randomQuery(random, points);
+                // Up to a few kilometers, and sometimes far enough to reach the grid from well beyond it
+                double radius = 10 + random.nextDouble() * (random.nextInt(4) == 0 ? 300_000 : 5000);
+
+                assertArrayEquals(bruteWithin(points, spot[0], spot[1], radius),
+                        grid.within(spot[0], spot[1], radius),
+                        "instance " + instance + " at " + spot[0] + "," + spot[1] + " within " + radius);
+            }
+        }
+    }
+
+    @Test
+    void nearestMatchesBruteForce() {
+        Random random = new Random(59);
+        for (int instance = 0; instance < 300; instance++) {
+            double[][] points = randomPoints(random, instance);
+            int n = points[0].length;
+            SpatialGrid grid = new SpatialGrid(points[0], points[1], 20 + random.nextInt(1000));
+
+            for (int query = 0; query < 20; query++) {
+                double[] spot = randomQuery(random, points);
+                int k = 1 + random.nextInt(12);
+                boolean[] excluded = null;
+                if (random.nextBoolean()) {
+                    excluded = new boolean[n];
+                    for (int id = 0; id < n; id++) {
+                        excluded[id] = random.nextInt(3) == 0;
+                    }
+                }
+
+                int[] expected = bruteNearest(points, spot[0], spot[1], k, excluded);
+                String where = "instance " + instance + " at " + spot[0] + "," + spot[1] + ", k " + k;
+                assertArrayEquals(expected, grid.nearest(spot[0], spot[1], k, excluded), where);
+                assertEquals(expected.length > 0 ? expected[0] : -1, grid.nearest(spot[0], spot[1], excluded), where);
+            }
+        }
+    }
+
+    @Test
+    void queriesPolewardOfAWideGridMatchBruteForce() {
+        // Longitude degrees shrink fast near the poles, so just past a wide high-latitude grid
+        // its columns are narrower than cellMeters - the case lngStretch widens the scan for
+        Random random = new Random(61);
+        for (int instance = 0; instance < 200; instance++) {
+            int n = 20 + random.nextInt(100);
+            double side = random.nextBoolean() ? 1 : -1;
+            double[][] points = new double[2][n];
+            for (int i = 0; i < n; i++) {
+                points[0][i] = side * (74 + random.nextDouble() * 4);
+                points[1][i] = -20 + random.nextDouble() * 60;
+            }
+            SpatialGrid grid = new SpatialGrid(points[0], points[1], 1000 + random.nextInt(20_000));
+
+            for (int query = 0; query < 20; query++) {
+                double lat = side * (78.5 + random.nextDouble() * 2);
+                double lng = -20 + random.nextDouble() * 60;
+                double radius = 100_000 + random.nextDouble() * 1_000_000;
+                int k = 1 + random.nextInt(12);
+                String where = "instance " + instance + " at " + lat + "," + lng;
+
+                assertArrayEquals(bruteWithin(points, lat, lng, radius), grid.within(lat, lng, radius), where);
+                assertArrayEquals(bruteNearest(points, lat, lng, k, null), grid.nearest(lat, lng, k, null), where);
+            }
+        }
+    }
+
+    @Test
+    void equalDistancesGoToTheLowerId() {
+        // Three copies of one spot and two of another, interleaved by id
+        double[] lats = {52.23, 52.24, 52.23, 52.24, 52.23};
+        double[] lngs = {21.01, 21.02, 21.01, 21.02, 21.01};
+        SpatialGrid grid = new SpatialGrid(lats, lngs, 100);
+
+        assertArrayEquals(new int[] {0, 2, 4, 1}, grid.nearest(52.23, 21.01, 4, null));
+        assertArrayEquals(new int[] {1, 3}, grid.nearest(52.24, 21.02, 2, null));
+        assertArrayEquals(new int[] {2, 4, 1, 3}, grid.nearest(52.23, 21.01, 4, new boolean[] {true, false, false, false, false}));
+        assertArrayEquals(new int[] {0, 2, 4}, grid.within(52.23, 21.01, 1));
+    }
+
+    @Test
+    void emptyGridAndFullyExcludedPoints() {
+        SpatialGrid empty = new SpatialGrid(new double[0], new double[0], 100);
+        assertArrayEquals(new int[0], empty.within(52.23, 21.01, 1000));
+        assertArrayEquals(new int[0], empty.nearest(52.23, 21.01, 3, null));
+        assertEquals(-1, empty.nearest(52.23, 21.01, null));
+
+        SpatialGrid grid = new SpatialGrid(new double[] {52.23, 52.24}, new double[] {21.01, 21.02}, 100);
+        assertEquals(-1, grid.nearest(52.23, 21.01, new boolean[] {true, true}));
+        assertArrayEquals(new int[0], grid.nearest(52.23, 21.01, 0, null));
+    }
+
+    // Ids closer than radius, ascending
+    private static int[] bruteWithin(double[][] points, double lat, double lng, double radius) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < points[0].length; id++) {
+            if (SpatialGrid.distanceMeters(lat, lng, points[0][id], points[1][id]) < radius) ids.add(id);
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Up to k ids, closest first, equal distances by id
+    private static int[] bruteNearest(double[][] points, double lat, double lng, int k, boolean[] excluded) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < points[0].length; id++) {
+            if (excluded == null || !excluded[id]) ids.add(id);
+        }
+        ids.sort(Comparator.<Integer>comparingDouble(id ->
+                SpatialGrid.distanceMeters(lat, lng, points[0][id], points[1][id])).thenComparing(id -> id));
+        return ids.stream().limit(k).mapToInt(Integer::intValue).toArray();
+    }
+
+    // A city's worth of POIs at most instances. Every third is spread over several degrees, so
+    // the grid has to double its cells to stay within budget, and every fifth has duplicates
+    // for the id tie-breaks. Centers range from the equator to 80 degrees either side.
+    private static double[][] randomPoints(Random random, int instance) {
+        int n = 1 + random.nextInt(120);
+        double centerLat = (random.nextDouble() - 0.5) * 160;
+        double centerLng = (random.nextDouble() - 0.5) * 340;
+        double spread = instance % 3 == 0 ? 1 + random.nextDouble() * 4 : 0.005 + random.nextDouble() * 0.05;
+
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        for (int i = 0; i < n; i++) {
+            if (instance % 5 == 0 && i > 0 && random.nextInt(3) == 0) {
+                int copy = random.nextInt(i);
+                lats[i] = lats[copy];
+                lngs[i] = lngs[copy];
+                continue;
+            }
+            lats[i] = centerLat + (random.nextDouble() - 0.5) * spread;
+            lngs[i] = centerLng + (random.nextDouble() - 0.5) * spread;
+        }
+        return new double[][] {lats, lngs};
+    }
+
+    // Inside the points' bounding box, around it, or well poleward of it, where a degree of
+    // longitude is shorter than anywhere in the grid
+    private static double[] randomQuery(Random random, double[][] points) {
+        double loLat = Double.MAX_VALUE, hiLat = -Double.MAX_VALUE;
+        double loLng = Double.MAX_VALUE, hiLng = -Double.MAX_VALUE;
+        for (int i = 0; i < points[0].length; i++) {
+            loLat = Math.min(loLat, points[0][i]);
+            hiLat = Math.max(hiLat, points[0][i]);
+            loLng = Math.min(loLng, points[1][i]);
+            hiLng = Math.max(hiLng, points[1][i]);
+        }
+        double margin = 0.02 + (hiLat - loLat);
+
+        switch (random.nextInt(3)) {
+            case 0:
+                return new double[] {
+                        loLat + random.nextDouble() * (hiLat - loLat),
+                        loLng + random.nextDouble() * (hiLng - loLng)
+                };
+            case 1:
+                return new double[] {
+                        loLat - margin + random.nextDouble() * (hiLat - loLat + 2 * margin),
+                        loLng - margin + random.nextDouble() * (hiLng - loLng + 2 * margin)
+                };
+            default:
+                double poleward = Math.signum(hiLat + loLat) * (0.01 + random.nextDouble());
+                double edge = poleward > 0 ? hiLat : loLat;
+                return new double[] {
+                        Math.max(-85, Math.min(85, edge + poleward)),
+                        loLng + random.nextDouble() * (hiLng - loLng)
+                };
+        }
+    }
+}
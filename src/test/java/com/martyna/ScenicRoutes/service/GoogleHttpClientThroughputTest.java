@@ -0,0 +1,215 @@
+package com.martyna.ScenicRoutes.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Throughput of the shared Google HTTP client against a slow local stub of the Routes API:
+// calls made together should overlap instead of queueing, and reuse pooled connections.
+class GoogleHttpClientThroughputTest {
+
+    private static final long LATENCY_MS = 100;
+    private static final int CONCURRENT_CALLS = 50;
+    private static final int POINTS = 60;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private GoogleRoutesService routes;
+
+    private final AtomicInteger calls = new AtomicInteger(0);
+    private final AtomicInteger active = new AtomicInteger(0);
+    private final AtomicInteger peakActive = new AtomicInteger(0);
+    // Client ports seen by the server - one per connection the client opened
+    private final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startStub() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/directions/v2:computeRoutes", exchange -> handle(exchange, body -> {
+            JSONObject from = body.getJSONObject("origin").getJSONObject("location").getJSONObject("latLng");
+            JSONObject to = body.getJSONObject("destination").getJSONObject("location").getJSONObject("latLng");
+            int minutes = minutes(from, to);
+            return new JSONObject()
+                    .put("routes", new JSONArray().put(new JSONObject().put("duration", (minutes * 60 + 30) + "s")))
+                    .toString();
+        }));
+        server.createContext("/distanceMatrix/v2:computeRouteMatrix", exchange -> handle(exchange, body -> {
+            JSONArray origins = body.getJSONArray("origins");
+            JSONArray destinations = body.getJSONArray("destinations");
+            JSONArray elements = new JSONArray();
+            for (int o = 0; o < origins.length(); o++) {
+                for (int d = 0; d < destinations.length(); d++) {
+                    int minutes = minutes(latLng(origins.getJSONObject(o)), latLng(destinations.getJSONObject(d)));
+                    elements.put(new JSONObject()
+                            .put("originIndex", o)
+                            .put("destinationIndex", d)
+                            .put("duration", (minutes * 60 + 30) + "s")
+                            .put("condition", "ROUTE_EXISTS"));
+                }
+            }
+            return elements.toString();
+        }));
+        // Enough server threads that the stub itself never serializes the calls
+        serverThreads = Executors.newFixedThreadPool(CONCURRENT_CALLS);
+        server.setExecutor(serverThreads);
+        server.start();
+
+        routes = new GoogleRoutesService();
+        ReflectionTestUtils.setField(routes, "apiKey", "test-key");
+        ReflectionTestUtils.setField(routes, "baseUrl", "http://localhost:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsOverlapInsteadOfQueueing() {
+        Random random = new Random(5);
+        double[][] pairs = new double[CONCURRENT_CALLS][4];
+        for (double[] pair : pairs) {
+            pair[0] = 51.50 + random.nextDouble() * 0.02;
+            pair[1] = -0.13 + random.nextDouble() * 0.02;
+            pair[2] = 51.50 + random.nextDouble() * 0.02;
+            pair[3] = -0.13 + random.nextDouble() * 0.02;
+        }
+
+        // Warm-up, so class loading and the client's first connection aren't timed
+        routes.getWalkingTimeMinutes(pairs[0][0], pairs[0][1], pairs[0][2], pairs[0][3]);
+        calls.set(0);
+        peakActive.set(0);
+
+        long started = System.nanoTime();
+        List<CompletableFuture<Integer>> pending = new ArrayList<>();
+        for (double[] pair : pairs) {
+            pending.add(routes.getWalkingTimeMinutesAsync(pair[0], pair[1], pair[2], pair[3]));
+        }
+        for (int i = 0; i < CONCURRENT_CALLS; i++) {
+            double[] pair = pairs[i];
+            int minutes = pending.get(i).join();
+            assertEquals(StubRoutesService.walkingMinutes(pair[0], pair[1], pair[2], pair[3]), minutes);
+        }
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        long serialMs = CONCURRENT_CALLS * LATENCY_MS;
+        assertEquals(CONCURRENT_CALLS, calls.get());
+        assertTrue(peakActive.get() > 1, "calls never overlapped");
+        assertTrue(elapsedMs < serialMs / 4, "took " + elapsedMs + " ms");
+    }
+
+    @Test
+    void sequentialCallsReuseOneConnection() {
+        for (int i = 0; i < 10; i++) {
+            routes.getWalkingTimeMinutes(51.50, -0.13, 51.51 + i * 0.001, -0.12);
+        }
+
+        assertEquals(10, calls.get());
+        assertEquals(1, connections.size());
+    }
+
+    @Test
+    void matrixFillRequestsAllMissingBlocksAtOnce() {
+        WalkingTimeCache cache = new WalkingTimeCache(routes, 1 << 20, 1 << 20, "", 0, 16);
+        double[] lats = new double[POINTS];
+        double[] lngs = new double[POINTS];
+        randomPoints(lats, lngs);
+
+        long started = System.nanoTime();
+        int[] times = cache.getWalkingTimeMatrix(lats, lngs);
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        // 60 x 60 splits into 25/25/10 origin blocks times 25/25/10 destination blocks
+        int blocks = 9;
+        assertEquals(blocks, calls.get());
+        assertTrue(peakActive.get() > 1, "blocks were fetched one after another");
+        assertTrue(elapsedMs < blocks * LATENCY_MS, "took " + elapsedMs + " ms");
+        for (int from = 0; from < POINTS; from++) {
+            for (int to = 0; to < POINTS; to++) {
+                int expected = from == to ? 0 : StubRoutesService.walkingMinutes(lats[from], lngs[from], lats[to], lngs[to]);
+                assertEquals(expected, times[from * POINTS + to]);
+            }
+        }
+    }
+
+    @Test
+    void matrixFillStaysWithinTheFetchLimit() {
+        WalkingTimeCache cache = new WalkingTimeCache(routes, 1 << 20, 1 << 20, "", 0, 3);
+        double[] lats = new double[POINTS];
+        double[] lngs = new double[POINTS];
+        randomPoints(lats, lngs);
+
+        int[] times = cache.getWalkingTimeMatrix(lats, lngs);
+
+        assertEquals(9, calls.get());
+        assertTrue(peakActive.get() <= 3, "peak " + peakActive.get() + " in flight");
+        assertEquals(StubRoutesService.walkingMinutes(lats[59], lngs[59], lats[0], lngs[0]), times[59 * POINTS]);
+    }
+
+    private static void randomPoints(double[] lats, double[] lngs) {
+        Random random = new Random(11);
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = 51.50 + random.nextDouble() * 0.02;
+            lngs[i] = -0.13 + random.nextDouble() * 0.02;
+        }
+    }
+
+    private void handle(HttpExchange exchange, StubResponse response) throws IOException {
+        calls.incrementAndGet();
+        connections.add(exchange.getRemoteAddress().getPort());
+        int now = active.incrementAndGet();
+        peakActive.accumulateAndGet(now, Math::max);
+        try {
+            JSONObject body = new JSONObject(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            Thread.sleep(LATENCY_MS);
+
+            byte[] bytes = response.body(body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private static int minutes(JSONObject from, JSONObject to) {
+        return StubRoutesService.walkingMinutes(
+                from.getDouble("latitude"), from.getDouble("longitude"),
+                to.getDouble("latitude"), to.getDouble("longitude"));
+    }
+
+    private static JSONObject latLng(JSONObject waypointEntry) {
+        return waypointEntry.getJSONObject("waypoint").getJSONObject("location").getJSONObject("latLng");
+    }
+
+    private interface StubResponse {
+        String body(JSONObject request);
+    }
+}
@@ -0,0 +1,119 @@
+package com.martyna.ScenicRoutes.service;
+
+import com.martyna.ScenicRoutes.service.GoogleJsonReader.PlaceResult;
+import com.martyna.ScenicRoutes.service.GoogleJsonReader.PlacesPage;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// The streaming reader against the JSONObject navigation it replaced, on a 20-result Places page
+class GoogleJsonReaderTest {
+
+    @Test
+    void placesPageMatchesTreeNavigation() throws IOException {
+        byte[] json = nearbySearchPage();
+        PlacesPage page = GoogleJsonReader.readPlacesPage(json);
+
+        JSONObject tree = new JSONObject(new String(json, StandardCharsets.UTF_8));
+        JSONArray results = tree.getJSONArray("results");
+        assertEquals(tree.getString("next_page_token"), page.nextPageToken());
+        assertEquals(tree.getString("status"), page.status());
+        assertEquals(results.length(), page.results().size());
+
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject place = results.getJSONObject(i);
+            PlaceResult read = page.results().get(i);
+            JSONObject location = place.getJSONObject("geometry").getJSONObject("location");
+
+            assertEquals(place.getString("name"), read.name());
+            assertEquals(location.getDouble("lat"), read.latitude(), 0.0);
+            assertEquals(location.getDouble("lng"), read.longitude(), 0.0);
+            assertEquals(place.has("rating") ? place.getDouble("rating") : 3.0, read.rating(), 0.0);
+            assertEquals(place.has("user_ratings_total") ? place.getInt("user_ratings_total") : 0, read.reviewCount());
+
+            String photoReference = place.has("photos")
+                    ? place.getJSONArray("photos").getJSONObject(0).getString("photo_reference")
+                    : null;
+            assertEquals(photoReference, read.photoReference());
+
+            List<String> types = new ArrayList<>();
+            JSONArray typesArray = place.getJSONArray("types");
+            for (int j = 0; j < typesArray.length(); j++) {
+                types.add(typesArray.getString(j));
+            }
+            assertEquals(types, read.types());
+        }
+    }
+
+    @Test
+    void lastPageHasNoToken() {
+        PlacesPage page = GoogleJsonReader.readPlacesPage(bytes("{\"html_attributions\":[],\"results\":[],\"status\":\"ZERO_RESULTS\"}"));
+
+        assertEquals(0, page.results().size());
+        assertNull(page.nextPageToken());
+        assertEquals("ZERO_RESULTS", page.status());
+    }
+
+    @Test
+    void routeDurationsAndPolylines() {
+        assertEquals(12, GoogleJsonReader.readRouteMinutes(bytes("{\"routes\":[{\"duration\":\"754s\"}]}")));
+        // Google leaves routes out entirely when there is none
+        assertEquals(Integer.MAX_VALUE, GoogleJsonReader.readRouteMinutes(bytes("{}")));
+
+        assertEquals("a~l~Fjk~uOwHJ", GoogleJsonReader.readEncodedPolyline(
+                bytes("{\"routes\":[{\"polyline\":{\"encodedPolyline\":\"a~l~Fjk~uOwHJ\"}}]}")));
+        assertThrows(IllegalStateException.class, () -> GoogleJsonReader.readEncodedPolyline(bytes("{}")));
+    }
+
+    @Test
+    void matrixCellsWithOmittedIndices() {
+        int[][] minutes = GoogleJsonReader.readRouteMatrix(bytes("["
+                + "{\"duration\":\"60s\",\"condition\":\"ROUTE_EXISTS\"},"
+                + "{\"destinationIndex\":1,\"status\":{},\"duration\":\"125s\",\"condition\":\"ROUTE_EXISTS\"},"
+                + "{\"originIndex\":1,\"condition\":\"ROUTE_NOT_FOUND\"},"
+                + "{\"originIndex\":1,\"destinationIndex\":1,\"duration\":\"0s\",\"condition\":\"ROUTE_EXISTS\"}"
+                + "]"), 2, 2);
+
+        assertEquals(1, minutes[0][0]);
+        assertEquals(2, minutes[0][1]);
+        assertEquals(Integer.MAX_VALUE, minutes[1][0]);
+        assertEquals(0, minutes[1][1]);
+    }
+
+    @Test
+    void failedMatrixElementsHaveNoRoute() {
+        int[][] minutes = GoogleJsonReader.readRouteMatrix(bytes("["
+                // Neither a condition nor a duration, as when the element itself failed
+                + "{\"destinationIndex\":1},"
+                + "{\"originIndex\":1,\"status\":{\"code\":4,\"message\":\"Deadline exceeded\"}},"
+                // An error status overrides whatever else came with it
+                + "{\"originIndex\":1,\"destinationIndex\":1,\"status\":{\"code\":13},\"duration\":\"300s\",\"condition\":\"ROUTE_EXISTS\"},"
+                + "{\"status\":{\"code\":0},\"duration\":\"180s\",\"condition\":\"ROUTE_EXISTS\"}"
+                + "]"), 2, 2);
+
+        assertEquals(3, minutes[0][0]);
+        assertEquals(Integer.MAX_VALUE, minutes[0][1]);
+        assertEquals(Integer.MAX_VALUE, minutes[1][0]);
+        assertEquals(Integer.MAX_VALUE, minutes[1][1]);
+    }
+
+    static byte[] nearbySearchPage() throws IOException {
+        try (InputStream in = GoogleJsonReaderTest.class.getResourceAsStream("/google/nearby-search-page.json")) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,115 @@
+package com.martyna.ScenicRoutes.service;
+
+import com.martyna.ScenicRoutes.model.ScenicPoint;
+import com.martyna.ScenicRoutes.model.ScenicRoute;
+import com.martyna.ScenicRoutes.model.UserPreferences;
+import com.martyna.ScenicRoutes.model.UserPreferences.RouteShape;
+import com.martyna.ScenicRoutes.model.UserPreferences.SolverMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Whole requests against stubbed Places and Routes backends. The Routes stub is slower than
+// the compute budget, so a budget counted from request entry would be gone before solving.
+class OptimizedRouteServiceTest {
+
+    private static final double START_LAT = 52.2297;
+    private static final double START_LNG = 21.0122;
+    private static final long ROUTES_LATENCY_MS = 400;
+
+    private final StubRoutesService routes = new StubRoutesService(ROUTES_LATENCY_MS);
+    private final StubPlacesService places = StubPlacesService.around(START_LAT, START_LNG, 40, 7);
+    private final WalkingTimeCache cache = new WalkingTimeCache(routes, 1 << 20, 1 << 20, "", 0, 8);
+    private final MetricsService metrics = new MetricsService();
+    private final OptimizedRouteService service = new OptimizedRouteService(
+            places, routes, new TwoPointLoopService(routes, cache), new AStarRouteService(cache),
+            cache, metrics, 300, 2000, 0
+    );
+
+    @AfterEach
+    void shutDown() {
+        service.shutdownPortfolioPool();
+        places.shutdownPageScheduler();
+    }
+
+    @Test
+    void anytimePointToPointStartsFromTheSearchRoute() {
+        ScenicRoute anytime = service.generateOptimizedRoute(START_LAT, START_LNG, 90, pointToPoint(SolverMode.ANYTIME));
+        ScenicRoute search = service.generateOptimizedRoute(START_LAT, START_LNG, 90, pointToPoint(SolverMode.DEFAULT));
+
+        assertFeasible(anytime, 90);
+        assertFalse(search.getPoints().isEmpty());
+        assertTrue(anytime.getTotalScore() >= search.getTotalScore() - 1e-9,
+                "anytime scored " + anytime.getTotalScore() + ", the search alone " + search.getTotalScore());
+    }
+
+    @Test
+    void portfolioReturnsAWinnerForEveryShape() {
+        for (RouteShape shape : RouteShape.values()) {
+            UserPreferences preferences = shape == RouteShape.POINT_TO_POINT
+                    ? pointToPoint(SolverMode.PORTFOLIO)
+                    : preferences(shape, SolverMode.PORTFOLIO);
+
+            assertFeasible(service.generateOptimizedRoute(START_LAT, START_LNG, 75, preferences), 75);
+        }
+
+        int wins = metrics.getMetrics().strategyWins.values().stream().mapToInt(Integer::intValue).sum();
+        assertEquals(RouteShape.values().length, wins);
+    }
+
+    @Test
+    void portfolioFallsBackToGreedyWhenTheBudgetIsTooShort() {
+        UserPreferences preferences = preferences(RouteShape.LOOP, SolverMode.PORTFOLIO);
+        preferences.setMaxComputeMs(1);
+
+        assertFeasible(service.generateOptimizedRoute(START_LAT, START_LNG, 75, preferences), 75);
+        assertEquals(1, metrics.getMetrics().strategyWins.values().stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    void exactFinishesTheDynamicProgramWithinTheDefaultBudget() {
+        for (RouteShape shape : new RouteShape[] {RouteShape.LOOP, RouteShape.ONE_WAY}) {
+            ScenicRoute withDefault = service.generateOptimizedRoute(
+                    START_LAT, START_LNG, 60, preferences(shape, SolverMode.EXACT));
+            // Walking times are cached by now, and the largest budget leaves the DP all the time it needs
+            UserPreferences unhurried = preferences(shape, SolverMode.EXACT);
+            unhurried.setMaxComputeMs(2000);
+            ScenicRoute complete = service.generateOptimizedRoute(START_LAT, START_LNG, 60, unhurried);
+
+            assertFeasible(withDefault, 60);
+            assertEquals(complete.getTotalScore(), withDefault.getTotalScore(), 1e-9);
+            assertEquals(complete.getTotalTime(), withDefault.getTotalTime());
+        }
+    }
+
+    private static UserPreferences preferences(RouteShape shape, SolverMode mode) {
+        UserPreferences preferences = new UserPreferences();
+        preferences.setRouteShape(shape);
+        preferences.setSolverMode(mode);
+        return preferences;
+    }
+
+    private static UserPreferences pointToPoint(SolverMode mode) {
+        UserPreferences preferences = preferences(RouteShape.POINT_TO_POINT, mode);
+        preferences.setEndLat(START_LAT + 0.008);
+        preferences.setEndLng(START_LNG + 0.010);
+        return preferences;
+    }
+
+    // Some stops, none twice, within the time asked for
+    private static void assertFeasible(ScenicRoute route, int minutes) {
+        assertFalse(route.getPoints().isEmpty());
+        Set<String> names = new HashSet<>();
+        for (ScenicPoint point : route.getPoints()) {
+            assertTrue(names.add(point.getName()), "visits " + point.getName() + " twice");
+        }
+        assertTrue(route.getTotalTime() <= minutes, route.getTotalTime() + " > " + minutes);
+        assertEquals(route.getPoints().size(), names.size());
+    }
+}
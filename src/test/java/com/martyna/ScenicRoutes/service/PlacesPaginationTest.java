@@ -0,0 +1,199 @@
+package com.martyna.ScenicRoutes.service;
+
+import com.martyna.ScenicRoutes.model.ScenicPoint;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Nearby-search pagination against a local stub of the Places API that, like Google,
+// rejects a page token with INVALID_REQUEST until it has become valid
+class PlacesPaginationTest {
+
+    private static final long TOKEN_DELAY_MS = 150;
+    private static final int PAGE_SIZE = 20;
+    private static final int CONCURRENT_SEARCHES = 30;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private GooglePlacesService places;
+
+    private final AtomicInteger calls = new AtomicInteger(0);
+    private final AtomicInteger tokensIssued = new AtomicInteger(0);
+    // Page token -> when it becomes valid, in System.nanoTime
+    private final Map<String, Long> tokenValidFrom = new ConcurrentHashMap<>();
+    private volatile long tokenValidAfterMs = TOKEN_DELAY_MS;
+    private volatile int failingPage = 0;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/maps/api/place/nearbysearch/json", this::handle);
+        serverThreads = Executors.newFixedThreadPool(8);
+        server.setExecutor(serverThreads);
+        server.start();
+
+        places = new GooglePlacesService();
+        ReflectionTestUtils.setField(places, "apiKey", "test-key");
+        ReflectionTestUtils.setField(places, "baseUrl", "http://localhost:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(places, "pageTokenDelayMs", TOKEN_DELAY_MS);
+    }
+
+    @AfterEach
+    void stopStub() {
+        places.shutdownPageScheduler();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void firstPageArrivesBeforeTheRest() {
+        long started = System.nanoTime();
+        GooglePlacesService.NearbySearch search = places.searchNearby(51.50, -0.13, true);
+
+        List<ScenicPoint> firstPage = search.awaitFirstPage();
+        long firstPageMs = elapsedMs(started);
+        List<ScenicPoint> allPages = search.awaitAllPages();
+        long allPagesMs = elapsedMs(started);
+
+        assertEquals(PAGE_SIZE, firstPage.size());
+        assertEquals(3 * PAGE_SIZE, allPages.size());
+        assertEquals(firstPage, allPages.subList(0, PAGE_SIZE));
+        assertEquals("page 3 place 19", allPages.get(3 * PAGE_SIZE - 1).getName());
+        assertEquals(3, calls.get());
+
+        // Pages 2 and 3 each wait out a token delay after page 1 is already usable
+        assertTrue(allPagesMs - firstPageMs >= 2 * TOKEN_DELAY_MS,
+                "page 1 at " + firstPageMs + " ms, all pages at " + allPagesMs + " ms");
+    }
+
+    @Test
+    void concurrentSearchesShareTheScheduler() {
+        // Warm-up, so class loading and the client's first connection aren't timed
+        places.getNearbyPOIs(51.50, -0.13, true);
+        calls.set(0);
+
+        long started = System.nanoTime();
+        List<GooglePlacesService.NearbySearch> searches = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_SEARCHES; i++) {
+            searches.add(places.searchNearby(51.50 + i * 0.001, -0.13, true));
+        }
+        for (GooglePlacesService.NearbySearch search : searches) {
+            assertEquals(3 * PAGE_SIZE, search.awaitAllPages().size());
+        }
+        long elapsedMs = elapsedMs(started);
+
+        GooglePlacesService.PaginationStats stats = places.getPaginationStats();
+
+        assertEquals(3 * CONCURRENT_SEARCHES, calls.get());
+        // The token waits overlap instead of queueing behind each other
+        assertTrue(elapsedMs < 6 * TOKEN_DELAY_MS, "took " + elapsedMs + " ms");
+        // Only this thread ever blocked, and nothing is left waiting
+        assertEquals(1, stats.peakCallersWaiting);
+        assertEquals(0, stats.callersWaiting);
+        assertEquals(0, stats.pagesWaitingForToken);
+    }
+
+    @Test
+    void tokenUsedTooEarlyIsRetried() {
+        tokenValidAfterMs = TOKEN_DELAY_MS + TOKEN_DELAY_MS / 2;
+
+        List<ScenicPoint> points = places.getNearbyPOIs(51.50, -0.13, true);
+
+        assertEquals(3 * PAGE_SIZE, points.size());
+        assertEquals(2, places.getPaginationStats().tokenRetries);
+        assertEquals(5, calls.get());
+    }
+
+    @Test
+    void failedLaterPageKeepsTheEarlierOnes() {
+        failingPage = 3;
+
+        assertEquals(2 * PAGE_SIZE, places.getNearbyPOIs(51.50, -0.13, true).size());
+    }
+
+    @Test
+    void failedFirstPageFailsTheSearch() {
+        failingPage = 1;
+
+        assertThrows(HttpServerErrorException.class, () -> places.getNearbyPOIs(51.50, -0.13, true));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        calls.incrementAndGet();
+        String token = queryParameter(exchange.getRequestURI().getQuery(), "pagetoken");
+        int page = token == null ? 1 : Integer.parseInt(token.substring(token.lastIndexOf('-') + 1));
+
+        if (page == failingPage) {
+            respond(exchange, 500, "{}");
+            return;
+        }
+
+        JSONObject response = new JSONObject().put("html_attributions", new JSONArray());
+        if (token != null && System.nanoTime() < tokenValidFrom.get(token)) {
+            respond(exchange, 200, response.put("results", new JSONArray()).put("status", "INVALID_REQUEST").toString());
+            return;
+        }
+
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            results.put(new JSONObject()
+                    .put("name", "page " + page + " place " + i)
+                    .put("geometry", new JSONObject().put("location", new JSONObject()
+                            .put("lat", 51.50 + page * 0.001 + i * 0.0001)
+                            .put("lng", -0.13)))
+                    .put("rating", 4.0)
+                    .put("user_ratings_total", 10 + i)
+                    .put("types", new JSONArray().put("park")));
+        }
+        response.put("results", results).put("status", "OK");
+
+        if (page < 3) {
+            String nextToken = "token-" + tokensIssued.incrementAndGet() + "-" + (page + 1);
+            tokenValidFrom.put(nextToken, System.nanoTime() + tokenValidAfterMs * 1_000_000);
+            response.put("next_page_token", nextToken);
+        }
+        respond(exchange, 200, response.toString());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String queryParameter(String query, String name) {
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(name + "=")) return parameter.substring(name.length() + 1);
+        }
+        return null;
+    }
+
+    private static long elapsedMs(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000_000;
+    }
+}
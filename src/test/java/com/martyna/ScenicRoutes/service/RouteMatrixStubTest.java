@@ -0,0 +1,136 @@
+package com.martyna.ScenicRoutes.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Batched matrix fetching against a local HTTP stub of computeRouteMatrix, including elements
+// that fail on their own
+class RouteMatrixStubTest {
+
+    private static final int POINTS = 30;
+
+    private HttpServer server;
+    private final AtomicInteger matrixCalls = new AtomicInteger(0);
+    private final AtomicInteger matrixElements = new AtomicInteger(0);
+    // While set, the element from origin 0 to destination 1 fails with a per-element error
+    private volatile boolean failingElement;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/distanceMatrix/v2:computeRouteMatrix", exchange -> {
+            matrixCalls.incrementAndGet();
+            JSONObject body = new JSONObject(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            JSONArray origins = body.getJSONArray("origins");
+            JSONArray destinations = body.getJSONArray("destinations");
+
+            JSONArray elements = new JSONArray();
+            for (int o = 0; o < origins.length(); o++) {
+                for (int d = 0; d < destinations.length(); d++) {
+                    JSONObject from = latLng(origins.getJSONObject(o));
+                    JSONObject to = latLng(destinations.getJSONObject(d));
+                    int minutes = StubRoutesService.walkingMinutes(
+                            from.getDouble("latitude"), from.getDouble("longitude"),
+                            to.getDouble("latitude"), to.getDouble("longitude"));
+
+                    // Like the real API, zero-valued indices are left out
+                    JSONObject element = failingElement && o == 0 && d == 1
+                            ? new JSONObject().put("status", new JSONObject().put("code", 4))
+                            : new JSONObject()
+                                    .put("duration", (minutes * 60 + 30) + "s")
+                                    .put("condition", "ROUTE_EXISTS");
+                    if (o > 0) element.put("originIndex", o);
+                    if (d > 0) element.put("destinationIndex", d);
+                    elements.put(element);
+                }
+            }
+            matrixElements.addAndGet(origins.length() * destinations.length());
+
+            byte[] response = elements.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    void missingCellsAreFetchedInBatchesAndCached() {
+        WalkingTimeCache cache = new WalkingTimeCache(routesService(), 1 << 20, 1 << 20, "", 0, 8);
+
+        Random random = new Random(3);
+        double[] lats = new double[POINTS];
+        double[] lngs = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            lats[i] = 51.50 + random.nextDouble() * 0.02;
+            lngs[i] = -0.13 + random.nextDouble() * 0.02;
+        }
+
+        int[] times = cache.getWalkingTimeMatrix(lats, lngs);
+
+        // 30 x 30 splits into 25/5 origin blocks times 25/5 destination blocks
+        assertEquals(4, matrixCalls.get());
+        assertEquals(POINTS * POINTS, matrixElements.get());
+        for (int from = 0; from < POINTS; from++) {
+            for (int to = 0; to < POINTS; to++) {
+                int expected = from == to ? 0 : StubRoutesService.walkingMinutes(lats[from], lngs[from], lats[to], lngs[to]);
+                assertEquals(expected, times[from * POINTS + to]);
+            }
+        }
+
+        // Everything is cached now - pairwise lookups and a second matrix cost no calls
+        assertEquals(times[POINTS + 2], cache.getWalkingTimeMinutes(lats[1], lngs[1], lats[2], lngs[2]));
+        cache.getWalkingTimeMatrix(lats, lngs);
+        assertEquals(4, matrixCalls.get());
+    }
+
+    @Test
+    void failedElementIsNotCachedAndIsFetchedAgain() {
+        WalkingTimeCache cache = new WalkingTimeCache(routesService(), 1 << 20, 1 << 20, "", 0, 8);
+        double[] lats = {51.500, 51.505, 51.510};
+        double[] lngs = {-0.130, -0.125, -0.120};
+
+        failingElement = true;
+        int[] failed = cache.getWalkingTimeMatrix(lats, lngs);
+        assertEquals(Integer.MAX_VALUE, failed[1]);
+        assertEquals(StubRoutesService.walkingMinutes(lats[1], lngs[1], lats[0], lngs[0]), failed[3]);
+
+        // Only the failed cell is asked for again
+        failingElement = false;
+        int[] retried = cache.getWalkingTimeMatrix(lats, lngs);
+        assertEquals(StubRoutesService.walkingMinutes(lats[0], lngs[0], lats[1], lngs[1]), retried[1]);
+        assertEquals(2, matrixCalls.get());
+        assertEquals(3 * 3 + 1, matrixElements.get());
+    }
+
+    private GoogleRoutesService routesService() {
+        GoogleRoutesService routes = new GoogleRoutesService();
+        ReflectionTestUtils.setField(routes, "apiKey", "test-key");
+        ReflectionTestUtils.setField(routes, "baseUrl", "http://localhost:" + server.getAddress().getPort());
+        return routes;
+    }
+
+    private static JSONObject latLng(JSONObject waypointEntry) {
+        return waypointEntry.getJSONObject("waypoint").getJSONObject("location").getJSONObject("latLng");
+    }
+}
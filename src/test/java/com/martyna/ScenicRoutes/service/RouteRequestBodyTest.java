@@ -0,0 +1,64 @@
+package com.martyna.ScenicRoutes.service;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// The hand-written bodies parse as the JSON the Routes API expects
+class RouteRequestBodyTest {
+
+    @Test
+    void routeWithIntermediates() {
+        JSONObject body = parse(RouteRequestBody.route(
+                40.7484405, -73.9856644, -33.8567844, 151.2152967,
+                new double[]{0.5, -0.0000001}, new double[]{-0.12, 12.0}
+        ));
+
+        assertEquals("WALK", body.getString("travelMode"));
+        assertLatLng(body.getJSONObject("origin"), 40.7484405, -73.9856644);
+        assertLatLng(body.getJSONObject("destination"), -33.8567844, 151.2152967);
+
+        JSONArray intermediates = body.getJSONArray("intermediates");
+        assertEquals(2, intermediates.length());
+        assertLatLng(intermediates.getJSONObject(0), 0.5, -0.12);
+        assertLatLng(intermediates.getJSONObject(1), -0.0000001, 12.0);
+    }
+
+    @Test
+    void routeWithoutIntermediatesLeavesTheFieldOut() {
+        JSONObject body = parse(RouteRequestBody.route(51.5, -0.13, 51.51, -0.12, new double[0], new double[0]));
+
+        assertFalse(body.has("intermediates"));
+        assertLatLng(body.getJSONObject("destination"), 51.51, -0.12);
+    }
+
+    @Test
+    void matrixWaypoints() {
+        JSONObject body = parse(RouteRequestBody.matrix(
+                new double[]{52.2297, 52.23}, new double[]{21.0122, 21.02},
+                new double[]{52.24}, new double[]{21.03}
+        ));
+
+        JSONArray origins = body.getJSONArray("origins");
+        JSONArray destinations = body.getJSONArray("destinations");
+        assertEquals(2, origins.length());
+        assertEquals(1, destinations.length());
+        assertLatLng(origins.getJSONObject(1).getJSONObject("waypoint"), 52.23, 21.02);
+        assertLatLng(destinations.getJSONObject(0).getJSONObject("waypoint"), 52.24, 21.03);
+    }
+
+    private static void assertLatLng(JSONObject waypoint, double lat, double lng) {
+        JSONObject latLng = waypoint.getJSONObject("location").getJSONObject("latLng");
+        assertEquals(lat, latLng.getDouble("latitude"), 1e-9);
+        assertEquals(lng, latLng.getDouble("longitude"), 1e-9);
+    }
+
+    private static JSONObject parse(byte[] body) {
+        return new JSONObject(new String(body, StandardCharsets.UTF_8));
+    }
+}
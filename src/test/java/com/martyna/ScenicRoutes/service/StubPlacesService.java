@@ -0,0 +1,42 @@
+package com.martyna.ScenicRoutes.service;
+
+import com.martyna.ScenicRoutes.service.GoogleJsonReader.PlaceResult;
+import com.martyna.ScenicRoutes.service.GoogleJsonReader.PlacesPage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+// Local stand-in for the Google Places API: every nearby search gets the same single page
+public class StubPlacesService extends GooglePlacesService {
+
+    private final List<PlaceResult> results;
+
+    public StubPlacesService(List<PlaceResult> results) {
+        this.results = results;
+    }
+
+    // count places scattered up to about 1 km around the given spot
+    public static StubPlacesService around(double lat, double lng, int count, long seed) {
+        Random random = new Random(seed);
+        List<PlaceResult> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            results.add(new PlaceResult(
+                    "Place " + i,
+                    lat + (random.nextDouble() - 0.5) * 0.018,
+                    lng + (random.nextDouble() - 0.5) * 0.028,
+                    3.5 + random.nextInt(15) / 10.0,
+                    50 + random.nextInt(5000),
+                    null,
+                    List.of(i % 3 == 0 ? "park" : "tourist_attraction", "point_of_interest")
+            ));
+        }
+        return new StubPlacesService(results);
+    }
+
+    @Override
+    CompletableFuture<PlacesPage> fetchPage(String url) {
+        return CompletableFuture.completedFuture(new PlacesPage(results, null, "OK"));
+    }
+}
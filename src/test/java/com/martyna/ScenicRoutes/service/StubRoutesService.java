@@ -0,0 +1,103 @@
+package com.martyna.ScenicRoutes.service;
+
+import com.martyna.ScenicRoutes.model.ScenicPoint;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Local stand-in for the Google Routes API: straight-line walking times, fake polylines,
+// an optional per-call latency, and a count of every upstream call made.
+public class StubRoutesService extends GoogleRoutesService {
+
+    private final long latencyMs;
+    private final AtomicInteger walkingTimeCalls = new AtomicInteger(0);
+    private final AtomicInteger polylineCalls = new AtomicInteger(0);
+    private final AtomicInteger matrixCalls = new AtomicInteger(0);
+
+    public StubRoutesService(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    @Override
+    public int getWalkingTimeMinutes(double fromLat, double fromLng, double toLat, double toLng) {
+        walkingTimeCalls.incrementAndGet();
+        simulateLatency();
+        return walkingMinutes(fromLat, fromLng, toLat, toLng);
+    }
+
+    @Override
+    public int[][] getWalkingTimeMatrix(double[] originLats, double[] originLngs,
+                                        double[] destinationLats, double[] destinationLngs) {
+        matrixCalls.incrementAndGet();
+        simulateLatency();
+        int[][] minutes = new int[originLats.length][destinationLats.length];
+        for (int i = 0; i < originLats.length; i++) {
+            for (int j = 0; j < destinationLats.length; j++) {
+                minutes[i][j] = walkingMinutes(originLats[i], originLngs[i], destinationLats[j], destinationLngs[j]);
+            }
+        }
+        return minutes;
+    }
+
+    @Override
+    public CompletableFuture<int[][]> getWalkingTimeMatrixAsync(double[] originLats, double[] originLngs,
+                                                              double[] destinationLats, double[] destinationLngs) {
+        return CompletableFuture.supplyAsync(() ->
+                getWalkingTimeMatrix(originLats, originLngs, destinationLats, destinationLngs));
+    }
+
+    @Override
+    public String getWalkingPolylineWithWaypoints(double startLat, double startLng, List<ScenicPoint> points) {
+        return fakePolyline(points);
+    }
+
+    @Override
+    public String getWalkingPolylineForLoop(double startLat, double startLng, List<ScenicPoint> points) {
+        return fakePolyline(points);
+    }
+
+    @Override
+    public String getWalkingPolylinePointToPoint(double startLat, double startLng,
+                                                 double endLat, double endLng, List<ScenicPoint> points) {
+        return fakePolyline(points);
+    }
+
+    public int getWalkingTimeCalls() {
+        return walkingTimeCalls.get();
+    }
+
+    public int getMatrixCalls() {
+        return matrixCalls.get();
+    }
+
+    public int getPolylineCalls() {
+        return polylineCalls.get();
+    }
+
+    // 80 m/min over the straight-line distance, plus 30% for street layout
+    public static int walkingMinutes(double fromLat, double fromLng, double toLat, double toLng) {
+        double dLat = Math.toRadians(toLat - fromLat);
+        double dLng = Math.toRadians(toLng - fromLng);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(fromLat)) * Math.cos(Math.toRadians(toLat))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        double meters = 6371000 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return (int) Math.round(meters * 1.3 / 80.0);
+    }
+
+    private String fakePolyline(List<ScenicPoint> points) {
+        polylineCalls.incrementAndGet();
+        simulateLatency();
+        return "stub-polyline-" + points.size();
+    }
+
+    private void simulateLatency() {
+        if (latencyMs <= 0) return;
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.martyna.ScenicRoutes.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Concurrent route requests starting near each other, against a stub routes service.
+// Without coalescing every request that misses would make its own upstream call - per pair
+// on the pairwise path, per block on the matrix path.
+class WalkingTimeCacheLoadTest {
+
+    private static final int CONCURRENT_REQUESTS = 8;
+    private static final int POIS = 15;
+
+    @Test
+    void concurrentMissesOnSamePairsMakeOneUpstreamCallPerPair() throws Exception {
+        StubRoutesService routes = new StubRoutesService(5);
+        WalkingTimeCache cache = new WalkingTimeCache(routes, 1 << 20, 1 << 20, "", 0, 8);
+
+        double[] lats = latitudes(POIS);
+        double[] lngs = longitudes(POIS);
+
+        // Every request walks the full pair matrix, like the loop builder's candidate scans
+        List<Callable<Void>> requests = new ArrayList<>();
+        for (int r = 0; r < CONCURRENT_REQUESTS; r++) {
+            requests.add(() -> {
+                for (int i = 0; i < POIS; i++) {
+                    for (int j = 0; j < POIS; j++) {
+                        int minutes = cache.getWalkingTimeMinutes(lats[i], lngs[i], lats[j], lngs[j]);
+                        assertEquals(StubRoutesService.walkingMinutes(lats[i], lngs[i], lats[j], lngs[j]), minutes);
+                    }
+                }
+                return null;
+            });
+        }
+
+        runAll(requests);
+
+        int uniquePairs = POIS * POIS;
+        WalkingTimeCache.CacheStats stats = cache.getStats();
+
+        // One upstream call per pair, where each request missing on its own would make up to
+        // uniquePairs * CONCURRENT_REQUESTS
+        assertEquals(CONCURRENT_REQUESTS * uniquePairs, stats.totalRequests);
+        assertEquals(uniquePairs, routes.getWalkingTimeCalls());
+        assertEquals(uniquePairs, stats.misses);
+        assertTrue(stats.coalescedWaits > 0);
+    }
+
+    @Test
+    void concurrentMatricesOverTheSamePointsFetchEachBlockOnce() throws Exception {
+        // More points than one matrix block takes, so a single request makes several calls
+        int points = GoogleRoutesService.MAX_MATRIX_SIDE + 5;
+        double[] lats = latitudes(points);
+        double[] lngs = longitudes(points);
+
+        StubRoutesService alone = new StubRoutesService(0);
+        new WalkingTimeCache(alone, 1 << 20, 1 << 20, "", 0, 8).getWalkingTimeMatrix(lats, lngs);
+
+        StubRoutesService routes = new StubRoutesService(50);
+        WalkingTimeCache cache = new WalkingTimeCache(routes, 1 << 20, 1 << 20, "", 0, 8);
+        List<Callable<Void>> requests = new ArrayList<>();
+        for (int r = 0; r < CONCURRENT_REQUESTS; r++) {
+            requests.add(() -> {
+                assertMatrix(lats, lngs, cache.getWalkingTimeMatrix(lats, lngs));
+                return null;
+            });
+        }
+        runAll(requests);
+
+        WalkingTimeCache.CacheStats stats = cache.getStats();
+        assertEquals(alone.getMatrixCalls(), routes.getMatrixCalls());
+        assertEquals(points * (points - 1), stats.misses);
+        assertTrue(stats.coalescedWaits > 0);
+    }
+
+    @Test
+    void overlappingMatricesFetchEachPairOnce() throws Exception {
+        // Four windows of one block's worth of points, each shifted five along, two requests per window
+        int points = GoogleRoutesService.MAX_MATRIX_SIDE + 15;
+        int window = GoogleRoutesService.MAX_MATRIX_SIDE;
+        double[] lats = latitudes(points);
+        double[] lngs = longitudes(points);
+
+        StubRoutesService routes = new StubRoutesService(50);
+        WalkingTimeCache cache = new WalkingTimeCache(routes, 1 << 20, 1 << 20, "", 0, 8);
+        List<Callable<Void>> requests = new ArrayList<>();
+        for (int r = 0; r < CONCURRENT_REQUESTS; r++) {
+            int from = (r % 4) * 5;
+            double[] windowLats = Arrays.copyOfRange(lats, from, from + window);
+            double[] windowLngs = Arrays.copyOfRange(lngs, from, from + window);
+            requests.add(() -> {
+                assertMatrix(windowLats, windowLngs, cache.getWalkingTimeMatrix(windowLats, windowLngs));
+                return null;
+            });
+        }
+        runAll(requests);
+
+        // Ordered pairs of distinct points that share at least one window
+        int sharedPairs = 0;
+        for (int i = 0; i < points; i++) {
+            for (int j = 0; j < points; j++) {
+                if (i == j) continue;
+                int low = Math.min(i, j);
+                int high = Math.max(i, j);
+                for (int from = 0; from <= 15; from += 5) {
+                    if (low >= from && high < from + window) {
+                        sharedPairs++;
+                        break;
+                    }
+                }
+            }
+        }
+
+        // Each window fits one block, so at most one call per window, where each request
+        // fetching on its own would make one call per request
+        assertEquals(sharedPairs, cache.getStats().misses);
+        assertTrue(routes.getMatrixCalls() <= 4, routes.getMatrixCalls() + " matrix calls");
+    }
+
+    private static void assertMatrix(double[] lats, double[] lngs, int[] minutes) {
+        int n = lats.length;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                int expected = i == j ? 0 : StubRoutesService.walkingMinutes(lats[i], lngs[i], lats[j], lngs[j]);
+                assertEquals(expected, minutes[i * n + j]);
+            }
+        }
+    }
+
+    private static void runAll(List<Callable<Void>> requests) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(requests.size());
+        try {
+            for (Future<Void> result : pool.invokeAll(requests)) {
+                result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static double[] latitudes(int count) {
+        Random random = new Random(7);
+        double[] lats = new double[count];
+        for (int i = 0; i < count; i++) {
+            lats[i] = 40.75 + random.nextDouble() * 0.02;
+        }
+        return lats;
+    }
+
+    private static double[] longitudes(int count) {
+        Random random = new Random(11);
+        double[] lngs = new double[count];
+        for (int i = 0; i < count; i++) {
+            lngs[i] = -73.99 + random.nextDouble() * 0.02;
+        }
+        return lngs;
+    }
+}